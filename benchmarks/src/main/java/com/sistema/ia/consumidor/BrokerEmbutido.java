@@ -0,0 +1,84 @@
+package com.sistema.ia.consumidor;
+
+import org.apache.qpid.server.SystemLauncher;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Broker AMQP 0-9-1 dentro do processo (Apache Qpid Broker-J), com armazenamento só em memória.
+ *
+ * Aceita o usuário e a senha padrão dos serviços (admin/admin123) no virtual host
+ * {@link #VIRTUAL_HOST}. Recursos exclusivos do RabbitMQ, como os argumentos
+ * {@code x-dead-letter-exchange} e {@code x-message-ttl} das filas de espera, não existem aqui:
+ * os cenários rodam sem reentrega atrasada.
+ */
+final class BrokerEmbutido implements AutoCloseable {
+
+    static final String VIRTUAL_HOST = "default";
+    static final String USUARIO = "admin";
+    static final String SENHA = "admin123";
+
+    private final SystemLauncher launcher = new SystemLauncher();
+    private final int porta;
+
+    private BrokerEmbutido(int porta) {
+        this.porta = porta;
+    }
+
+    /**
+     * Sobe o broker na porta indicada, usando {@code diretorio} para a configuração e os logs.
+     */
+    static BrokerEmbutido iniciar(int porta, Path diretorio) throws Exception {
+        Files.createDirectories(diretorio);
+        Path configuracao = diretorio.resolve("broker.json");
+        Files.write(configuracao, configuracao(porta).getBytes(StandardCharsets.UTF_8));
+
+        Map<String, String> contexto = new HashMap<>();
+        contexto.put("qpid.work_dir", diretorio.toAbsolutePath().toString());
+        contexto.put("qpid.amqp_port", String.valueOf(porta));
+
+        Map<String, Object> atributos = new HashMap<>();
+        atributos.put("type", "Memory");
+        atributos.put("initialConfigurationLocation", configuracao.toUri().toString());
+        atributos.put("startupLoggedToSystemOut", false);
+        atributos.put("context", contexto);
+
+        BrokerEmbutido broker = new BrokerEmbutido(porta);
+        broker.launcher.startup(atributos);
+        return broker;
+    }
+
+    int getPorta() {
+        return porta;
+    }
+
+    @Override
+    public void close() {
+        launcher.shutdown();
+    }
+
+    private static String configuracao(int porta) {
+        return "{\n"
+            + "  \"name\": \"broker-embutido\",\n"
+            + "  \"modelVersion\": \"7.0\",\n"
+            + "  \"authenticationproviders\": [{\n"
+            + "    \"name\": \"plain\", \"type\": \"Plain\", \"secureOnlyMechanisms\": [],\n"
+            + "    \"users\": [{\"name\": \"" + USUARIO + "\", \"password\": \"" + SENHA + "\", \"type\": \"managed\"}]\n"
+            + "  }],\n"
+            + "  \"ports\": [{\n"
+            + "    \"name\": \"AMQP\", \"port\": " + porta + ", \"authenticationProvider\": \"plain\",\n"
+            + "    \"protocols\": [\"AMQP_0_9_1\"],\n"
+            + "    \"virtualhostaliases\": [{\"name\": \"nameAlias\", \"type\": \"nameAlias\"},\n"
+            + "                           {\"name\": \"defaultAlias\", \"type\": \"defaultAlias\"}]\n"
+            + "  }],\n"
+            + "  \"virtualhostnodes\": [{\n"
+            + "    \"name\": \"" + VIRTUAL_HOST + "\", \"type\": \"Memory\", \"defaultVirtualHostNode\": \"true\",\n"
+            + "    \"virtualHostInitialConfiguration\": \"{\\\"type\\\": \\\"Memory\\\"}\"\n"
+            + "  }]\n"
+            + "}\n";
+    }
+}
@@ -0,0 +1,64 @@
+package com.sistema.ia.consumidor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodificação das faces reais de shared-images: ImageIO.read direto e o
+ * {@link DecodificadorImagem} usado pelo consumidor (leitor reaproveitado, subamostragem).
+ * {@code cacheDisco} indica se o ImageIO usa arquivo temporário ao ler de um InputStream
+ * (o padrão da JVM é true); o decodificador do consumidor lê sempre da memória.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodificacaoImagemBenchmark {
+
+    private static final int NUM_IMAGENS = 256;
+
+    @Param({"true", "false"})
+    public boolean cacheDisco;
+
+    private byte[][] imagens;
+    private int proxima;
+
+    @Setup
+    public void preparar() throws IOException {
+        ImageIO.setUseCache(cacheDisco);
+        List<byte[]> faces = ImagensBenchmark.carregarFaces(NUM_IMAGENS);
+        imagens = faces.toArray(new byte[0][]);
+    }
+
+    @Benchmark
+    public BufferedImage imageIO() throws IOException {
+        byte[] dados = imagens[proxima];
+        proxima = (proxima + 1) % imagens.length;
+        return ImageIO.read(new ByteArrayInputStream(dados));
+    }
+
+    @Benchmark
+    public BufferedImage decodificadorConsumidor() throws IOException {
+        byte[] dados = imagens[proxima];
+        proxima = (proxima + 1) % imagens.length;
+        return DecodificadorImagem.decodificar(dados, ExtratorCaracteristicas.LADO);
+    }
+}
@@ -0,0 +1,92 @@
+package com.sistema.ia.consumidor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extração de características: implementação de referência com Smile, suas etapas mais caras
+ * e o extrator de passada única. As imagens já vêm decodificadas; cada chamada usa a próxima
+ * de um conjunto de faces reais.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtracaoCaracteristicasBenchmark {
+
+    private static final int NUM_IMAGENS = 256;
+
+    private AnalisadorSentimentoSmile analisador;
+    private BufferedImage[] originais;
+    private BufferedImage[] cinzas;
+    private double[][] pixels;
+    private double[] destino;
+    private int proxima;
+
+    @Setup
+    public void preparar() throws IOException {
+        // Sem modelo: só os métodos de extração são medidos
+        analisador = new AnalisadorSentimentoSmile(Paths.get("sem-modelo"));
+
+        List<byte[]> faces = ImagensBenchmark.carregarFaces(NUM_IMAGENS);
+        originais = new BufferedImage[faces.size()];
+        cinzas = new BufferedImage[faces.size()];
+        pixels = new double[faces.size()][];
+        for (int i = 0; i < faces.size(); i++) {
+            originais[i] = ImageIO.read(new ByteArrayInputStream(faces.get(i)));
+            cinzas[i] = analisador.converterParaCinza(analisador.redimensionarImagem(originais[i], 64, 64));
+            pixels[i] = analisador.extrairPixels(cinzas[i]);
+        }
+        destino = new double[ExtratorCaracteristicas.NUM_CARACTERISTICAS];
+    }
+
+    private int indice() {
+        int i = proxima;
+        proxima = (i + 1) % originais.length;
+        return i;
+    }
+
+    @Benchmark
+    public double[] referenciaSmile() {
+        return analisador.extrairCaracteristicasSmile(originais[indice()]);
+    }
+
+    @Benchmark
+    public double[] passadaUnica() {
+        ExtratorCaracteristicas.extrair(ExtratorCaracteristicas.miniaturaCinza(originais[indice()]), destino);
+        return destino;
+    }
+
+    @Benchmark
+    public double[][] gradientes() {
+        return analisador.calcularGradientes(cinzas[indice()]);
+    }
+
+    @Benchmark
+    public double[][] matrizCoocorrencia() {
+        return analisador.calcularMatrizCoocorrencia(cinzas[indice()]);
+    }
+
+    @Benchmark
+    public double entropia() {
+        return analisador.calcularEntropiaSmile(pixels[indice()]);
+    }
+}
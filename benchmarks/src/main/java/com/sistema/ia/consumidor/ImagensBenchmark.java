@@ -0,0 +1,47 @@
+package com.sistema.ia.consumidor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Carrega as imagens reais de shared-images usadas como entrada dos benchmarks.
+ */
+final class ImagensBenchmark {
+
+    private ImagensBenchmark() {}
+
+    /**
+     * Até {@code maximo} faces (happy e sad intercaladas) de IMAGENS_DIR, padrão ./shared-images.
+     */
+    static List<byte[]> carregarFaces(int maximo) throws IOException {
+        Path raiz = Paths.get(System.getenv().getOrDefault("IMAGENS_DIR", "shared-images"));
+        List<Path> felizes = listar(raiz.resolve("faces").resolve("happy"));
+        List<Path> tristes = listar(raiz.resolve("faces").resolve("sad"));
+
+        List<byte[]> imagens = new ArrayList<>();
+        for (int i = 0; imagens.size() < maximo && (i < felizes.size() || i < tristes.size()); i++) {
+            if (i < felizes.size()) imagens.add(Files.readAllBytes(felizes.get(i)));
+            if (i < tristes.size() && imagens.size() < maximo) imagens.add(Files.readAllBytes(tristes.get(i)));
+        }
+        if (imagens.isEmpty()) {
+            throw new IllegalStateException("Nenhuma imagem encontrada em " + raiz.toAbsolutePath()
+                + " (defina IMAGENS_DIR)");
+        }
+        return imagens;
+    }
+
+    private static List<Path> listar(Path diretorio) throws IOException {
+        if (!Files.isDirectory(diretorio)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            return arquivos.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+}
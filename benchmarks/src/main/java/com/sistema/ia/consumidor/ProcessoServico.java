@@ -0,0 +1,126 @@
+package com.sistema.ia.consumidor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Um serviço (gerador ou consumidor) rodando numa JVM filha, com a saída gravada em arquivo
+ * e as métricas lidas do endpoint {@code /metrics}.
+ */
+final class ProcessoServico implements AutoCloseable {
+
+    private final String nome;
+    private final Process processo;
+    private final Path log;
+    private final int portaMetricas;
+
+    private ProcessoServico(String nome, Process processo, Path log, int portaMetricas) {
+        this.nome = nome;
+        this.processo = processo;
+        this.log = log;
+        this.portaMetricas = portaMetricas;
+    }
+
+    /**
+     * Inicia {@code classePrincipal} com o classpath e as opções de JVM dados, mais {@code ambiente}
+     * somado ao ambiente atual. A porta de métricas vem de METRICAS_PORTA em {@code ambiente}.
+     */
+    static ProcessoServico iniciar(String nome, String classpath, List<String> opcoesJvm, String classePrincipal,
+                                   Map<String, String> ambiente, Path diretorio) throws IOException {
+        List<String> comando = new ArrayList<>();
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        comando.addAll(opcoesJvm);
+        comando.add("-cp");
+        comando.add(classpath);
+        comando.add(classePrincipal);
+
+        Path log = diretorio.resolve(nome + ".log");
+        ProcessBuilder construtor = new ProcessBuilder(comando)
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile());
+        construtor.environment().putAll(ambiente);
+        return new ProcessoServico(nome, construtor.start(), log,
+            Integer.parseInt(ambiente.getOrDefault("METRICAS_PORTA", "0")));
+    }
+
+    /**
+     * Espera {@code marcador} aparecer na saída do processo.
+     */
+    void aguardar(String marcador, long timeoutMillis) throws IOException, InterruptedException {
+        long limite = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < limite) {
+            if (!processo.isAlive()) {
+                throw new IOException(nome + " terminou com código " + processo.exitValue() + "; veja " + log);
+            }
+            if (Files.exists(log) && new String(Files.readAllBytes(log), StandardCharsets.UTF_8).contains(marcador)) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new IOException(nome + " não iniciou em " + timeoutMillis + " ms; veja " + log);
+    }
+
+    /**
+     * Texto do endpoint {@code /metrics} do serviço.
+     */
+    String metricas() throws IOException {
+        HttpURLConnection conexao = (HttpURLConnection) new URL("http://localhost:" + portaMetricas + "/metrics")
+            .openConnection();
+        conexao.setConnectTimeout(2000);
+        conexao.setReadTimeout(5000);
+        try (InputStream entrada = conexao.getInputStream()) {
+            return new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+        } finally {
+            conexao.disconnect();
+        }
+    }
+
+    /**
+     * Pico de memória residente do processo em MB, lido de /proc (-1 fora do Linux).
+     */
+    double memoriaPicoMb() {
+        return memoriaPicoMb(processo.pid());
+    }
+
+    /**
+     * Pico de memória residente (VmHWM) do processo {@code pid} em MB, ou -1 se não disponível.
+     */
+    static double memoriaPicoMb(long pid) {
+        Path status = Paths.get("/proc", String.valueOf(pid), "status");
+        try {
+            for (String linha : Files.readAllLines(status)) {
+                if (linha.startsWith("VmHWM:")) {
+                    return Long.parseLong(linha.replaceAll("[^0-9]", "")) / 1024.0;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Processo já encerrado ou sistema sem /proc
+        }
+        return -1;
+    }
+
+    String getNome() {
+        return nome;
+    }
+
+    /**
+     * Pede o encerramento ordenado (SIGTERM, que dispara os shutdown hooks) e força após o prazo.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        processo.destroy();
+        if (!processo.waitFor(40, TimeUnit.SECONDS)) {
+            processo.destroyForcibly().waitFor();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.sistema.ia.consumidor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ida e volta de {@link MensagemImagem} em JSON (Jackson, dados em base64) e no formato binário,
+ * para tamanhos de imagem de uma face real (~1,8 KB) a um brasão grande.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializacaoMensagemBenchmark {
+
+    @Param({"1800", "16384", "131072"})
+    public int tamanhoDados;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MensagemImagem mensagem;
+    private byte[] json;
+    private byte[] binario;
+
+    @Setup
+    public void preparar() throws IOException {
+        byte[] dados = new byte[tamanhoDados];
+        new Random(42).nextBytes(dados);
+
+        mensagem = new MensagemImagem();
+        mensagem.setId(UUID.randomUUID().toString());
+        mensagem.setTipo("face");
+        mensagem.setNomeArquivo("PrivateTest_10077120.jpg");
+        mensagem.setDados(dados);
+        mensagem.setTimestamp(System.currentTimeMillis());
+        mensagem.setEnvioPrevisto(mensagem.getTimestamp());
+
+        json = objectMapper.writeValueAsBytes(mensagem);
+        binario = CodecMensagem.codificar(mensagem);
+    }
+
+    @Benchmark
+    public MensagemImagem jsonIdaEVolta() throws IOException {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(mensagem), MensagemImagem.class);
+    }
+
+    @Benchmark
+    public MensagemImagem jsonDesserializar() throws IOException {
+        return objectMapper.readValue(json, MensagemImagem.class);
+    }
+
+    @Benchmark
+    public MensagemImagem binarioIdaEVolta() throws IOException {
+        return CodecMensagem.decodificar(CodecMensagem.codificar(mensagem));
+    }
+
+    @Benchmark
+    public MensagemImagem binarioDecodificar() throws IOException {
+        return CodecMensagem.decodificar(binario);
+    }
+}
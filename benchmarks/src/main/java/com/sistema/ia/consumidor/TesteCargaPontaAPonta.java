@@ -0,0 +1,256 @@
+package com.sistema.ia.consumidor;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Teste de carga de ponta a ponta sem Docker: sobe um broker AMQP embutido ({@link BrokerEmbutido})
+ * e roda o gerador e os dois consumidores como JVMs filhas contra ele, um cenário de cada vez.
+ *
+ * Os serviços leem a configuração do ambiente em constantes estáticas, por isso cada um roda no
+ * seu próprio processo, com as variáveis do cenário. Depois do aquecimento, as métricas de cada
+ * serviço são lidas duas vezes ({@code /metrics}); a vazão vem da diferença entre as duas leituras.
+ * Os percentis de latência de ponta a ponta são os acumulados pelo consumidor, incluindo o
+ * aquecimento.
+ *
+ * Sai com código 1 se algum cenário passar de LIMITE_P99_MS ou ficar abaixo de LIMITE_TAXA_MINIMA.
+ */
+public class TesteCargaPontaAPonta {
+
+    private static final String CENARIOS_PADRAO =
+        "constante-10:TAXA_MSGS=10;constante-50:TAXA_MSGS=50;constante-200:TAXA_MSGS=200;inundacao:MODO_GERADOR=inundacao;"
+            + "constante-200-cache:TAXA_MSGS=200,CACHE_TAMANHO=4096";
+
+    private static final long AQUECIMENTO_S = Long.parseLong(System.getenv().getOrDefault("CENARIO_AQUECIMENTO_S", "20"));
+    private static final long DURACAO_S = Long.parseLong(System.getenv().getOrDefault("CENARIO_DURACAO_S", "60"));
+    private static final long INICIO_TIMEOUT_S = Long.parseLong(System.getenv().getOrDefault("CENARIO_INICIO_TIMEOUT_S", "300"));
+    private static final String IMAGENS_DIR = System.getenv().getOrDefault("IMAGENS_DIR", "shared-images");
+    private static final String RESULTADO_ARQUIVO = System.getenv().getOrDefault("RESULTADO_ARQUIVO", "");
+
+    private static final String ENVIADAS = "mensagens_total{evento=\"enviada\"}";
+    private static final String PROCESSADAS = "latencia_microssegundos_count{etapa=\"ponta_a_ponta\"}";
+    private static final String P50 = "latencia_microssegundos{etapa=\"ponta_a_ponta\",quantile=\"0.5\"}";
+    private static final String P99 = "latencia_microssegundos{etapa=\"ponta_a_ponta\",quantile=\"0.99\"}";
+
+    /**
+     * Números de um cenário: vazões em msg/s, latências em ms e picos de memória residente em MB.
+     */
+    private static final class Resultado {
+        String cenario;
+        double enviadas;
+        double face;
+        double team;
+        double faceP50;
+        double faceP99;
+        double teamP50;
+        double teamP99;
+        double memoriaGerador;
+        double memoriaFace;
+        double memoriaTeam;
+        double memoriaBroker;
+        final List<String> violacoes = new ArrayList<>();
+
+        String csv() {
+            return String.format(Locale.ROOT, "%s,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.0f,%.0f,%.0f,%.0f",
+                cenario, enviadas, face, team, faceP50, faceP99, teamP50, teamP99,
+                memoriaGerador, memoriaFace, memoriaTeam, memoriaBroker);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Map<String, String>> cenarios = lerCenarios(System.getenv().getOrDefault("CENARIOS", CENARIOS_PADRAO));
+        Path raiz = Files.createTempDirectory("teste-carga-");
+        System.out.println("=== TESTE DE CARGA - " + cenarios.size() + " cenários, aquecimento " + AQUECIMENTO_S
+            + " s, medição " + DURACAO_S + " s, logs em " + raiz + " ===");
+
+        List<Resultado> resultados = new ArrayList<>();
+        for (Map.Entry<String, Map<String, String>> cenario : cenarios.entrySet()) {
+            System.out.println("--- Cenário " + cenario.getKey() + " " + cenario.getValue());
+            resultados.add(executar(cenario.getKey(), cenario.getValue(), raiz.resolve(cenario.getKey())));
+        }
+
+        String cabecalho = "cenario,enviadas_por_s,face_por_s,team_por_s,face_p50_ms,face_p99_ms,team_p50_ms,team_p99_ms,"
+            + "gerador_mb,face_mb,team_mb,broker_mb";
+        System.out.println();
+        System.out.println(cabecalho);
+        List<String> linhas = new ArrayList<>();
+        linhas.add(cabecalho);
+        boolean aprovado = true;
+        for (Resultado resultado : resultados) {
+            System.out.println(resultado.csv());
+            linhas.add(resultado.csv());
+            for (String violacao : resultado.violacoes) {
+                System.out.println("FALHA " + resultado.cenario + ": " + violacao);
+                aprovado = false;
+            }
+        }
+        if (!RESULTADO_ARQUIVO.isEmpty()) {
+            Files.write(Paths.get(RESULTADO_ARQUIVO), linhas, StandardCharsets.UTF_8);
+        }
+        System.exit(aprovado ? 0 : 1);
+    }
+
+    private static Resultado executar(String nome, Map<String, String> variaveis, Path diretorio) throws Exception {
+        Files.createDirectories(diretorio);
+        List<String> opcoesJvm = Arrays.asList(
+            System.getenv().getOrDefault("JAVA_OPTS_SERVICOS", "-Xmx512m").trim().split("\\s+"));
+        long timeoutInicio = INICIO_TIMEOUT_S * 1000;
+
+        try (BrokerEmbutido broker = BrokerEmbutido.iniciar(portaLivre(), diretorio.resolve("broker"));
+             ProcessoServico face = ProcessoServico.iniciar("consumidor-face", classpath("CLASSPATH_FACE"), opcoesJvm,
+                 "com.sistema.ia.consumidor.ConsumidorFace", ambiente(broker, diretorio, variaveis), diretorio);
+             ProcessoServico team = ProcessoServico.iniciar("consumidor-team", classpath("CLASSPATH_TEAM"), opcoesJvm,
+                 "com.sistema.ia.consumidor.ConsumidorTeam", ambiente(broker, diretorio, variaveis), diretorio)) {
+
+            // Consumidores primeiro: eles declaram as filas que recebem as mensagens do gerador
+            face.aguardar("INICIADO", timeoutInicio);
+            team.aguardar("INICIADO", timeoutInicio);
+
+            try (ProcessoServico gerador = ProcessoServico.iniciar("gerador-mensagens", classpath("CLASSPATH_GERADOR"),
+                     opcoesJvm, "com.sistema.ia.gerador.GeradorMensagens", ambiente(broker, diretorio, variaveis),
+                     diretorio)) {
+                gerador.aguardar("INICIADO", timeoutInicio);
+
+                Thread.sleep(AQUECIMENTO_S * 1000);
+                long inicio = System.nanoTime();
+                String geradorAntes = gerador.metricas();
+                String faceAntes = face.metricas();
+                String teamAntes = team.metricas();
+
+                Thread.sleep(DURACAO_S * 1000);
+                String geradorDepois = gerador.metricas();
+                String faceDepois = face.metricas();
+                String teamDepois = team.metricas();
+                double segundos = (System.nanoTime() - inicio) / 1e9;
+
+                Resultado resultado = new Resultado();
+                resultado.cenario = nome;
+                resultado.enviadas = (valor(geradorDepois, ENVIADAS) - valor(geradorAntes, ENVIADAS)) / segundos;
+                resultado.face = (valor(faceDepois, PROCESSADAS) - valor(faceAntes, PROCESSADAS)) / segundos;
+                resultado.team = (valor(teamDepois, PROCESSADAS) - valor(teamAntes, PROCESSADAS)) / segundos;
+                resultado.faceP50 = valor(faceDepois, P50) / 1000.0;
+                resultado.faceP99 = valor(faceDepois, P99) / 1000.0;
+                resultado.teamP50 = valor(teamDepois, P50) / 1000.0;
+                resultado.teamP99 = valor(teamDepois, P99) / 1000.0;
+                resultado.memoriaGerador = gerador.memoriaPicoMb();
+                resultado.memoriaFace = face.memoriaPicoMb();
+                resultado.memoriaTeam = team.memoriaPicoMb();
+                // O broker roda neste processo; o pico é o do processo inteiro desde o primeiro cenário
+                resultado.memoriaBroker = ProcessoServico.memoriaPicoMb(ProcessHandle.current().pid());
+                verificarLimites(resultado, variaveis);
+                System.out.println(resultado.csv());
+                return resultado;
+            }
+        }
+    }
+
+    /**
+     * Confere os limites do cenário (variáveis do cenário têm precedência sobre as globais; 0 desativa).
+     */
+    private static void verificarLimites(Resultado resultado, Map<String, String> variaveis) {
+        double limiteP99 = Double.parseDouble(limite(variaveis, "LIMITE_P99_MS"));
+        double limiteTaxa = Double.parseDouble(limite(variaveis, "LIMITE_TAXA_MINIMA"));
+        if (limiteP99 > 0 && Math.max(resultado.faceP99, resultado.teamP99) > limiteP99) {
+            resultado.violacoes.add(String.format("p99 %.1f ms acima do limite de %.1f ms",
+                Math.max(resultado.faceP99, resultado.teamP99), limiteP99));
+        }
+        if (limiteTaxa > 0 && resultado.face + resultado.team < limiteTaxa) {
+            resultado.violacoes.add(String.format("%.1f msg/s processadas, abaixo do mínimo de %.1f msg/s",
+                resultado.face + resultado.team, limiteTaxa));
+        }
+    }
+
+    private static String limite(Map<String, String> variaveis, String nome) {
+        return variaveis.getOrDefault(nome, System.getenv().getOrDefault(nome, "0"));
+    }
+
+    /**
+     * Ambiente de um serviço: conexão com o broker embutido, porta de métricas própria, arquivos
+     * temporários do cenário, cache e índice perceptual desligados e, por cima, as variáveis do cenário.
+     */
+    private static Map<String, String> ambiente(BrokerEmbutido broker, Path diretorio, Map<String, String> variaveis)
+            throws IOException {
+        Map<String, String> ambiente = new HashMap<>();
+        ambiente.put("RABBITMQ_HOST", "localhost");
+        ambiente.put("RABBITMQ_PORT", String.valueOf(broker.getPorta()));
+        ambiente.put("RABBITMQ_VHOST", BrokerEmbutido.VIRTUAL_HOST);
+        ambiente.put("RABBITMQ_USER", BrokerEmbutido.USUARIO);
+        ambiente.put("RABBITMQ_PASS", BrokerEmbutido.SENHA);
+        ambiente.put("ESPERA_INICIAL_MS", "0");
+        ambiente.put("METRICAS_PORTA", String.valueOf(portaLivre()));
+        ambiente.put("IMAGENS_DIR", Paths.get(IMAGENS_DIR).toAbsolutePath().toString());
+        ambiente.put("CATALOGO_ARQUIVO", diretorio.resolve("catalogo-imagens.bin").toString());
+        ambiente.put("REPOSITORIO_DIR", diretorio.resolve("repositorio-conteudo").toString());
+        // Sem reentrega atrasada: as filas de espera dependem de argumentos de fila do RabbitMQ
+        ambiente.put("REENTREGA_MAX_TENTATIVAS", "0");
+        ambiente.put("MODELO_VERIFICAR_MS", "0");
+        // O gerador repete as mesmas imagens: com o cache de resultados ou o índice perceptual, os
+        // consumidores responderiam quase tudo sem rodar o modelo. Um cenário os liga explicitamente
+        ambiente.put("CACHE_TAMANHO", "0");
+        ambiente.put("PERCEPTUAL_LIMIAR", "-1");
+        ambiente.putAll(variaveis);
+        return ambiente;
+    }
+
+    /**
+     * Lê CENARIOS no formato {@code nome:VAR=valor,VAR=valor;nome2:VAR=valor}.
+     */
+    static Map<String, Map<String, String>> lerCenarios(String texto) {
+        Map<String, Map<String, String>> cenarios = new LinkedHashMap<>();
+        for (String cenario : texto.split(";")) {
+            if (cenario.isBlank()) {
+                continue;
+            }
+            String[] partes = cenario.split(":", 2);
+            Map<String, String> variaveis = new LinkedHashMap<>();
+            if (partes.length > 1) {
+                for (String atribuicao : partes[1].split(",")) {
+                    String[] chaveValor = atribuicao.split("=", 2);
+                    if (chaveValor.length != 2) {
+                        throw new IllegalArgumentException("Variável inválida no cenário " + partes[0] + ": " + atribuicao);
+                    }
+                    variaveis.put(chaveValor[0].trim(), chaveValor[1].trim());
+                }
+            }
+            cenarios.put(partes[0].trim(), variaveis);
+        }
+        return cenarios;
+    }
+
+    /**
+     * Valor de uma série no texto de {@code /metrics} (0 se ausente).
+     */
+    static double valor(String metricas, String serie) {
+        for (String linha : metricas.split("\n")) {
+            if (linha.startsWith(serie + " ")) {
+                return Double.parseDouble(linha.substring(serie.length() + 1).trim());
+            }
+        }
+        return 0;
+    }
+
+    private static String classpath(String variavel) {
+        String classpath = System.getenv(variavel);
+        if (classpath == null || classpath.isEmpty()) {
+            throw new IllegalStateException(variavel + " não definido: informe o classpath do serviço");
+        }
+        return classpath;
+    }
+
+    private static int portaLivre() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
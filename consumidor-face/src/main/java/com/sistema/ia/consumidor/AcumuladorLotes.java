@@ -0,0 +1,164 @@
+package com.sistema.ia.consumidor;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agrupa as entregas de um canal em lotes (até N mensagens ou um tempo máximo de espera)
+ * e confirma cada lote com um único basicAck(multiple=true).
+ * Cada canal precisa do seu próprio acumulador: o ack múltiplo cobre todas as entregas
+ * anteriores do canal, então nenhuma outra thread pode estar processando mensagens dele.
+ */
+public class AcumuladorLotes {
+
+    private static final Logger logger = LoggerFactory.getLogger(AcumuladorLotes.class);
+
+    /**
+     * Destino de cada entrega do lote depois do processamento.
+     */
+    public enum Desfecho {
+        /** Processada: entra no ack múltiplo. */
+        CONFIRMAR,
+        /** Falhou: nova tentativa pela {@link PoliticaReentrega}, ou volta direto para a fila sem ela. */
+        DEVOLVER,
+        /** Não deve ser processada (ex.: prazo vencido): rejeitada para a dead-letter exchange. */
+        REJEITAR
+    }
+
+    /**
+     * Processamento de um lote. Retorna o desfecho de cada entrega, na ordem do lote.
+     */
+    public interface ProcessadorLote {
+        Desfecho[] processar(List<Delivery> lote) throws Exception;
+    }
+
+    private final Channel channel;
+    private final PoliticaReentrega reentrega;
+    private final int tamanhoLote;
+    private final long esperaMaximaNanos;
+    private final ProcessadorLote processador;
+    private final BlockingQueue<Delivery> pendentes = new LinkedBlockingQueue<>();
+    private final Metricas metricas = Metricas.global();
+    private final Thread thread;
+    private volatile boolean ativo = true;
+
+    /**
+     * @param reentrega destino das mensagens que falharam (null = basicNack com requeue)
+     */
+    public AcumuladorLotes(String nome, Channel channel, PoliticaReentrega reentrega, int tamanhoLote,
+                           long esperaMaximaMillis, ProcessadorLote processador) {
+        this.channel = channel;
+        this.reentrega = reentrega;
+        this.tamanhoLote = tamanhoLote;
+        this.esperaMaximaNanos = TimeUnit.MILLISECONDS.toNanos(esperaMaximaMillis);
+        this.processador = processador;
+        this.thread = new Thread(this::executar, nome);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Cria o callback de entrega: a thread do RabbitMQ apenas enfileira a mensagem.
+     */
+    public DeliverCallback criarCallback() {
+        return (consumerTag, delivery) -> pendentes.add(delivery);
+    }
+
+    private void executar() {
+        List<Delivery> lote = new ArrayList<>(tamanhoLote);
+        try {
+            while (ativo || !pendentes.isEmpty()) {
+                Delivery primeira = pendentes.poll(100, TimeUnit.MILLISECONDS);
+                if (primeira == null) {
+                    continue;
+                }
+                lote.add(primeira);
+
+                // Completar o lote até o tamanho máximo ou até acabar o tempo de espera
+                long limite = System.nanoTime() + esperaMaximaNanos;
+                while (lote.size() < tamanhoLote) {
+                    long restante = limite - System.nanoTime();
+                    Delivery proxima = restante > 0
+                        ? pendentes.poll(restante, TimeUnit.NANOSECONDS)
+                        : pendentes.poll();
+                    if (proxima == null) {
+                        break;
+                    }
+                    lote.add(proxima);
+                }
+
+                processarEConfirmar(lote);
+                lote.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processarEConfirmar(List<Delivery> lote) {
+        Desfecho[] desfechos;
+        try {
+            desfechos = processador.processar(lote);
+        } catch (Exception e) {
+            logger.error("Erro ao processar lote de {} mensagens", lote.size(), e);
+            desfechos = new Desfecho[lote.size()];
+            Arrays.fill(desfechos, Desfecho.DEVOLVER);
+        }
+
+        try {
+            // Devolver e rejeitar uma a uma antes do ack múltiplo, que cobre todas as tags menores
+            long inicioAck = System.nanoTime();
+            long maiorTagConfirmada = -1;
+            for (int i = 0; i < lote.size(); i++) {
+                long deliveryTag = lote.get(i).getEnvelope().getDeliveryTag();
+                if (lote.get(i).getEnvelope().isRedeliver()) {
+                    metricas.incrementar("reentregue");
+                }
+                if (desfechos[i] == Desfecho.CONFIRMAR) {
+                    maiorTagConfirmada = Math.max(maiorTagConfirmada, deliveryTag);
+                    metricas.incrementar("processada");
+                } else if (desfechos[i] == Desfecho.REJEITAR) {
+                    channel.basicReject(deliveryTag, false);
+                    metricas.incrementar("descartada");
+                } else if (reentrega != null && reentrega.reencaminhar(channel, lote.get(i), null)) {
+                    // Republicada para nova tentativa: a original entra no ack múltiplo
+                    maiorTagConfirmada = Math.max(maiorTagConfirmada, deliveryTag);
+                    metricas.incrementar("erro");
+                } else {
+                    channel.basicNack(deliveryTag, false, true);
+                    metricas.incrementar("erro");
+                }
+            }
+            if (maiorTagConfirmada >= 0) {
+                channel.basicAck(maiorTagConfirmada, true);
+            }
+            metricas.registrarNanos("ack", System.nanoTime() - inicioAck);
+        } catch (IOException e) {
+            logger.error("Erro ao confirmar lote de {} mensagens", lote.size(), e);
+        }
+    }
+
+    /**
+     * Processa o que já foi recebido e encerra a thread do lote.
+     * Deve ser chamado depois de cancelar o consumer e antes de fechar o canal.
+     */
+    public void encerrar(long timeoutSegundos) throws InterruptedException {
+        ativo = false;
+        thread.join(TimeUnit.SECONDS.toMillis(timeoutSegundos));
+        if (thread.isAlive()) {
+            logger.warn("Lote não terminou em {}s, interrompendo", timeoutSegundos);
+            thread.interrupt();
+        }
+    }
+}
@@ -5,7 +5,13 @@ import com.rabbitmq.client.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 
 public class ConsumidorFace {
@@ -15,55 +21,157 @@ public class ConsumidorFace {
     private static final String QUEUE_NAME = "face_analysis_queue";
     private static final String ROUTING_KEY = "face";
     
+    // Paralelismo: modo "pool" (N workers), "virtual" (uma thread virtual por mensagem),
+    // "lote" (N canais, cada um agrupando mensagens em lotes) ou "pipeline" (threads por estágio)
+    private static final String MODO = System.getenv().getOrDefault("CONSUMIDOR_MODO", "pool");
+    private static final int NUM_WORKERS = Integer.parseInt(System.getenv().getOrDefault("CONSUMIDOR_WORKERS", "1"));
+    private static final int PREFETCH = Integer.parseInt(
+        System.getenv().getOrDefault("CONSUMIDOR_PREFETCH", String.valueOf(NUM_WORKERS)));
+    private static final int TAMANHO_LOTE = Integer.parseInt(System.getenv().getOrDefault("LOTE_TAMANHO", "16"));
+    private static final long ESPERA_LOTE_MS = Long.parseLong(System.getenv().getOrDefault("LOTE_ESPERA_MS", "50"));
+    private static final long TIMEOUT_ENCERRAMENTO_SEGUNDOS = 30;
+    
+    // Modo pipeline: threads de cada estágio e tamanho das filas entre eles
+    private static final int PIPELINE_FILA = Integer.parseInt(System.getenv().getOrDefault("PIPELINE_FILA", "16"));
+    private static final int THREADS_LEITURA = Integer.parseInt(System.getenv().getOrDefault("PIPELINE_THREADS_LEITURA", "1"));
+    private static final int THREADS_DECODIFICACAO =
+        Integer.parseInt(System.getenv().getOrDefault("PIPELINE_THREADS_DECODIFICACAO", "2"));
+    private static final int THREADS_CARACTERISTICAS =
+        Integer.parseInt(System.getenv().getOrDefault("PIPELINE_THREADS_CARACTERISTICAS", "2"));
+    private static final int THREADS_CLASSIFICACAO =
+        Integer.parseInt(System.getenv().getOrDefault("PIPELINE_THREADS_CLASSIFICACAO", "1"));
+    
+    // Cache de resultados por conteúdo da imagem (0 desativa; arquivo vazio = sem persistência)
+    private static final int CACHE_TAMANHO = Integer.parseInt(System.getenv().getOrDefault("CACHE_TAMANHO", "4096"));
+    private static final String CACHE_ARQUIVO = System.getenv().getOrDefault("CACHE_ARQUIVO", "");
+    
+    // Mensagens por referência: imagens resolvidas pelo localizador e guardadas por hash
+    private static final String IMAGENS_DIR = System.getenv().getOrDefault("IMAGENS_DIR", "/shared-images");
+    private static final String REPOSITORIO_DIR =
+        System.getenv().getOrDefault("REPOSITORIO_DIR", "/tmp/repositorio-conteudo");
+    
+    // Índice perceptual: quase-duplicatas a até PERCEPTUAL_LIMIAR bits dispensam o modelo (negativo,
+    // o padrão, desativa). Com PERCEPTUAL_REFERENCIAS o índice começa com as faces de IMAGENS_DIR,
+    // as mesmas que o gerador envia; com PERCEPTUAL_APRENDER_CONFIANCA > 0, resultados do modelo com
+    // pelo menos essa confiança também entram no índice
+    private static final int PERCEPTUAL_LIMIAR = Integer.parseInt(System.getenv().getOrDefault("PERCEPTUAL_LIMIAR", "-1"));
+    private static final boolean PERCEPTUAL_REFERENCIAS =
+        Boolean.parseBoolean(System.getenv().getOrDefault("PERCEPTUAL_REFERENCIAS", "true"));
+    private static final int PERCEPTUAL_TAMANHO =
+        Integer.parseInt(System.getenv().getOrDefault("PERCEPTUAL_TAMANHO", "100000"));
+    private static final double PERCEPTUAL_APRENDER_CONFIANCA =
+        Double.parseDouble(System.getenv().getOrDefault("PERCEPTUAL_APRENDER_CONFIANCA", "0"));
+    
+    // Prazo das mensagens: o expiration definido pelo gerador ou, sem ele, PRAZO_MS (0 = sem prazo).
+    // Mensagens vencidas vão para a dead-letter exchange (vazio = sem dead-lettering)
+    private static final long PRAZO_MS = Long.parseLong(System.getenv().getOrDefault("PRAZO_MS", "0"));
+    private static final String DEAD_LETTER_EXCHANGE =
+        System.getenv().getOrDefault("DEAD_LETTER_EXCHANGE", "");
+    private static final String DEAD_LETTER_QUEUE =
+        System.getenv().getOrDefault("DEAD_LETTER_QUEUE", "mensagens_descartadas");
+    
+    // Falhas: novas tentativas com espera exponencial via filas de espera (0 = devolver direto para a fila)
+    private static final int REENTREGA_MAX_TENTATIVAS =
+        Integer.parseInt(System.getenv().getOrDefault("REENTREGA_MAX_TENTATIVAS", "3"));
+    private static final long REENTREGA_ATRASO_MS =
+        Long.parseLong(System.getenv().getOrDefault("REENTREGA_ATRASO_MS", "1000"));
+    
+    // Shards por conteúdo: consome só as filas de shard atribuídas a esta instância (0 = fila única)
+    private static final int SHARDS = Integer.parseInt(System.getenv().getOrDefault("SHARDS", "0"));
+    private static final long SHARDS_INTERVALO_MS =
+        Long.parseLong(System.getenv().getOrDefault("SHARDS_INTERVALO_MS", "2000"));
+    
+    // Troca do modelo sem reiniciar: o arquivo é verificado a cada MODELO_VERIFICAR_MS (0 desativa) e
+    // uma nova versão só entra se acertar pelo menos MODELO_ACURACIA_MINIMA das faces de validação
+    private static final long MODELO_VERIFICAR_MS =
+        Long.parseLong(System.getenv().getOrDefault("MODELO_VERIFICAR_MS", "5000"));
+    private static final double MODELO_ACURACIA_MINIMA =
+        Double.parseDouble(System.getenv().getOrDefault("MODELO_ACURACIA_MINIMA", "0.6"));
+    // Sem modelo em MODELO_SENTIMENTO_PATH, treina um com as faces de IMAGENS_DIR antes de consumir
+    private static final boolean MODELO_TREINAR_SE_AUSENTE =
+        Boolean.parseBoolean(System.getenv().getOrDefault("MODELO_TREINAR_SE_AUSENTE", "false"));
+    private static final String MODELO_SENTIMENTO_PATH =
+        System.getenv().getOrDefault("MODELO_SENTIMENTO_PATH", "/modelos/modelo-sentimento.ser");
+    
+    // Porta do endpoint /metrics (0 desativa)
+    private static final int METRICAS_PORTA = Integer.parseInt(System.getenv().getOrDefault("METRICAS_PORTA", "9100"));
+    
     private final ConnectionFactory factory;
     private final ObjectMapper objectMapper;
+    private final CacheResultados<AnalisadorSentimentoSmile.ResultadoAnalise> cache;
+    private final RepositorioConteudo repositorio;
+    private final Metricas metricas = Metricas.global();
+    private DistribuidorShards distribuidor;
     private final AnalisadorSentimentoSmile analisador;
     
     public ConsumidorFace() {
         this.factory = new ConnectionFactory();
         this.objectMapper = new ObjectMapper();
-        this.analisador = new AnalisadorSentimentoSmile();
+        this.analisador = new AnalisadorSentimentoSmile(criarIndicePerceptual(), PERCEPTUAL_APRENDER_CONFIANCA);
+        if (MODELO_VERIFICAR_MS > 0) {
+            analisador.monitorarModelo(Paths.get(IMAGENS_DIR), MODELO_VERIFICAR_MS, MODELO_ACURACIA_MINIMA);
+        }
+        
+        this.cache = new CacheResultados<>(CACHE_TAMANHO);
+        carregarCache();
+        this.repositorio = new RepositorioConteudo(Paths.get(IMAGENS_DIR), Paths.get(REPOSITORIO_DIR));
         
         // Configurar conexão RabbitMQ
         factory.setHost(System.getenv().getOrDefault("RABBITMQ_HOST", "localhost"));
         factory.setPort(Integer.parseInt(System.getenv().getOrDefault("RABBITMQ_PORT", "5672")));
         factory.setUsername(System.getenv().getOrDefault("RABBITMQ_USER", "admin"));
         factory.setPassword(System.getenv().getOrDefault("RABBITMQ_PASS", "admin123"));
+        factory.setVirtualHost(System.getenv().getOrDefault("RABBITMQ_VHOST", "/"));
     }
     
     public void iniciarConsumo() {
-        try (Connection connection = factory.newConnection();
-             Channel channel = connection.createChannel()) {
+        try {
+            if (metricas.expor(METRICAS_PORTA) != null) {
+                System.out.println("Métricas disponíveis em http://localhost:" + METRICAS_PORTA + "/metrics");
+            }
+            
+            Connection connection = factory.newConnection();
+            Channel channel = connection.createChannel();
             
             // Declarar exchange e queue
             channel.exchangeDeclare(EXCHANGE_NAME, "topic", true);
+            declararDeadLetter(channel);
             channel.queueDeclare(QUEUE_NAME, true, false, false, null);
             channel.queueBind(QUEUE_NAME, EXCHANGE_NAME, ROUTING_KEY);
+            if (SHARDS > 0) {
+                distribuidor = new DistribuidorShards(connection, QUEUE_NAME, EXCHANGE_NAME, ROUTING_KEY, SHARDS,
+                    SHARDS_INTERVALO_MS);
+                distribuidor.declarar(channel);
+            }
             
             System.out.println("Consumidor Face conectado! Fila: " + QUEUE_NAME);
             
-            // Configurar QoS para processar uma mensagem por vez
-            channel.basicQos(1);
-            
-            System.out.println("=== CONSUMIDOR FACE INICIADO - Aguardando mensagens de análise facial ===");
+            System.out.println("Modo: " + MODO + ", workers: " + NUM_WORKERS + ", prefetch: " + PREFETCH);
+            System.out.println("Prazo: " + (PRAZO_MS > 0 ? PRAZO_MS + " ms" : "o do expiration da mensagem, se houver")
+                + ", dead-letter: " + (DEAD_LETTER_EXCHANGE.isEmpty() ? "desativado" : DEAD_LETTER_EXCHANGE + " -> " + DEAD_LETTER_QUEUE));
             
-            // Criar consumer
-            DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-                try {
-                    processarMensagem(delivery.getBody());
-                    channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
-                } catch (Exception e) {
-                    logger.error("Erro ao processar mensagem", e);
-                    channel.basicNack(delivery.getEnvelope().getDeliveryTag(), false, true);
-                }
-            };
+            PoliticaReentrega reentrega = REENTREGA_MAX_TENTATIVAS > 0
+                ? new PoliticaReentrega(QUEUE_NAME, EXCHANGE_NAME, REENTREGA_MAX_TENTATIVAS, REENTREGA_ATRASO_MS,
+                    DEAD_LETTER_EXCHANGE)
+                : null;
+            System.out.println("Falhas: " + (reentrega != null ? reentrega.descricao() : "devolvidas direto para a fila"));
             
             CancelCallback cancelCallback = consumerTag -> {
                 logger.warn("Consumer foi cancelado: {}", consumerTag);
             };
             
-            // Iniciar consumo
-            channel.basicConsume(QUEUE_NAME, false, deliverCallback, cancelCallback);
+            if ("lote".equalsIgnoreCase(MODO)) {
+                consumirEmLotes(connection, channel, reentrega, cancelCallback);
+            } else if ("pipeline".equalsIgnoreCase(MODO)) {
+                consumirEmPipeline(connection, channel, reentrega, cancelCallback);
+            } else {
+                consumirPorMensagem(connection, channel, reentrega, cancelCallback);
+            }
+            if (distribuidor != null) {
+                distribuidor.iniciar();
+            }
+            
+            System.out.println("=== CONSUMIDOR FACE INICIADO - Aguardando mensagens de análise facial ===");
             
             // Manter o programa rodando
             logger.info("Pressione CTRL+C para parar o consumidor");
@@ -74,35 +182,503 @@ public class ConsumidorFace {
         }
     }
     
-    private void processarMensagem(byte[] messageBody) {
+    private void consumirPorMensagem(Connection connection, Channel channel, PoliticaReentrega reentrega,
+                                     CancelCallback cancelCallback) throws IOException {
+        // Configurar QoS: uma mensagem pendente por worker (ou o prefetch configurado)
+        channel.basicQos(PREFETCH);
+        
+        // Criar consumer: cada worker processa e confirma as próprias mensagens
+        DespachanteEntregas.ProcessadorEntrega processador = this::processarMensagem;
+        DespachanteEntregas despachante = "virtual".equalsIgnoreCase(MODO)
+            ? DespachanteEntregas.comThreadsVirtuais("consumidor-face", PREFETCH, processador)
+            : DespachanteEntregas.comPool("consumidor-face", NUM_WORKERS, PREFETCH, processador);
+        
+        // Iniciar consumo
+        if (reentrega != null) {
+            reentrega.preparar(channel);
+        }
+        String consumerTag = consumir(channel, despachante.criarCallback(channel, reentrega), cancelCallback);
+        
+        // Encerramento ordenado: parar entregas, drenar workers, fechar canal e conexão
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Parando consumidor face...");
+            try {
+                pararConsumo(channel, consumerTag);
+                despachante.encerrar(TIMEOUT_ENCERRAMENTO_SEGUNDOS);
+                salvarCache();
+                channel.close();
+                connection.close();
+            } catch (Exception e) {
+                logger.warn("Erro ao encerrar consumidor face", e);
+            }
+        }));
+    }
+    
+    private void consumirEmLotes(Connection connection, Channel primeiroCanal, PoliticaReentrega reentrega,
+                                 CancelCallback cancelCallback) throws IOException {
+        // Um canal por acumulador: o ack múltiplo de um lote não pode cobrir mensagens de outro
+        List<Channel> canais = new ArrayList<>();
+        List<String> consumerTags = new ArrayList<>();
+        List<AcumuladorLotes> acumuladores = new ArrayList<>();
+        
+        for (int i = 0; i < NUM_WORKERS; i++) {
+            Channel canal = (i == 0) ? primeiroCanal : connection.createChannel();
+            canal.basicQos(Math.max(PREFETCH, TAMANHO_LOTE));
+            if (reentrega != null) {
+                reentrega.preparar(canal);
+            }
+            
+            AcumuladorLotes acumulador = new AcumuladorLotes("consumidor-face-lote-" + (i + 1), canal, reentrega,
+                TAMANHO_LOTE, ESPERA_LOTE_MS, this::processarLote);
+            consumerTags.add(consumir(canal, acumulador.criarCallback(), cancelCallback));
+            canais.add(canal);
+            acumuladores.add(acumulador);
+        }
+        System.out.println("Lotes de até " + TAMANHO_LOTE + " mensagens, espera máxima " + ESPERA_LOTE_MS + "ms");
+        
+        // Encerramento ordenado: parar entregas, processar lotes pendentes, fechar canais e conexão
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Parando consumidor face...");
+            try {
+                for (int i = 0; i < canais.size(); i++) {
+                    pararConsumo(canais.get(i), consumerTags.get(i));
+                }
+                for (AcumuladorLotes acumulador : acumuladores) {
+                    acumulador.encerrar(TIMEOUT_ENCERRAMENTO_SEGUNDOS);
+                }
+                salvarCache();
+                for (Channel canal : canais) {
+                    canal.close();
+                }
+                connection.close();
+            } catch (Exception e) {
+                logger.warn("Erro ao encerrar consumidor face", e);
+            }
+        }));
+    }
+    
+    private void consumirEmPipeline(Connection connection, Channel channel, PoliticaReentrega reentrega,
+                                    CancelCallback cancelCallback) throws IOException {
+        PipelineEstagios<TrabalhoFace> pipeline = new PipelineEstagios<>("consumidor-face", TrabalhoFace::new, PIPELINE_FILA)
+            .adicionarEstagio("leitura", THREADS_LEITURA, this::lerEResolver)
+            .adicionarEstagio("decodificacao", THREADS_DECODIFICACAO, this::decodificar)
+            .adicionarEstagio("caracteristicas", THREADS_CARACTERISTICAS, this::extrairCaracteristicas)
+            .adicionarEstagio("classificacao", THREADS_CLASSIFICACAO, this::classificar);
+        
+        // Sem prefetch explícito, o suficiente para ocupar todas as threads e filas do pipeline
+        int prefetch = System.getenv().containsKey("CONSUMIDOR_PREFETCH") ? PREFETCH : pipeline.getCapacidade();
+        channel.basicQos(prefetch);
+        if (reentrega != null) {
+            reentrega.preparar(channel);
+        }
+        String consumerTag = consumir(channel, pipeline.iniciar(channel, prefetch, reentrega), cancelCallback);
+        System.out.println("Pipeline: " + pipeline.descricao() + ", filas de " + PIPELINE_FILA + ", prefetch " + prefetch);
+        
+        // Encerramento ordenado: parar entregas, esvaziar o pipeline, fechar canal e conexão
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Parando consumidor face...");
+            try {
+                pararConsumo(channel, consumerTag);
+                pipeline.encerrar(TIMEOUT_ENCERRAMENTO_SEGUNDOS);
+                salvarCache();
+                channel.close();
+                connection.close();
+            } catch (Exception e) {
+                logger.warn("Erro ao encerrar consumidor face", e);
+            }
+        }));
+    }
+    
+    /**
+     * Assina a fila do consumidor ou, com shards, registra o canal para assinar os shards atribuídos.
+     */
+    private String consumir(Channel channel, DeliverCallback callback, CancelCallback cancelCallback) throws IOException {
+        if (distribuidor != null) {
+            distribuidor.adicionar(channel, callback, cancelCallback);
+            return null;
+        }
+        return channel.basicConsume(QUEUE_NAME, false, callback, cancelCallback);
+    }
+    
+    private void pararConsumo(Channel channel, String consumerTag) throws IOException {
+        if (distribuidor != null) {
+            distribuidor.encerrar();
+        } else {
+            channel.basicCancel(consumerTag);
+        }
+    }
+    
+    /**
+     * Estado de uma mensagem ao longo dos estágios do pipeline.
+     */
+    private static final class TrabalhoFace {
+        final Delivery delivery;
+        MensagemImagem mensagem;
+        BufferedImage imagem;
+        long hashPerceptual;
+        double[] caracteristicas;
+        
+        TrabalhoFace(Delivery delivery) {
+            this.delivery = delivery;
+        }
+    }
+    
+    private boolean lerEResolver(TrabalhoFace trabalho) throws IOException, MensagemRejeitadaException {
+        long inicio = System.nanoTime();
+        MensagemImagem mensagem = lerMensagem(trabalho.delivery);
+        metricas.registrarNanos("desserializacao", System.nanoTime() - inicio);
+        metricas.registrarMillis("espera_fila", System.currentTimeMillis() - instanteEnvio(mensagem));
+        verificarPrazo(trabalho.delivery, mensagem);
+        trabalho.mensagem = mensagem;
+        
+        AnalisadorSentimentoSmile.ResultadoAnalise emCache = consultarCache(mensagem);
+        if (emCache != null) {
+            System.out.println("[FACE] Resultado da análise (cache): " + emCache);
+            metricas.registrarMillis("ponta_a_ponta", System.currentTimeMillis() - instanteEnvio(mensagem));
+            return false;
+        }
+        resolverConteudo(mensagem);
+        return true;
+    }
+    
+    private boolean decodificar(TrabalhoFace trabalho) {
+        String erro;
+        try {
+            trabalho.imagem = analisador.decodificar(trabalho.mensagem.getDados(), trabalho.mensagem.getFormatoDados());
+            if (trabalho.imagem != null) {
+                trabalho.hashPerceptual = analisador.hashPerceptual(trabalho.imagem);
+                AnalisadorSentimentoSmile.ResultadoAnalise conhecida =
+                    analisador.consultarPerceptual(trabalho.mensagem.getId(), trabalho.hashPerceptual);
+                if (conhecida == null) {
+                    return true;
+                }
+                trabalho.imagem = null;
+                concluir(trabalho.mensagem, conhecida);
+                return false;
+            }
+            erro = "formato de imagem não reconhecido";
+        } catch (Exception e) {
+            erro = e.getMessage();
+        }
+        // Como no processamento por mensagem, imagem inválida é confirmada com resultado de erro
+        concluir(trabalho.mensagem, new AnalisadorSentimentoSmile.ResultadoAnalise(
+            trabalho.mensagem.getId(), "ERRO", 0.0, "Erro na análise: " + erro));
+        return false;
+    }
+    
+    private boolean extrairCaracteristicas(TrabalhoFace trabalho) {
+        trabalho.caracteristicas = analisador.extrairCaracteristicas(trabalho.imagem,
+            new double[ExtratorCaracteristicas.NUM_CARACTERISTICAS]);
+        trabalho.imagem = null;
+        return true;
+    }
+    
+    private boolean classificar(TrabalhoFace trabalho) {
+        AnalisadorSentimentoSmile.ResultadoAnalise resultado =
+            analisador.classificar(trabalho.mensagem.getId(), trabalho.caracteristicas);
+        analisador.aprenderPerceptual(trabalho.hashPerceptual, resultado);
+        concluir(trabalho.mensagem, resultado);
+        return false;
+    }
+    
+    private void concluir(MensagemImagem mensagem, AnalisadorSentimentoSmile.ResultadoAnalise resultado) {
+        System.out.println("[FACE] Resultado da análise: " + resultado);
+        if (!"ERRO".equals(resultado.sentimento)) {
+            guardarNoCache(mensagem, resultado);
+        }
+        metricas.registrarMillis("ponta_a_ponta", System.currentTimeMillis() - instanteEnvio(mensagem));
+    }
+    
+    private void processarMensagem(Delivery delivery) throws MensagemRejeitadaException {
         try {
             // Deserializar mensagem
-            MensagemImagem mensagem = objectMapper.readValue(messageBody, MensagemImagem.class);
+            long inicio = System.nanoTime();
+            MensagemImagem mensagem = lerMensagem(delivery);
+            metricas.registrarNanos("desserializacao", System.nanoTime() - inicio);
+            metricas.registrarMillis("espera_fila", System.currentTimeMillis() - instanteEnvio(mensagem));
+            verificarPrazo(delivery, mensagem);
             
             System.out.println("[FACE] Processando imagem facial: " + mensagem.getId());
             
             // Analisar sentimento usando Smile ML (FELIZ/TRISTE apenas)
-            AnalisadorSentimentoSmile.ResultadoAnalise resultado = analisador.analisarSentimento(
-                mensagem.getDados(), mensagem.getId());
+            AnalisadorSentimentoSmile.ResultadoAnalise resultado = analisarComCache(mensagem);
             
             System.out.println("[FACE] Resultado da análise: " + resultado);
             
+            metricas.registrarMillis("ponta_a_ponta", System.currentTimeMillis() - instanteEnvio(mensagem));
+            
             // Aqui você poderia salvar o resultado em um banco de dados,
             // enviar para outro serviço, etc.
             
+        } catch (MensagemRejeitadaException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Erro ao processar mensagem", e);
             throw new RuntimeException(e);
         }
     }
     
+    /**
+     * Deserializa conforme o content-type: binário ou JSON (padrão, inclusive sem content-type).
+     * Mensagem binária corrompida é rejeitada: uma nova tentativa leria os mesmos bytes.
+     */
+    private MensagemImagem lerMensagem(Delivery delivery) throws IOException, MensagemRejeitadaException {
+        String contentType = delivery.getProperties() != null ? delivery.getProperties().getContentType() : null;
+        MensagemImagem mensagem;
+        if (CodecMensagem.isBinario(contentType)) {
+            try {
+                mensagem = CodecMensagem.decodificar(delivery.getBody());
+            } catch (IOException e) {
+                throw new MensagemRejeitadaException("Mensagem " + delivery.getEnvelope().getDeliveryTag()
+                    + " rejeitada: " + e.getMessage());
+            }
+        } else {
+            mensagem = objectMapper.readValue(delivery.getBody(), MensagemImagem.class);
+        }
+        if (mensagem.getDados() == null && mensagem.getHashConteudo() != null
+                && !HashConteudo.isSha256(mensagem.getHashConteudo())) {
+            throw new IOException("Hash de conteúdo inválido: " + mensagem.getHashConteudo());
+        }
+        return mensagem;
+    }
+    
+    /**
+     * Mensagem enviada por referência: busca os bytes no repositório local pelo hash.
+     */
+    private void resolverConteudo(MensagemImagem mensagem) throws IOException {
+        if (mensagem.getDados() == null && mensagem.getHashConteudo() != null) {
+            mensagem.setDados(repositorio.obter(mensagem.getHashConteudo(), mensagem.getLocalizador()));
+        }
+    }
+    
+    /**
+     * Processa um lote com uma única chamada de inferência.
+     * Mensagens que não puderam ser lidas ou resolvidas são marcadas como falha; imagem inválida
+     * é confirmada com resultado de erro, como nos outros modos.
+     */
+    private AcumuladorLotes.Desfecho[] processarLote(List<Delivery> lote) {
+        AcumuladorLotes.Desfecho[] desfechos = new AcumuladorLotes.Desfecho[lote.size()];
+        Arrays.fill(desfechos, AcumuladorLotes.Desfecho.DEVOLVER);
+        List<MensagemImagem> mensagens = new ArrayList<>(lote.size());
+        List<Integer> posicoes = new ArrayList<>(lote.size());
+        
+        for (int i = 0; i < lote.size(); i++) {
+            try {
+                long inicio = System.nanoTime();
+                MensagemImagem mensagem = lerMensagem(lote.get(i));
+                metricas.registrarNanos("desserializacao", System.nanoTime() - inicio);
+                metricas.registrarMillis("espera_fila", System.currentTimeMillis() - instanteEnvio(mensagem));
+                verificarPrazo(lote.get(i), mensagem);
+                mensagens.add(mensagem);
+                posicoes.add(i);
+            } catch (IOException e) {
+                logger.error("Erro ao deserializar mensagem do lote", e);
+            } catch (MensagemRejeitadaException e) {
+                desfechos[i] = AcumuladorLotes.Desfecho.REJEITAR;
+            }
+        }
+        
+        // Responder do cache o que já é conhecido; só o restante vai para a inferência
+        List<MensagemImagem> pendentes = new ArrayList<>(mensagens.size());
+        List<Integer> posicoesPendentes = new ArrayList<>(mensagens.size());
+        for (int j = 0; j < mensagens.size(); j++) {
+            MensagemImagem mensagem = mensagens.get(j);
+            AnalisadorSentimentoSmile.ResultadoAnalise emCache = consultarCache(mensagem);
+            if (emCache != null) {
+                System.out.println("[FACE] Resultado da análise (cache): " + emCache);
+                desfechos[posicoes.get(j)] = AcumuladorLotes.Desfecho.CONFIRMAR;
+                metricas.registrarMillis("ponta_a_ponta", System.currentTimeMillis() - instanteEnvio(mensagem));
+            } else {
+                try {
+                    resolverConteudo(mensagem);
+                    pendentes.add(mensagem);
+                    posicoesPendentes.add(posicoes.get(j));
+                } catch (IOException e) {
+                    logger.error("Erro ao resolver conteúdo da mensagem {}", mensagem.getId(), e);
+                }
+            }
+        }
+        
+        if (pendentes.isEmpty()) {
+            return desfechos;
+        }
+        System.out.println("[FACE] Processando lote de " + pendentes.size() + " imagens");
+        
+        List<AnalisadorSentimentoSmile.ResultadoAnalise> resultados = analisador.analisarSentimentoLote(pendentes);
+        
+        for (int j = 0; j < resultados.size(); j++) {
+            AnalisadorSentimentoSmile.ResultadoAnalise resultado = resultados.get(j);
+            System.out.println("[FACE] Resultado da análise: " + resultado);
+            if (!"ERRO".equals(resultado.sentimento)) {
+                guardarNoCache(pendentes.get(j), resultado);
+            }
+            metricas.registrarMillis("ponta_a_ponta", System.currentTimeMillis() - instanteEnvio(pendentes.get(j)));
+            // Como no processamento por mensagem e no pipeline, imagem inválida é confirmada com resultado de erro
+            desfechos[posicoesPendentes.get(j)] = AcumuladorLotes.Desfecho.CONFIRMAR;
+        }
+        return desfechos;
+    }
+    
+    private AnalisadorSentimentoSmile.ResultadoAnalise analisarComCache(MensagemImagem mensagem) throws IOException {
+        AnalisadorSentimentoSmile.ResultadoAnalise resultado = consultarCache(mensagem);
+        if (resultado != null) {
+            return resultado;
+        }
+        resolverConteudo(mensagem);
+        resultado = analisador.analisarSentimento(mensagem.getDados(), mensagem.getFormatoDados(), mensagem.getId());
+        if (!"ERRO".equals(resultado.sentimento)) {
+            guardarNoCache(mensagem, resultado);
+        }
+        return resultado;
+    }
+    
+    private AnalisadorSentimentoSmile.ResultadoAnalise consultarCache(MensagemImagem mensagem) {
+        if (!cache.isAtivo() || !temConteudo(mensagem)) {
+            return null;
+        }
+        AnalisadorSentimentoSmile.ResultadoAnalise emCache = cache.obter(chaveCache(mensagem));
+        if (emCache == null) {
+            return null;
+        }
+        if (emCache.versaoModelo != null && !emCache.versaoModelo.equals(analisador.getVersaoModelo())) {
+            // Produzido por um modelo já substituído: analisa de novo e sobrescreve a entrada
+            metricas.incrementar("cache_versao_antiga");
+            return null;
+        }
+        metricas.incrementar("cache_acerto");
+        return emCache.comImageId(mensagem.getId());
+    }
+    
+    private void guardarNoCache(MensagemImagem mensagem, AnalisadorSentimentoSmile.ResultadoAnalise resultado) {
+        if (cache.isAtivo() && temConteudo(mensagem)) {
+            cache.guardar(chaveCache(mensagem), resultado);
+        }
+    }
+    
+    /**
+     * Rejeita a mensagem cujo prazo, contado do timestamp de envio, já venceu: o broker só descarta
+     * as vencidas quando chegam à frente da fila, então uma mensagem entregue ainda pode estar
+     * atrasada. A verificação vem antes do cache, da resolução do conteúdo e do modelo, e a mensagem
+     * rejeitada segue para a dead-letter exchange da fila.
+     */
+    private void verificarPrazo(Delivery delivery, MensagemImagem mensagem) throws MensagemRejeitadaException {
+        long prazo = prazoMillis(delivery);
+        if (prazo <= 0 || mensagem.getTimestamp() <= 0) {
+            return;
+        }
+        long idade = System.currentTimeMillis() - mensagem.getTimestamp();
+        if (idade > prazo) {
+            metricas.incrementar("expirada");
+            throw new MensagemRejeitadaException("Mensagem " + mensagem.getId() + " expirada: "
+                + idade + " ms, prazo " + prazo + " ms");
+        }
+    }
+    
+    private static long prazoMillis(Delivery delivery) {
+        String expiration = delivery.getProperties() != null ? delivery.getProperties().getExpiration() : null;
+        if (expiration != null) {
+            try {
+                return Long.parseLong(expiration);
+            } catch (NumberFormatException e) {
+                logger.debug("Expiration inválido: {}", expiration);
+            }
+        }
+        return PRAZO_MS;
+    }
+    
+    /**
+     * Declara a dead-letter exchange e a fila que guarda o que foi descartado. A fila principal
+     * não recebe o argumento {@code x-dead-letter-exchange}: quem a liga à exchange é uma policy
+     * do broker, que vale também para filas já existentes (os argumentos de uma fila não mudam
+     * depois de criada, e declarar com outros falharia com PRECONDITION_FAILED).
+     */
+    private static void declararDeadLetter(Channel channel) throws IOException {
+        if (DEAD_LETTER_EXCHANGE.isEmpty()) {
+            return;
+        }
+        channel.exchangeDeclare(DEAD_LETTER_EXCHANGE, "topic", true);
+        channel.queueDeclare(DEAD_LETTER_QUEUE, true, false, false, null);
+        channel.queueBind(DEAD_LETTER_QUEUE, DEAD_LETTER_EXCHANGE, "#");
+    }
+    
+    /**
+     * Instante agendado pelo gerador (ou o do envio, para mensagens sem agendamento): a latência
+     * medida a partir dele inclui o tempo de espera na fila.
+     */
+    private static long instanteEnvio(MensagemImagem mensagem) {
+        return mensagem.getEnvioPrevisto() > 0 ? mensagem.getEnvioPrevisto() : mensagem.getTimestamp();
+    }
+    
+    private static boolean temConteudo(MensagemImagem mensagem) {
+        return mensagem.getDados() != null || mensagem.getHashConteudo() != null;
+    }
+    
+    /**
+     * Por referência o SHA-256 já identifica o conteúdo: um acerto no cache dispensa resolver os bytes.
+     */
+    private static long chaveCache(MensagemImagem mensagem) {
+        return mensagem.getHashConteudo() != null
+            ? HashConteudo.chaveDeSha256(mensagem.getHashConteudo())
+            : HashConteudo.hash64(mensagem.getDados());
+    }
+    
+    private static IndicePerceptual criarIndicePerceptual() {
+        if (PERCEPTUAL_LIMIAR < 0) {
+            return null;
+        }
+        long inicio = System.nanoTime();
+        IndicePerceptual indice = new IndicePerceptual(PERCEPTUAL_LIMIAR, PERCEPTUAL_TAMANHO);
+        if (PERCEPTUAL_REFERENCIAS) {
+            AnalisadorSentimentoSmile.indexarReferencias(Paths.get(IMAGENS_DIR), indice);
+        }
+        System.out.printf("Índice perceptual: %d faces de referência, limiar %d bits (%.0f ms)%n",
+            indice.getTamanho(), PERCEPTUAL_LIMIAR, (System.nanoTime() - inicio) / 1e6);
+        return indice;
+    }
+    
+    private void carregarCache() {
+        if (CACHE_ARQUIVO.isEmpty() || !cache.isAtivo() || !Files.exists(Paths.get(CACHE_ARQUIVO))) {
+            return;
+        }
+        try {
+            cache.carregar(Paths.get(CACHE_ARQUIVO));
+            System.out.println("Cache carregado de " + CACHE_ARQUIVO + ": " + cache.getTamanho() + " resultados");
+        } catch (IOException e) {
+            logger.warn("Não foi possível carregar o cache de {}", CACHE_ARQUIVO, e);
+        }
+    }
+    
+    private void salvarCache() {
+        System.out.println("[FACE] " + cache);
+        System.out.println("[FACE] " + repositorio);
+        if (analisador.getIndicePerceptual() != null) {
+            System.out.println("[FACE] " + analisador.getIndicePerceptual());
+        }
+        if (CACHE_ARQUIVO.isEmpty() || !cache.isAtivo()) {
+            return;
+        }
+        try {
+            cache.salvar(Paths.get(CACHE_ARQUIVO));
+        } catch (IOException e) {
+            logger.warn("Não foi possível salvar o cache em {}", CACHE_ARQUIVO, e);
+        }
+    }
+    
     public static void main(String[] args) {
         System.out.println("=== INICIANDO CONSUMIDOR FACE ===");
         
+        if (MODELO_TREINAR_SE_AUSENTE && !Files.exists(Paths.get(MODELO_SENTIMENTO_PATH))) {
+            try {
+                TreinadorModeloSentimento.treinar(Paths.get(IMAGENS_DIR), Paths.get(MODELO_SENTIMENTO_PATH));
+            } catch (IOException e) {
+                logger.error("Erro ao treinar o modelo de sentimento em {}", MODELO_SENTIMENTO_PATH, e);
+            }
+        }
+        
         // Aguardar RabbitMQ estar pronto
         try {
             System.out.println("Aguardando RabbitMQ e gerador inicializarem...");
-            Thread.sleep(15000); // 15 segundos
+            Thread.sleep(Long.parseLong(System.getenv().getOrDefault("ESPERA_INICIAL_MS", "15000")));
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
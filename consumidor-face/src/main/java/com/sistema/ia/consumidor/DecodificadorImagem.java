@@ -0,0 +1,179 @@
+package com.sistema.ia.consumidor;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodificação de imagens para o caminho de 64x64 das características.
+ *
+ * Em vez de ImageIO.read, que procura um leitor novo a cada chamada, lê os metadados e por
+ * padrão usa arquivo temporário como cache do stream, reaproveita ImageReaders de um pool
+ * limitado por formato e lê do array em memória ignorando os metadados. O pool é compartilhado
+ * entre as threads, então também serve a threads virtuais, que não reaproveitariam um leitor por
+ * thread. Um leitor cuja leitura falhou é descartado em vez de voltar para o pool. Imagens com pelo
+ * menos o dobro de {@code ladoMinimo} são lidas com subamostragem da origem (ImageReadParam): só
+ * uma a cada N linhas e colunas vira pixel, em vez de montar a imagem inteira e descartá-la no
+ * redimensionamento.
+ *
+ * Se o leitor oferece saída TYPE_BYTE_GRAY (JPEGs em tons de cinza, por exemplo), ela é usada
+ * direto. JPEGs coloridos não oferecem: são convertidos de YCbCr para RGB na leitura e só viram
+ * cinza no redimensionamento para 64x64, já na resolução reduzida. Ler só a banda Y (readRaster
+ * com setSourceBands) pularia a conversão, mas daria outro tom de cinza que o da conversão de RGB
+ * usada no treino e nas demais imagens, e mudaria as características.
+ *
+ * A mesma classe existe no gerador (com.sistema.ia.gerador) e no consumidor de faces, com o
+ * mesmo código: o pré-processamento do gerador ({@link #reduzirCinza}) precisa decodificar e
+ * reduzir exatamente como o consumidor. PreProcessadorImagensTest, no gerador, compara as duas.
+ */
+public final class DecodificadorImagem {
+
+    // Leitores livres por formato. Sem um livre, cria-se outro; na devolução com o pool cheio, ele é descartado
+    private static final int LEITORES_POR_FORMATO = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final Map<String, BlockingQueue<ImageReader>> LEITORES = new ConcurrentHashMap<>();
+
+    private DecodificadorImagem() {}
+
+    /**
+     * Decodifica {@code dados} com cada lado com pelo menos {@code ladoMinimo} pixels (ou o
+     * tamanho original, se menor). Retorna null se o formato não for reconhecido.
+     */
+    public static BufferedImage decodificar(byte[] dados, int ladoMinimo) throws IOException {
+        try (ImageInputStream entrada = new MemoryCacheImageInputStream(new ByteArrayInputStream(dados))) {
+            String formato = formato(dados);
+            ImageReader leitor = formato != null ? emprestar(formato) : null;
+            boolean reutilizavel = leitor != null;
+            if (leitor == null) {
+                // Formato não identificado pelo cabeçalho: procura um leitor como o ImageIO.read faria
+                Iterator<ImageReader> leitores = ImageIO.getImageReaders(entrada);
+                if (!leitores.hasNext()) {
+                    return null;
+                }
+                leitor = leitores.next();
+            }
+            boolean lida = false;
+            try {
+                leitor.setInput(entrada, true, true);
+                BufferedImage imagem = leitor.read(0, parametros(leitor, ladoMinimo));
+                lida = true;
+                return imagem;
+            } finally {
+                // Depois de uma falha o estado interno do leitor é incerto: ele não volta para o pool
+                if (reutilizavel && lida) {
+                    devolver(formato, leitor);
+                } else {
+                    leitor.dispose();
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodifica {@code dados} e reduz para {@code lado}x{@code lado} pixels em cinza, linha a linha:
+     * a miniatura bilinear sobre fundo preto de ExtratorCaracteristicas.miniaturaCinza no consumidor.
+     * Retorna null se o formato não for reconhecido.
+     */
+    public static byte[] reduzirCinza(byte[] dados, int lado) throws IOException {
+        BufferedImage original = decodificar(dados, lado);
+        if (original == null) {
+            return null;
+        }
+        BufferedImage miniatura = new BufferedImage(lado, lado, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g2d = miniatura.createGraphics();
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, lado, lado);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(original, 0, 0, lado, lado, null);
+        g2d.dispose();
+        return ((DataBufferByte) miniatura.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Imagem TYPE_BYTE_GRAY {@code lado}x{@code lado} com os pixels já prontos enviados pelo gerador
+     * ({@link MensagemImagem#FORMATO_CINZA_64}), sem decodificação.
+     */
+    public static BufferedImage cinza(byte[] pixels, int lado) throws IOException {
+        if (pixels.length != lado * lado) {
+            throw new IOException("Esperados " + (lado * lado) + " pixels em cinza, recebidos " + pixels.length);
+        }
+        BufferedImage imagem = new BufferedImage(lado, lado, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] destino = ((DataBufferByte) imagem.getRaster().getDataBuffer()).getData();
+        System.arraycopy(pixels, 0, destino, 0, pixels.length);
+        return imagem;
+    }
+
+    private static ImageReadParam parametros(ImageReader leitor, int ladoMinimo) throws IOException {
+        ImageReadParam parametros = leitor.getDefaultReadParam();
+        int passoX = Math.max(1, leitor.getWidth(0) / ladoMinimo);
+        int passoY = Math.max(1, leitor.getHeight(0) / ladoMinimo);
+        if (passoX > 1 || passoY > 1) {
+            parametros.setSourceSubsampling(passoX, passoY, 0, 0);
+        }
+        Iterator<ImageTypeSpecifier> tipos = leitor.getImageTypes(0);
+        while (tipos.hasNext()) {
+            ImageTypeSpecifier tipo = tipos.next();
+            if (tipo.getBufferedImageType() == BufferedImage.TYPE_BYTE_GRAY) {
+                parametros.setDestinationType(tipo);
+                break;
+            }
+        }
+        return parametros;
+    }
+
+    private static ImageReader emprestar(String formato) {
+        ImageReader leitor = livres(formato).poll();
+        if (leitor == null) {
+            Iterator<ImageReader> disponiveis = ImageIO.getImageReadersByFormatName(formato);
+            if (!disponiveis.hasNext()) {
+                return null;
+            }
+            leitor = disponiveis.next();
+        }
+        return leitor;
+    }
+
+    private static void devolver(String formato, ImageReader leitor) {
+        leitor.setInput(null);
+        if (!livres(formato).offer(leitor)) {
+            leitor.dispose();
+        }
+    }
+
+    private static BlockingQueue<ImageReader> livres(String formato) {
+        return LEITORES.computeIfAbsent(formato, f -> new ArrayBlockingQueue<>(LEITORES_POR_FORMATO));
+    }
+
+    /**
+     * Formato pelos primeiros bytes (assinatura do arquivo), ou null se não for um dos usuais.
+     */
+    private static String formato(byte[] dados) {
+        if (dados.length >= 3 && (dados[0] & 0xFF) == 0xFF && (dados[1] & 0xFF) == 0xD8 && (dados[2] & 0xFF) == 0xFF) {
+            return "jpeg";
+        }
+        if (dados.length >= 4 && (dados[0] & 0xFF) == 0x89 && dados[1] == 'P' && dados[2] == 'N' && dados[3] == 'G') {
+            return "png";
+        }
+        if (dados.length >= 4 && dados[0] == 'G' && dados[1] == 'I' && dados[2] == 'F' && dados[3] == '8') {
+            return "gif";
+        }
+        if (dados.length >= 2 && dados[0] == 'B' && dados[1] == 'M') {
+            return "bmp";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,151 @@
+package com.sistema.ia.consumidor;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Distribui as entregas do RabbitMQ entre threads de trabalho, seja um pool fixo
+ * de threads de plataforma ou uma thread virtual por entrega.
+ * O ack/nack de cada mensagem é feito pela mesma thread que a processou.
+ */
+public class DespachanteEntregas {
+
+    private static final Logger logger = LoggerFactory.getLogger(DespachanteEntregas.class);
+
+    /**
+     * Processamento de uma entrega. Lançar exceção faz a mensagem ser tentada de novo (pela
+     * {@link PoliticaReentrega}, ou voltando direto para a fila sem ela), exceto
+     * {@link MensagemRejeitadaException}, que a rejeita para a dead-letter exchange.
+     */
+    public interface ProcessadorEntrega {
+        void processar(Delivery delivery) throws Exception;
+    }
+
+    private final ProcessadorEntrega processador;
+    private final Metricas metricas = Metricas.global();
+    private final ExecutorService workers;
+    private final Semaphore emAndamento;
+
+    private DespachanteEntregas(ExecutorService workers, int maxEmAndamento, ProcessadorEntrega processador) {
+        this.processador = processador;
+        this.workers = workers;
+        this.emAndamento = new Semaphore(maxEmAndamento);
+    }
+
+    /**
+     * Pool fixo de threads de plataforma (modo "pool").
+     */
+    public static DespachanteEntregas comPool(String nome, int numWorkers, int prefetch,
+                                              ProcessadorEntrega processador) {
+        AtomicInteger contador = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(numWorkers, runnable -> {
+            Thread thread = new Thread(runnable, nome + "-worker-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new DespachanteEntregas(workers, prefetch, processador);
+    }
+
+    /**
+     * Uma thread virtual por entrega (modo "virtual"), limitada pelo prefetch.
+     * Em JVMs sem threads virtuais (anteriores ao Java 21) usa uma thread de plataforma por entrega.
+     */
+    public static DespachanteEntregas comThreadsVirtuais(String nome, int prefetch,
+                                                         ProcessadorEntrega processador) {
+        ExecutorService workers;
+        try {
+            workers = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("JVM sem suporte a threads virtuais, usando uma thread de plataforma por mensagem");
+            AtomicInteger contador = new AtomicInteger();
+            ThreadFactory fabrica = runnable -> {
+                Thread thread = new Thread(runnable, nome + "-entrega-" + contador.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            workers = Executors.newCachedThreadPool(fabrica);
+        }
+        return new DespachanteEntregas(workers, prefetch, processador);
+    }
+
+    /**
+     * Cria o callback de entrega: a thread do RabbitMQ apenas repassa a mensagem aos workers.
+     * O semáforo só bloqueia se o broker entregar mais mensagens do que o prefetch permite.
+     *
+     * @param reentrega destino das mensagens que falharam (null = basicNack com requeue)
+     */
+    public DeliverCallback criarCallback(Channel channel, PoliticaReentrega reentrega) {
+        return (consumerTag, delivery) -> {
+            emAndamento.acquireUninterruptibly();
+            try {
+                workers.execute(() -> processarEConfirmar(channel, reentrega, delivery));
+            } catch (RuntimeException e) {
+                emAndamento.release();
+                throw e;
+            }
+        };
+    }
+
+    private void processarEConfirmar(Channel channel, PoliticaReentrega reentrega, Delivery delivery) {
+        long deliveryTag = delivery.getEnvelope().getDeliveryTag();
+        if (delivery.getEnvelope().isRedeliver()) {
+            metricas.incrementar("reentregue");
+        }
+        try {
+            processador.processar(delivery);
+            long inicioAck = System.nanoTime();
+            channel.basicAck(deliveryTag, false);
+            metricas.registrarNanos("ack", System.nanoTime() - inicioAck);
+            metricas.incrementar("processada");
+        } catch (MensagemRejeitadaException e) {
+            rejeitar(channel, deliveryTag, e);
+        } catch (Exception e) {
+            logger.error("Erro ao processar mensagem", e);
+            metricas.incrementar("erro");
+            try {
+                if (reentrega != null && reentrega.reencaminhar(channel, delivery, e)) {
+                    channel.basicAck(deliveryTag, false);
+                } else {
+                    channel.basicNack(deliveryTag, false, true);
+                }
+            } catch (IOException ex) {
+                logger.error("Erro ao devolver mensagem {} para a fila", deliveryTag, ex);
+            }
+        } finally {
+            emAndamento.release();
+        }
+    }
+
+    private void rejeitar(Channel channel, long deliveryTag, MensagemRejeitadaException motivo) {
+        logger.debug("Mensagem {} rejeitada: {}", deliveryTag, motivo.getMessage());
+        metricas.incrementar("descartada");
+        try {
+            channel.basicReject(deliveryTag, false);
+        } catch (IOException e) {
+            logger.error("Erro ao rejeitar mensagem {}", deliveryTag, e);
+        }
+    }
+
+    /**
+     * Encerra o pool aguardando as mensagens em andamento serem confirmadas.
+     * Deve ser chamado depois de cancelar o consumer e antes de fechar o canal.
+     */
+    public void encerrar(long timeoutSegundos) throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(timeoutSegundos, TimeUnit.SECONDS)) {
+            logger.warn("Workers não terminaram em {}s, interrompendo", timeoutSegundos);
+            workers.shutdownNow();
+        }
+    }
+}
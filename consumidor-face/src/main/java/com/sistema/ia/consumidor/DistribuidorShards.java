@@ -0,0 +1,306 @@
+package com.sistema.ia.consumidor;
+
+import com.rabbitmq.client.CancelCallback;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.DeliverCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumo em shards por conteúdo, para afinidade de cache entre várias instâncias.
+ *
+ * O gerador publica cada imagem com a routing key do shard do seu hash (ex.: face.3), e cada
+ * shard tem a sua fila ({@code fila.shard-3}). Cada shard é consumido por uma única instância,
+ * então a mesma imagem cai sempre no mesmo processo e no mesmo cache, em vez de ser distribuída
+ * em round-robin entre todas as réplicas.
+ *
+ * As instâncias se descobrem por uma exchange fanout ({@code fila.membros}): cada uma anuncia o
+ * seu id a cada intervalo e considera ativas as que se anunciaram nos últimos três intervalos.
+ * O dono de cada shard é escolhido por rendezvous hashing sobre as instâncias ativas; quando uma
+ * réplica entra ou sai, só os shards que eram (ou passam a ser) dela mudam de dono, e os caches
+ * das outras continuam valendo. Durante a troca um shard pode ficar brevemente com dois
+ * consumidores, o que só afeta a afinidade, não a entrega.
+ */
+public class DistribuidorShards {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistribuidorShards.class);
+    private static final int INTERVALOS_AUSENCIA = 3;
+    private static final String ANUNCIO = "+";
+    private static final String SAIDA = "-";
+
+    /**
+     * Um canal de consumo e o callback com que ele assina as filas dos shards atribuídos.
+     */
+    private static final class Assinatura {
+        final Channel channel;
+        final DeliverCallback callback;
+        final CancelCallback cancelCallback;
+        final Map<Integer, String> consumerTags = new HashMap<>();
+
+        Assinatura(Channel channel, DeliverCallback callback, CancelCallback cancelCallback) {
+            this.channel = channel;
+            this.callback = callback;
+            this.cancelCallback = cancelCallback;
+        }
+    }
+
+    private final Connection connection;
+    private final String fila;
+    private final String exchange;
+    private final String routingKey;
+    private final int numShards;
+    private final long intervaloMillis;
+    private final String id = UUID.randomUUID().toString();
+    private final String exchangeMembros;
+    private final Map<String, Long> membros = new ConcurrentHashMap<>();
+    private final List<Assinatura> assinaturas = new ArrayList<>();
+    private final Metricas metricas = Metricas.global();
+    private Set<Integer> atribuidos = new TreeSet<>();
+    private Channel canalMembros;
+    private ScheduledExecutorService agendador;
+    private long inicioNanos;
+    private boolean encerrado;
+
+    /**
+     * @param fila       fila base; as dos shards são {@code fila.shard-N}
+     * @param routingKey routing key base; a do shard N é {@code routingKey.N}
+     */
+    public DistribuidorShards(Connection connection, String fila, String exchange, String routingKey, int numShards,
+                              long intervaloMillis) {
+        this.connection = connection;
+        this.fila = fila;
+        this.exchange = exchange;
+        this.routingKey = routingKey;
+        this.numShards = numShards;
+        this.intervaloMillis = intervaloMillis;
+        this.exchangeMembros = fila + ".membros";
+    }
+
+    /**
+     * Declara as filas dos shards, sem argumentos, como a fila principal (o dead-lettering vem
+     * da policy do broker).
+     */
+    public void declarar(Channel channel) throws IOException {
+        for (int shard = 0; shard < numShards; shard++) {
+            channel.queueDeclare(filaShard(shard), true, false, false, null);
+            channel.queueBind(filaShard(shard), exchange, routingKey + "." + shard);
+        }
+    }
+
+    /**
+     * Registra um canal de consumo. Deve ser chamado para todos os canais antes de {@link #iniciar}.
+     */
+    public void adicionar(Channel channel, DeliverCallback callback, CancelCallback cancelCallback) {
+        assinaturas.add(new Assinatura(channel, callback, cancelCallback));
+    }
+
+    /**
+     * Entra no grupo de instâncias e passa a consumir os shards atribuídos. A primeira atribuição
+     * espera um intervalo, para já conhecer as outras instâncias em vez de assumir todos os shards.
+     */
+    public void iniciar() throws IOException {
+        abrirCanalMembros();
+        inicioNanos = System.nanoTime();
+        membros.put(id, inicioNanos);
+        agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, fila + "-shards");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(this::ciclo, 0, intervaloMillis, TimeUnit.MILLISECONDS);
+        System.out.println("Shards: " + numShards + " filas " + filaShard(0) + "..." + filaShard(numShards - 1)
+            + ", instância " + id);
+    }
+
+    /**
+     * Cancela o consumo de todos os shards e avisa as outras instâncias, que assumem os shards
+     * desta no próximo ciclo. Pode ser chamado mais de uma vez.
+     */
+    public synchronized void encerrar() {
+        if (encerrado) {
+            return;
+        }
+        encerrado = true;
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+        for (int shard : atribuidos) {
+            cancelar(shard);
+        }
+        atribuidos.clear();
+        if (canalMembros != null) {
+            try {
+                canalMembros.basicPublish(exchangeMembros, "", null, (SAIDA + id).getBytes(StandardCharsets.UTF_8));
+                canalMembros.close();
+            } catch (Exception e) {
+                logger.warn("Erro ao sair do grupo de instâncias", e);
+            }
+        }
+    }
+
+    /**
+     * Canal dos anúncios: publica os desta instância e recebe os das outras por uma fila exclusiva.
+     */
+    private void abrirCanalMembros() throws IOException {
+        Channel canal = connection.createChannel();
+        canalMembros = canal;
+        try {
+            canal.exchangeDeclare(exchangeMembros, "fanout", false);
+            String filaMembros = canal.queueDeclare("", false, true, true, null).getQueue();
+            canal.queueBind(filaMembros, exchangeMembros, "");
+            canal.basicConsume(filaMembros, true,
+                (consumerTag, delivery) -> registrar(new String(delivery.getBody(), StandardCharsets.UTF_8)),
+                consumerTag -> logger.warn("Consumer de membros cancelado: {}", consumerTag));
+        } catch (IOException | RuntimeException e) {
+            fecharCanalMembros();
+            throw e;
+        }
+    }
+
+    private void fecharCanalMembros() {
+        Channel canal = canalMembros;
+        canalMembros = null;
+        if (canal != null && canal.isOpen()) {
+            try {
+                canal.close();
+            } catch (Exception e) {
+                logger.debug("Erro ao fechar canal de membros", e);
+            }
+        }
+    }
+
+    private void registrar(String mensagem) {
+        if (mensagem.startsWith(SAIDA)) {
+            membros.remove(mensagem.substring(SAIDA.length()));
+        } else if (mensagem.startsWith(ANUNCIO)) {
+            membros.put(mensagem.substring(ANUNCIO.length()), System.nanoTime());
+        }
+    }
+
+    private synchronized void ciclo() {
+        if (encerrado) {
+            return;
+        }
+        try {
+            long agora = System.nanoTime();
+            anunciar();
+            membros.put(id, agora);
+            long ausencia = TimeUnit.MILLISECONDS.toNanos(intervaloMillis * INTERVALOS_AUSENCIA);
+            membros.values().removeIf(visto -> agora - visto > ausencia);
+
+            if (agora - inicioNanos >= TimeUnit.MILLISECONDS.toNanos(intervaloMillis)) {
+                rebalancear();
+            }
+        } catch (RuntimeException e) {
+            // Uma exceção que escapasse cancelaria em silêncio as próximas execuções do agendador
+            logger.error("Erro no ciclo de shards da instância {}", id, e);
+        }
+    }
+
+    /**
+     * Publica o anúncio desta instância, recriando o canal de membros se ele tiver sido fechado.
+     */
+    private void anunciar() {
+        try {
+            if (canalMembros == null || !canalMembros.isOpen()) {
+                fecharCanalMembros();
+                abrirCanalMembros();
+                logger.info("Canal de membros da instância {} recriado", id);
+            }
+            canalMembros.basicPublish(exchangeMembros, "", null, (ANUNCIO + id).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            // Canal fechado (AlreadyClosedException é RuntimeException): é recriado no próximo ciclo
+            logger.warn("Erro ao anunciar instância {}", id, e);
+            fecharCanalMembros();
+        }
+    }
+
+    private void rebalancear() {
+        List<String> ativos = new ArrayList<>(membros.keySet());
+        Set<Integer> novos = new TreeSet<>();
+        for (int shard = 0; shard < numShards; shard++) {
+            if (id.equals(dono(shard, ativos))) {
+                novos.add(shard);
+            }
+        }
+        if (novos.equals(atribuidos)) {
+            return;
+        }
+        for (int shard : atribuidos) {
+            if (!novos.contains(shard)) {
+                cancelar(shard);
+            }
+        }
+        for (int shard : novos) {
+            if (!atribuidos.contains(shard)) {
+                assinar(shard);
+            }
+        }
+        atribuidos = novos;
+        metricas.incrementar("rebalanceamento");
+        System.out.println("[SHARDS] " + membros.size() + " instância(s) ativa(s), shards desta: " + novos);
+    }
+
+    /**
+     * Rendezvous hashing: o dono é a instância com o maior hash de (instância, shard).
+     */
+    static String dono(int shard, List<String> instancias) {
+        String dono = null;
+        long maior = 0;
+        for (String instancia : instancias) {
+            long peso = HashConteudo.hash64((instancia + "#" + shard).getBytes(StandardCharsets.UTF_8));
+            if (dono == null || Long.compareUnsigned(peso, maior) > 0
+                    || (peso == maior && instancia.compareTo(dono) < 0)) {
+                dono = instancia;
+                maior = peso;
+            }
+        }
+        return dono;
+    }
+
+    private void assinar(int shard) {
+        for (Assinatura assinatura : assinaturas) {
+            try {
+                String consumerTag = assinatura.channel.basicConsume(filaShard(shard), false,
+                    assinatura.callback, assinatura.cancelCallback);
+                assinatura.consumerTags.put(shard, consumerTag);
+            } catch (IOException e) {
+                logger.error("Erro ao consumir a fila {}", filaShard(shard), e);
+            }
+        }
+    }
+
+    private void cancelar(int shard) {
+        for (Assinatura assinatura : assinaturas) {
+            String consumerTag = assinatura.consumerTags.remove(shard);
+            if (consumerTag == null) {
+                continue;
+            }
+            try {
+                // As mensagens já entregues continuam nos workers e são confirmadas normalmente
+                assinatura.channel.basicCancel(consumerTag);
+            } catch (IOException e) {
+                logger.warn("Erro ao cancelar o consumo da fila {}", filaShard(shard), e);
+            }
+        }
+    }
+
+    private String filaShard(int shard) {
+        return fila + ".shard-" + shard;
+    }
+}
@@ -0,0 +1,266 @@
+package com.sistema.ia.consumidor;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Extrator das 20 características faciais em uma única passada sobre o raster.
+ *
+ * Lê direto o DataBufferByte de uma imagem TYPE_BYTE_GRAY e acumula histograma, gradientes
+ * e matriz de coocorrência no mesmo laço; as estatísticas (média, desvio, mediana, entropia,
+ * assimetria, curtose, contraste) saem do histograma. Os buffers de trabalho são por thread,
+ * então nenhuma extração aloca memória.
+ *
+ * Os valores são os mesmos de {@link AnalisadorSentimentoSmile#extrairCaracteristicasSmile},
+ * a menos de erro de arredondamento.
+ */
+public final class ExtratorCaracteristicas {
+
+    public static final int NUM_CARACTERISTICAS = 20;
+    public static final int LADO = 64;
+
+    private static final int NIVEIS_COOCORRENCIA = 8;
+
+    // getRGB em TYPE_BYTE_GRAY converte de cinza linear para sRGB; a tabela reproduz a conversão
+    private static final int[] CINZA_PARA_SRGB = new int[256];
+
+    // Nível usado pela entropia de referência: (int)((v / 255.0) * 255), que às vezes vale v - 1
+    private static final int[] NIVEL_ENTROPIA = new int[256];
+
+    static {
+        ColorModel modeloCinza = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY).getColorModel();
+        for (int v = 0; v < 256; v++) {
+            CINZA_PARA_SRGB[v] = modeloCinza.getRGB(v) & 0xFF;
+            NIVEL_ENTROPIA[v] = (int) ((v / 255.0) * 255);
+        }
+    }
+
+    private static final ThreadLocal<Rascunho> RASCUNHO = ThreadLocal.withInitial(Rascunho::new);
+
+    /**
+     * Buffers reutilizados a cada extração pela mesma thread.
+     */
+    private static final class Rascunho {
+        final int[] histograma = new int[256];
+        final int[] histogramaEntropia = new int[256];
+        final int[] coocorrencia = new int[NIVEIS_COOCORRENCIA * NIVEIS_COOCORRENCIA];
+        final BufferedImage miniatura = new BufferedImage(LADO, LADO, BufferedImage.TYPE_BYTE_GRAY);
+        int[] linhaAtual = new int[LADO];
+        int[] linhaSeguinte = new int[LADO];
+
+        void preparar(int largura) {
+            Arrays.fill(histograma, 0);
+            Arrays.fill(histogramaEntropia, 0);
+            Arrays.fill(coocorrencia, 0);
+            if (linhaAtual.length < largura) {
+                linhaAtual = new int[largura];
+                linhaSeguinte = new int[largura];
+            }
+        }
+    }
+
+    private ExtratorCaracteristicas() {}
+
+    /**
+     * Redimensiona para 64x64 em escala de cinza usando a imagem de trabalho da thread.
+     * A imagem retornada é sobrescrita na próxima chamada da mesma thread; uma imagem que
+     * já é 64x64 em cinza (pré-processada pelo gerador) é retornada sem cópia.
+     */
+    public static BufferedImage miniaturaCinza(BufferedImage original) {
+        if (original.getType() == BufferedImage.TYPE_BYTE_GRAY && original.getWidth() == LADO
+                && original.getHeight() == LADO) {
+            return original;
+        }
+        BufferedImage miniatura = RASCUNHO.get().miniatura;
+        Graphics2D g2d = miniatura.createGraphics();
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, LADO, LADO);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(original, 0, 0, LADO, LADO, null);
+        g2d.dispose();
+        return miniatura;
+    }
+
+    /**
+     * Extrai as características de uma imagem TYPE_BYTE_GRAY para um array novo.
+     */
+    public static double[] extrair(BufferedImage cinza) {
+        double[] caracteristicas = new double[NUM_CARACTERISTICAS];
+        extrair(cinza, caracteristicas);
+        return caracteristicas;
+    }
+
+    /**
+     * Extrai as características de uma imagem TYPE_BYTE_GRAY em {@code destino} (20 posições).
+     */
+    public static void extrair(BufferedImage cinza, double[] destino) {
+        if (cinza.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            throw new IllegalArgumentException("Imagem deve ser TYPE_BYTE_GRAY, recebido tipo " + cinza.getType());
+        }
+
+        int largura = cinza.getWidth();
+        int altura = cinza.getHeight();
+        int total = largura * altura;
+
+        WritableRaster raster = cinza.getRaster();
+        ComponentSampleModel modelo = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] dados = buffer.getData();
+        int passoLinha = modelo.getScanlineStride();
+        int passoPixel = modelo.getPixelStride();
+        int inicio = buffer.getOffset()
+            + modelo.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+
+        Rascunho rascunho = RASCUNHO.get();
+        rascunho.preparar(largura);
+        int[] histograma = rascunho.histograma;
+        int[] coocorrencia = rascunho.coocorrencia;
+
+        long somaGradH = 0, somaQuadGradH = 0;
+        long somaGradV = 0, somaQuadGradV = 0;
+        int maxGradH = 0, maxGradV = 0;
+
+        // Passada única: cada linha é convertida uma vez e comparada com a seguinte
+        int[] atual = rascunho.linhaAtual;
+        int[] seguinte = rascunho.linhaSeguinte;
+        lerLinha(dados, inicio, passoPixel, largura, atual);
+
+        for (int y = 0; y < altura; y++) {
+            boolean temSeguinte = y + 1 < altura;
+            if (temSeguinte) {
+                lerLinha(dados, inicio + (y + 1) * passoLinha, passoPixel, largura, seguinte);
+            }
+
+            for (int x = 0; x < largura; x++) {
+                int p = atual[x];
+                histograma[p]++;
+
+                if (x + 1 < largura) {
+                    int direita = atual[x + 1];
+                    int g = Math.abs(direita - p);
+                    somaGradH += g;
+                    somaQuadGradH += g * g;
+                    if (g > maxGradH) maxGradH = g;
+
+                    // Coocorrência horizontal, sem a última linha (como na referência)
+                    if (temSeguinte) {
+                        coocorrencia[(p >> 5) * NIVEIS_COOCORRENCIA + (direita >> 5)]++;
+                    }
+                }
+
+                if (temSeguinte) {
+                    int g = Math.abs(seguinte[x] - p);
+                    somaGradV += g;
+                    somaQuadGradV += g * g;
+                    if (g > maxGradV) maxGradV = g;
+                }
+            }
+
+            int[] troca = atual;
+            atual = seguinte;
+            seguinte = troca;
+        }
+
+        // 1-5: Histograma de intensidade
+        for (int i = 0; i < 5; i++) {
+            destino[i] = histograma[i * 51] / (double) total;
+        }
+
+        // 6-10 e 16-20: estatísticas a partir do histograma
+        double soma = 0, somaQuad = 0;
+        int minimo = -1, maximo = 0;
+        for (int v = 0; v < 256; v++) {
+            int n = histograma[v];
+            if (n == 0) continue;
+            double pixel = v / 255.0;
+            soma += n * pixel;
+            somaQuad += n * pixel * pixel;
+            if (minimo < 0) minimo = v;
+            maximo = v;
+            rascunho.histogramaEntropia[NIVEL_ENTROPIA[v]] += n;
+        }
+        double media = soma / total;
+        double variancia = (somaQuad - soma * media) / (total - 1); // variância amostral, como MathEx.var
+        double desvio = Math.sqrt(variancia);
+
+        double somaDesvioQuad = 0, somaZ3 = 0, somaZ4 = 0;
+        for (int v = minimo; v <= maximo; v++) {
+            int n = histograma[v];
+            if (n == 0) continue;
+            double d = v / 255.0 - media;
+            // Imagem uniforme: sem desvio, assimetria 0 e curtose -3 em vez de NaN (0/0)
+            double z = desvio > 0 ? d / desvio : 0;
+            double z2 = z * z;
+            somaDesvioQuad += n * d * d;
+            somaZ3 += n * z2 * z;
+            somaZ4 += n * z2 * z2;
+        }
+
+        destino[5] = media;
+        destino[6] = desvio;
+        destino[7] = minimo / 255.0;
+        destino[8] = maximo / 255.0;
+        destino[9] = mediana(histograma, total) / 255.0;
+
+        // 11-15: Características de borda (gradientes)
+        int totalH = (largura - 1) * altura;
+        int totalV = largura * (altura - 1);
+        destino[10] = somaGradH / 255.0 / totalH;
+        destino[11] = somaGradV / 255.0 / totalV;
+        destino[12] = maxGradH / 255.0;
+        destino[13] = maxGradV / 255.0;
+        destino[14] = Math.sqrt((somaQuadGradH + somaQuadGradV) / (255.0 * 255.0)) / (totalH + totalV);
+
+        // 16-20: Características de textura
+        destino[15] = Math.sqrt(somaDesvioQuad / total);
+        destino[16] = homogeneidade(coocorrencia, (largura - 1) * (altura - 1));
+        destino[17] = entropia(rascunho.histogramaEntropia, total);
+        destino[18] = somaZ3 / total;
+        destino[19] = somaZ4 / total - 3;
+    }
+
+    private static void lerLinha(byte[] dados, int inicio, int passoPixel, int largura, int[] linha) {
+        for (int x = 0, i = inicio; x < largura; x++, i += passoPixel) {
+            linha[x] = CINZA_PARA_SRGB[dados[i] & 0xFF];
+        }
+    }
+
+    /**
+     * Elemento de posição n/2 na ordem crescente, o mesmo que MathEx.median devolve.
+     */
+    private static int mediana(int[] histograma, int total) {
+        int k = total / 2;
+        int acumulado = 0;
+        for (int v = 0; v < 256; v++) {
+            acumulado += histograma[v];
+            if (acumulado > k) return v;
+        }
+        return 255;
+    }
+
+    private static double homogeneidade(int[] coocorrencia, int total) {
+        double homogeneidade = 0;
+        for (int i = 0; i < NIVEIS_COOCORRENCIA; i++) {
+            for (int j = 0; j < NIVEIS_COOCORRENCIA; j++) {
+                homogeneidade += coocorrencia[i * NIVEIS_COOCORRENCIA + j] / (double) total / (1 + Math.abs(i - j));
+            }
+        }
+        return homogeneidade;
+    }
+
+    private static double entropia(int[] frequencias, int total) {
+        double entropia = 0;
+        for (int freq : frequencias) {
+            if (freq > 0) {
+                double prob = freq / (double) total;
+                entropia -= prob * Math.log(prob) / Math.log(2);
+            }
+        }
+        return entropia;
+    }
+}
@@ -0,0 +1,86 @@
+package com.sistema.ia.consumidor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hash rápido de 64 bits do conteúdo de uma imagem, usado como chave de cache.
+ * Lê 8 bytes por vez e termina com o finalizador do MurmurHash3.
+ *
+ * Também calcula e interpreta o SHA-256 usado nas mensagens enviadas por referência.
+ */
+public final class HashConteudo {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long PRIMO_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIMO_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private HashConteudo() {}
+
+    public static long hash64(byte[] dados) {
+        long h = PRIMO_1 ^ (dados.length * PRIMO_2);
+        int fim = dados.length & ~7;
+        int i = 0;
+        for (; i < fim; i += 8) {
+            long k = (long) LONGS.get(dados, i);
+            k *= PRIMO_2;
+            k = Long.rotateLeft(k, 31);
+            k *= PRIMO_1;
+            h ^= k;
+            h = Long.rotateLeft(h, 27) * PRIMO_1 + 0x52DCE729L;
+        }
+        for (; i < dados.length; i++) {
+            h ^= (dados[i] & 0xFFL) * PRIMO_1;
+            h = Long.rotateLeft(h, 11) * PRIMO_2;
+        }
+        return misturar(h);
+    }
+
+    /**
+     * SHA-256 do conteúdo em hexadecimal minúsculo (64 caracteres).
+     */
+    public static String sha256(byte[] dados) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(dados);
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    public static boolean isSha256(String hash) {
+        if (hash == null || hash.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Chave de cache de 64 bits tirada dos primeiros 16 dígitos de um SHA-256 já conhecido.
+     */
+    public static long chaveDeSha256(String hash) {
+        return Long.parseUnsignedLong(hash.substring(0, 16), 16);
+    }
+
+    private static long misturar(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,128 @@
+package com.sistema.ia.consumidor;
+
+import smile.classification.LogisticRegression;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Modelo de sentimento treinado offline: padronização das 20 características seguida
+ * de regressão logística do Smile (0 = TRISTE, 1 = FELIZ).
+ * É imutável depois de carregado e pode ser compartilhado entre threads.
+ */
+public class ModeloSentimento implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[] medias;
+    private final double[] desvios;
+    private final LogisticRegression classificador;
+    private final String versao;
+    private final double acuracia;
+
+    private ModeloSentimento(double[] medias, double[] desvios, LogisticRegression classificador,
+                             String versao, double acuracia) {
+        this.medias = medias;
+        this.desvios = desvios;
+        this.classificador = classificador;
+        this.versao = versao;
+        this.acuracia = acuracia;
+    }
+
+    /**
+     * Treina o modelo com as características {@code x} e os rótulos {@code y}.
+     */
+    public static ModeloSentimento treinar(double[][] x, int[] y, String versao) {
+        int dimensao = x[0].length;
+        double[] medias = new double[dimensao];
+        double[] desvios = new double[dimensao];
+
+        for (int j = 0; j < dimensao; j++) {
+            double soma = 0, somaQuad = 0;
+            int n = 0;
+            for (double[] linha : x) {
+                if (Double.isNaN(linha[j])) continue;
+                soma += linha[j];
+                somaQuad += linha[j] * linha[j];
+                n++;
+            }
+            medias[j] = n > 0 ? soma / n : 0;
+            double variancia = n > 0 ? somaQuad / n - medias[j] * medias[j] : 0;
+            desvios[j] = variancia > 1e-12 ? Math.sqrt(variancia) : 1;
+        }
+
+        ModeloSentimento semClassificador = new ModeloSentimento(medias, desvios, null, versao, Double.NaN);
+        double[][] padronizado = new double[x.length][];
+        for (int i = 0; i < x.length; i++) {
+            padronizado[i] = semClassificador.padronizar(x[i], new double[dimensao]);
+        }
+
+        return new ModeloSentimento(medias, desvios, LogisticRegression.fit(padronizado, y), versao, Double.NaN);
+    }
+
+    /**
+     * Classifica um vetor de características; {@code posteriori} recebe a probabilidade de cada classe.
+     */
+    public int classificar(double[] caracteristicas, double[] posteriori) {
+        return classificador.predict(padronizar(caracteristicas, new double[medias.length]), posteriori);
+    }
+
+    /**
+     * Classifica um lote de vetores de uma vez; a linha i de {@code posteriori} corresponde a {@code x[i]}.
+     * Linhas nulas (imagens que falharam antes da inferência) recebem classe -1.
+     */
+    public int[] classificarLote(double[][] x, double[][] posteriori) {
+        int[] classes = new int[x.length];
+        double[] padronizado = new double[medias.length];
+        for (int i = 0; i < x.length; i++) {
+            classes[i] = (x[i] == null) ? -1 : classificador.predict(padronizar(x[i], padronizado), posteriori[i]);
+        }
+        return classes;
+    }
+
+    private double[] padronizar(double[] caracteristicas, double[] destino) {
+        for (int j = 0; j < medias.length; j++) {
+            double valor = caracteristicas[j];
+            // Imagens uniformes geram NaN em assimetria/curtose; tratar como valor médio
+            destino[j] = Double.isNaN(valor) ? 0 : (valor - medias[j]) / desvios[j];
+        }
+        return destino;
+    }
+
+    /**
+     * Cópia do modelo com a acurácia medida na validação.
+     */
+    public ModeloSentimento comAcuracia(double acuracia) {
+        return new ModeloSentimento(medias, desvios, classificador, versao, acuracia);
+    }
+
+    public String getVersao() { return versao; }
+    public double getAcuracia() { return acuracia; }
+
+    public void salvar(Path arquivo) throws IOException {
+        if (arquivo.getParent() != null) {
+            Files.createDirectories(arquivo.getParent());
+        }
+        // Escrita atômica: um consumidor observando o arquivo nunca lê um modelo pela metade
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (ObjectOutputStream saida = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario)))) {
+            saida.writeObject(this);
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static ModeloSentimento carregar(Path arquivo) throws IOException {
+        try (ObjectInputStream entrada = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(arquivo)))) {
+            return (ModeloSentimento) entrada.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Arquivo de modelo inválido: " + arquivo, e);
+        }
+    }
+}
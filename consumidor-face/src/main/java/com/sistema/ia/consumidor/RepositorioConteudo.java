@@ -0,0 +1,106 @@
+package com.sistema.ia.consumidor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repositório local endereçado por conteúdo para as mensagens enviadas por referência.
+ *
+ * Cada imagem fica em {@code diretorio/<sha256>}. No primeiro pedido de um hash o arquivo é
+ * copiado do diretório de imagens compartilhado (pelo localizador), conferido contra o hash e
+ * mapeado em memória; os pedidos seguintes só copiam os bytes do mapeamento, sem syscall
+ * nem nova verificação.
+ */
+public class RepositorioConteudo {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepositorioConteudo.class);
+
+    private final Path raizImagens;
+    private final Path diretorio;
+    private final ConcurrentHashMap<String, ByteBuffer> mapeados = new ConcurrentHashMap<>();
+    private final AtomicLong preenchimentos = new AtomicLong();
+
+    public RepositorioConteudo(Path raizImagens, Path diretorio) {
+        this.raizImagens = raizImagens.toAbsolutePath().normalize();
+        this.diretorio = diretorio;
+    }
+
+    /**
+     * Bytes da imagem com o SHA-256 {@code hash}, resolvida por {@code localizador} se ainda
+     * não estiver no repositório.
+     */
+    public byte[] obter(String hash, String localizador) throws IOException {
+        if (!HashConteudo.isSha256(hash)) {
+            throw new IOException("Hash de conteúdo inválido: " + hash);
+        }
+        ByteBuffer conteudo = mapeados.get(hash);
+        if (conteudo == null) {
+            try {
+                conteudo = mapeados.computeIfAbsent(hash, h -> {
+                    try {
+                        return mapear(h, localizador);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        byte[] dados = new byte[conteudo.remaining()];
+        conteudo.duplicate().get(dados);
+        return dados;
+    }
+
+    public int getTamanho() { return mapeados.size(); }
+
+    private ByteBuffer mapear(String hash, String localizador) throws IOException {
+        Path arquivo = diretorio.resolve(hash);
+        if (!Files.exists(arquivo)) {
+            preencher(hash, localizador, arquivo);
+        }
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()).asReadOnlyBuffer();
+        }
+    }
+
+    private void preencher(String hash, String localizador, Path arquivo) throws IOException {
+        if (localizador == null) {
+            throw new IOException("Conteúdo " + hash + " ausente do repositório e mensagem sem localizador");
+        }
+        Path origem = raizImagens.resolve(localizador).normalize();
+        if (!origem.startsWith(raizImagens)) {
+            throw new IOException("Localizador fora do diretório de imagens: " + localizador);
+        }
+
+        byte[] dados = Files.readAllBytes(origem);
+        if (!hash.equals(HashConteudo.sha256(dados))) {
+            throw new IOException("Conteúdo de " + localizador + " não corresponde ao hash " + hash);
+        }
+
+        Files.createDirectories(diretorio);
+        Path temporario = Files.createTempFile(diretorio, hash, ".tmp");
+        Files.write(temporario, dados);
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long total = preenchimentos.incrementAndGet();
+        logger.debug("Repositório preenchido com {} ({} bytes, {} no total)", localizador, dados.length, total);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Repositório de conteúdo: %d imagens mapeadas, %d copiadas de %s",
+            mapeados.size(), preenchimentos.get(), raizImagens);
+    }
+}
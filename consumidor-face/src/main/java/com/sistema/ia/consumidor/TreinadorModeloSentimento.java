@@ -0,0 +1,141 @@
+package com.sistema.ia.consumidor;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Treinamento offline do modelo de sentimento a partir de shared-images/faces/happy|sad.
+ *
+ * As faces separadas para validação (fora do treino) são gravadas ao lado do modelo, em
+ * {@link #arquivoValidacao}: o consumidor valida cada nova versão com elas antes de usá-la.
+ *
+ * Uso: TreinadorModeloSentimento [diretorio-imagens] [arquivo-modelo]
+ */
+public class TreinadorModeloSentimento {
+
+    private static final double FRACAO_VALIDACAO = 0.2;
+
+    public static void main(String[] args) throws IOException {
+        Path imagens = Paths.get(args.length > 0 ? args[0]
+            : System.getenv().getOrDefault("IMAGENS_DIR", "/shared-images"));
+        Path destino = Paths.get(args.length > 1 ? args[1]
+            : System.getenv().getOrDefault("MODELO_SENTIMENTO_PATH", "/modelos/modelo-sentimento.ser"));
+
+        if (treinar(imagens, destino) == null) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Treina com as faces de {@code imagens}/faces/happy|sad e grava o modelo em {@code destino}.
+     * Retorna null, sem gravar nada, se não houver nenhuma imagem.
+     */
+    public static ModeloSentimento treinar(Path imagens, Path destino) throws IOException {
+        System.out.println("=== TREINANDO MODELO DE SENTIMENTO ===");
+
+        List<Amostra> amostras = new ArrayList<>();
+        carregar(imagens, "sad", 0, amostras);
+        carregar(imagens, "happy", 1, amostras);
+        if (amostras.isEmpty()) {
+            System.err.println("Nenhuma imagem encontrada em " + imagens);
+            return null;
+        }
+
+        // Separar uma fração fixa para validação
+        Collections.shuffle(amostras, new Random(42));
+        int numValidacao = (int) (amostras.size() * FRACAO_VALIDACAO);
+        List<Amostra> validacao = amostras.subList(0, numValidacao);
+        List<Amostra> treino = amostras.subList(numValidacao, amostras.size());
+
+        double[][] x = new double[treino.size()][];
+        int[] y = new int[treino.size()];
+        for (int i = 0; i < treino.size(); i++) {
+            x[i] = treino.get(i).caracteristicas;
+            y[i] = treino.get(i).rotulo;
+        }
+
+        String versao = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        ModeloSentimento provisorio = ModeloSentimento.treinar(x, y, versao);
+
+        int acertos = 0;
+        double[] posteriori = new double[2];
+        for (Amostra amostra : validacao) {
+            if (provisorio.classificar(amostra.caracteristicas, posteriori) == amostra.rotulo) acertos++;
+        }
+        double acuracia = validacao.isEmpty() ? Double.NaN : acertos / (double) validacao.size();
+
+        ModeloSentimento modelo = provisorio.comAcuracia(acuracia);
+        // A lista antes do modelo: é a troca do modelo que dispara a recarga no consumidor
+        salvarValidacao(validacao, arquivoValidacao(destino));
+        modelo.salvar(destino);
+
+        System.out.printf("Treino: %d imagens, validação: %d imagens, acurácia: %.1f%%%n",
+            treino.size(), validacao.size(), acuracia * 100);
+        System.out.println("Modelo " + versao + " salvo em " + destino);
+        return modelo;
+    }
+
+    /**
+     * Lista das faces de validação do modelo em {@code modelo}: uma por linha, o rótulo (0 triste,
+     * 1 feliz), uma tabulação e o caminho relativo ao diretório de imagens (ex.: faces/sad/x.jpg).
+     */
+    public static Path arquivoValidacao(Path modelo) {
+        return modelo.resolveSibling(modelo.getFileName() + ".validacao");
+    }
+
+    private static void salvarValidacao(List<Amostra> validacao, Path arquivo) throws IOException {
+        List<String> linhas = new ArrayList<>(validacao.size());
+        for (Amostra amostra : validacao) {
+            linhas.add(amostra.rotulo + "\t" + amostra.caminho);
+        }
+        if (arquivo.getParent() != null) {
+            Files.createDirectories(arquivo.getParent());
+        }
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        Files.write(temporario, linhas, StandardCharsets.UTF_8);
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void carregar(Path imagens, String sentimento, int rotulo, List<Amostra> amostras) throws IOException {
+        Path diretorio = imagens.resolve("faces").resolve(sentimento);
+        if (!Files.isDirectory(diretorio)) {
+            System.out.println("AVISO: diretório não encontrado: " + diretorio);
+            return;
+        }
+        int antes = amostras.size();
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            for (Path arquivo : (Iterable<Path>) arquivos.sorted()::iterator) {
+                // Mesma decodificação do consumidor, para as características baterem com as da inferência
+                BufferedImage imagem = DecodificadorImagem.decodificar(Files.readAllBytes(arquivo), ExtratorCaracteristicas.LADO);
+                if (imagem == null) continue;
+                amostras.add(new Amostra(ExtratorCaracteristicas.extrair(ExtratorCaracteristicas.miniaturaCinza(imagem)), rotulo,
+                    "faces/" + sentimento + "/" + arquivo.getFileName()));
+            }
+        }
+        System.out.println("Carregadas " + (amostras.size() - antes) + " imagens de " + diretorio);
+    }
+
+    private static class Amostra {
+        final double[] caracteristicas;
+        final int rotulo;
+        final String caminho;
+
+        Amostra(double[] caracteristicas, int rotulo, String caminho) {
+            this.caracteristicas = caracteristicas;
+            this.rotulo = rotulo;
+            this.caminho = caminho;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.sistema.ia.consumidor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Observa o arquivo ou diretório de um modelo e chama a recarga quando ele muda.
+ *
+ * A cada intervalo calcula um carimbo (nome, tamanho e data de modificação dos arquivos, até
+ * dois níveis de diretório). Por consulta periódica, e não WatchService, porque eventos de
+ * arquivos em volumes montados nem sempre chegam ao contêiner. Uma mudança só dispara a recarga
+ * depois de um intervalo sem novas mudanças, para não ler um arquivo ainda sendo copiado. Se a
+ * recarga falhar, a mesma versão não é tentada de novo: só a próxima mudança dispara outra.
+ *
+ * A recarga roda numa thread própria; os consumidores continuam com o modelo atual enquanto isso.
+ */
+public class VigiaModelo {
+
+    private static final Logger logger = LoggerFactory.getLogger(VigiaModelo.class);
+
+    @FunctionalInterface
+    public interface Recarga {
+        void recarregar() throws Exception;
+    }
+
+    private final String nome;
+    private final Path caminho;
+    private final long intervaloMillis;
+    private final Recarga recarga;
+
+    private ScheduledExecutorService agendador;
+    private long carregado;
+    private long pendente;
+
+    public VigiaModelo(String nome, Path caminho, long intervaloMillis, Recarga recarga) {
+        this.nome = nome;
+        this.caminho = caminho;
+        this.intervaloMillis = intervaloMillis;
+        this.recarga = recarga;
+    }
+
+    /**
+     * Passa a observar o caminho; o estado atual conta como já carregado.
+     */
+    public synchronized void iniciar() {
+        if (agendador != null) {
+            return;
+        }
+        carregado = carimbo(caminho);
+        pendente = carregado;
+        agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, nome + "-vigia-modelo");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(this::verificar, intervaloMillis, intervaloMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void encerrar() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+    }
+
+    private void verificar() {
+        long atual = carimbo(caminho);
+        if (atual == carregado || atual != pendente) {
+            // Sem mudança, ou ainda mudando: espera o próximo intervalo
+            pendente = atual;
+            return;
+        }
+        carregado = atual;
+        try {
+            recarga.recarregar();
+        } catch (Exception e) {
+            logger.warn("Nova versão de {} em {} rejeitada; mantendo a atual", nome, caminho, e);
+        }
+    }
+
+    /**
+     * Carimbo do estado de um arquivo ou diretório (0 se não existir).
+     */
+    public static long carimbo(Path caminho) {
+        if (!Files.exists(caminho)) {
+            return 0;
+        }
+        try (Stream<Path> arquivos = Files.walk(caminho, 2)) {
+            long carimbo = 1;
+            for (Path arquivo : (Iterable<Path>) arquivos.sorted()::iterator) {
+                BasicFileAttributes atributos = Files.readAttributes(arquivo, BasicFileAttributes.class);
+                if (!atributos.isRegularFile()) {
+                    continue;
+                }
+                carimbo = 31 * carimbo + arquivo.toString().hashCode();
+                carimbo = 31 * carimbo + atributos.size();
+                carimbo = 31 * carimbo + atributos.lastModifiedTime().toMillis();
+            }
+            return carimbo;
+        } catch (IOException | RuntimeException e) {
+            // Arquivo removido durante a listagem: conta como mudança e é lido de novo no próximo intervalo
+            logger.debug("Erro ao verificar {}", caminho, e);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.sistema.ia.consumidor;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Formato binário de {@link CodecMensagem}: ida e volta da versão atual, leitura das versões 1 a 3
+ * ainda publicadas por geradores antigos e rejeição, sempre como IOException, de corpos truncados
+ * ou corrompidos. As cópias do gerador e do consumidor de times precisam ser iguais a esta.
+ */
+class CodecMensagemTest {
+
+    private static final byte[] DADOS = {(byte) 0xFF, (byte) 0xD8, 0, 1, 2, 3, (byte) 0x80, 127};
+
+    @Test
+    void versaoAtualIdaEVolta() throws IOException {
+        MensagemImagem original = mensagem();
+        MensagemImagem lida = CodecMensagem.decodificar(CodecMensagem.codificar(original));
+
+        assertCamposV1(original, lida);
+        assertEquals(original.getHashConteudo(), lida.getHashConteudo(), "hashConteudo");
+        assertEquals(original.getLocalizador(), lida.getLocalizador(), "localizador");
+        assertEquals(original.getEnvioPrevisto(), lida.getEnvioPrevisto(), "envioPrevisto");
+        assertEquals(original.getFormatoDados(), lida.getFormatoDados(), "formatoDados");
+    }
+
+    @Test
+    void textosEDadosNulosSobrevivem() throws IOException {
+        MensagemImagem original = new MensagemImagem();
+        original.setTipo("team");
+        original.setTimestamp(-1);
+        MensagemImagem lida = CodecMensagem.decodificar(CodecMensagem.codificar(original));
+
+        assertEquals("team", lida.getTipo(), "tipo");
+        assertNull(lida.getId(), "id");
+        assertNull(lida.getNomeArquivo(), "nomeArquivo");
+        assertNull(lida.getHashConteudo(), "hashConteudo");
+        assertNull(lida.getLocalizador(), "localizador");
+        assertNull(lida.getFormatoDados(), "formatoDados");
+        assertNull(lida.getDados(), "dados nulos, não vazios");
+        assertEquals(-1, lida.getTimestamp(), "timestamp");
+    }
+
+    @Test
+    void codificarDeUmaFatiaEhIgualACodificarDoArray() {
+        MensagemImagem original = mensagem();
+        byte[] catalogo = new byte[DADOS.length + 10];
+        System.arraycopy(DADOS, 0, catalogo, 5, DADOS.length);
+        ByteBuffer fatia = ByteBuffer.wrap(catalogo, 5, DADOS.length).slice();
+
+        byte[] daFatia = CodecMensagem.codificar(original.getId(), original.getTipo(), original.getNomeArquivo(),
+            original.getTimestamp(), original.getEnvioPrevisto(), original.getHashConteudo(),
+            original.getLocalizador(), original.getFormatoDados(), fatia);
+        assertArrayEquals(CodecMensagem.codificar(original), daFatia, "corpo");
+        assertEquals(DADOS.length, fatia.remaining(), "a fatia não é consumida");
+    }
+
+    @Test
+    void versoesAnterioresContinuamLegiveis() throws IOException {
+        MensagemImagem original = mensagem();
+        for (int versao = 1; versao <= 3; versao++) {
+            MensagemImagem lida = CodecMensagem.decodificar(codificarVersao(original, versao));
+            String contexto = "versão " + versao;
+
+            assertCamposV1(original, lida);
+            assertEquals(versao >= 2 ? original.getHashConteudo() : null, lida.getHashConteudo(), contexto + ": hash");
+            assertEquals(versao >= 2 ? original.getLocalizador() : null, lida.getLocalizador(), contexto + ": localizador");
+            assertEquals(versao >= 3 ? original.getEnvioPrevisto() : 0, lida.getEnvioPrevisto(), contexto + ": envio");
+            assertNull(lida.getFormatoDados(), contexto + ": formatoDados");
+        }
+    }
+
+    @Test
+    void versaoCodificadaAquiEhAQuatro() {
+        assertArrayEquals(codificarVersao(mensagem(), 4), CodecMensagem.codificar(mensagem()), "layout da versão 4");
+    }
+
+    @Test
+    void corpoTruncadoEmQualquerPontoEhRejeitado() {
+        for (int versao = 1; versao <= 4; versao++) {
+            byte[] corpo = codificarVersao(mensagem(), versao);
+            for (int tamanho = 0; tamanho < corpo.length; tamanho++) {
+                byte[] truncado = Arrays.copyOf(corpo, tamanho);
+                assertThrows(IOException.class, () -> CodecMensagem.decodificar(truncado),
+                    "versão " + versao + " truncada em " + tamanho + " de " + corpo.length + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void cabecalhoVersaoETamanhoInvalidosSaoRejeitados() {
+        byte[] corpo = CodecMensagem.codificar(mensagem());
+
+        byte[] semMagic = corpo.clone();
+        semMagic[0] = '{';
+        assertThrows(IOException.class, () -> CodecMensagem.decodificar(semMagic), "JSON no lugar do binário");
+
+        for (byte versao : new byte[]{0, 5, -1}) {
+            byte[] outraVersao = corpo.clone();
+            outraVersao[2] = versao;
+            assertThrows(IOException.class, () -> CodecMensagem.decodificar(outraVersao), "versão " + versao);
+        }
+
+        // Tamanho dos dados corrompido: recusado antes de alocar
+        byte[] tamanhoGigante = corpo.clone();
+        ByteBuffer.wrap(tamanhoGigante).putInt(corpo.length - DADOS.length - 4, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> CodecMensagem.decodificar(tamanhoGigante), "tamanho gigante");
+
+        byte[] tamanhoNegativo = corpo.clone();
+        ByteBuffer.wrap(tamanhoNegativo).putInt(corpo.length - DADOS.length - 4, -2);
+        assertThrows(IOException.class, () -> CodecMensagem.decodificar(tamanhoNegativo), "tamanho negativo");
+    }
+
+    @Test
+    void copiasDoGeradorEDoConsumidorDeTimesSaoIguais() throws IOException {
+        String esperado = ler(Paths.get("src/main/java/com/sistema/ia/consumidor/CodecMensagem.java"));
+        Path gerador = Paths.get("../gerador-mensagens/src/main/java/com/sistema/ia/gerador/CodecMensagem.java");
+        Path team = Paths.get("../consumidor-team/src/main/java/com/sistema/ia/consumidor/CodecMensagem.java");
+        Assumptions.assumeTrue(Files.isRegularFile(gerador) && Files.isRegularFile(team), "módulos fora da árvore");
+        assertEquals(esperado.replace("package com.sistema.ia.consumidor;", "package com.sistema.ia.gerador;"),
+            ler(gerador), "CodecMensagem do gerador difere");
+        assertEquals(esperado, ler(team), "CodecMensagem do consumidor de times difere");
+    }
+
+    private static String ler(Path arquivo) throws IOException {
+        return new String(Files.readAllBytes(arquivo), StandardCharsets.UTF_8);
+    }
+
+    private static void assertCamposV1(MensagemImagem original, MensagemImagem lida) {
+        assertEquals(original.getTipo(), lida.getTipo(), "tipo");
+        assertEquals(original.getId(), lida.getId(), "id");
+        assertEquals(original.getNomeArquivo(), lida.getNomeArquivo(), "nomeArquivo");
+        assertEquals(original.getTimestamp(), lida.getTimestamp(), "timestamp");
+        assertArrayEquals(original.getDados(), lida.getDados(), "dados");
+    }
+
+    private static MensagemImagem mensagem() {
+        MensagemImagem mensagem = new MensagemImagem();
+        mensagem.setId("3f2a9c4e-7b1d-4e8a-9c0f-1a2b3c4d5e6f");
+        mensagem.setTipo("face");
+        mensagem.setNomeArquivo("sorriso_ção.jpg");
+        mensagem.setTimestamp(1_700_000_000_123L);
+        mensagem.setEnvioPrevisto(1_700_000_000_100L);
+        mensagem.setHashConteudo("9e107d9d372bb6826bd81d3542a419d6");
+        mensagem.setLocalizador("faces/happy/sorriso_ção.jpg");
+        mensagem.setFormatoDados(MensagemImagem.FORMATO_CINZA_64);
+        mensagem.setDados(DADOS.clone());
+        return mensagem;
+    }
+
+    /**
+     * Corpo no layout de uma versão específica, escrito à mão a partir da documentação de
+     * {@link CodecMensagem}, como um gerador daquela versão o publicaria.
+     */
+    private static byte[] codificarVersao(MensagemImagem mensagem, int versao) {
+        ByteBuffer saida = ByteBuffer.allocate(1024);
+        saida.put((byte) 'M').put((byte) 'I').put((byte) versao);
+        escreverTexto(saida, mensagem.getTipo());
+        escreverTexto(saida, mensagem.getId());
+        escreverTexto(saida, mensagem.getNomeArquivo());
+        saida.putLong(mensagem.getTimestamp());
+        if (versao >= 2) {
+            escreverTexto(saida, mensagem.getHashConteudo());
+            escreverTexto(saida, mensagem.getLocalizador());
+        }
+        if (versao >= 3) {
+            saida.putLong(mensagem.getEnvioPrevisto());
+        }
+        if (versao >= 4) {
+            escreverTexto(saida, mensagem.getFormatoDados());
+        }
+        saida.putInt(mensagem.getDados().length);
+        saida.put(mensagem.getDados());
+        return Arrays.copyOf(saida.array(), saida.position());
+    }
+
+    private static void escreverTexto(ByteBuffer saida, String texto) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        saida.putShort((short) bytes.length);
+        saida.put(bytes);
+    }
+}
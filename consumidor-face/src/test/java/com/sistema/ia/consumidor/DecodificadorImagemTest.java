@@ -0,0 +1,87 @@
+package com.sistema.ia.consumidor;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Pool de leitores de {@link DecodificadorImagem}: leituras depois de uma falha e de várias threads
+ * ao mesmo tempo dão os mesmos pixels de uma leitura isolada.
+ */
+class DecodificadorImagemTest {
+
+    @Test
+    void leituraDepoisDeUmaFalhaNaoHerdaEstado() throws IOException {
+        byte[] jpeg = codificar(imagem(new Random(1), 200, 150), "jpg");
+        byte[] esperado = DecodificadorImagem.reduzirCinza(jpeg, ExtratorCaracteristicas.LADO);
+
+        // Assinatura de JPEG seguida de lixo: o leitor do pool falha no meio do cabeçalho
+        byte[] corrompido = new byte[jpeg.length];
+        new Random(2).nextBytes(corrompido);
+        System.arraycopy(jpeg, 0, corrompido, 0, 3);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IOException.class, () -> DecodificadorImagem.decodificar(corrompido, ExtratorCaracteristicas.LADO),
+                "JPEG corrompido");
+            assertArrayEquals(esperado, DecodificadorImagem.reduzirCinza(jpeg, ExtratorCaracteristicas.LADO),
+                "leitura seguinte");
+        }
+    }
+
+    @Test
+    void leiturasConcorrentesDaoOsMesmosPixels() throws Exception {
+        Random aleatorio = new Random(5);
+        List<byte[]> arquivos = new ArrayList<>();
+        List<byte[]> esperados = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            byte[] arquivo = codificar(imagem(aleatorio, 90 + 20 * i, 80 + 15 * i), i % 2 == 0 ? "jpg" : "png");
+            arquivos.add(arquivo);
+            esperados.add(DecodificadorImagem.reduzirCinza(arquivo, ExtratorCaracteristicas.LADO));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<byte[]>> resultados = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                byte[] arquivo = arquivos.get(i % arquivos.size());
+                resultados.add(executor.submit(() -> DecodificadorImagem.reduzirCinza(arquivo, ExtratorCaracteristicas.LADO)));
+            }
+            for (int i = 0; i < resultados.size(); i++) {
+                assertArrayEquals(esperados.get(i % esperados.size()), resultados.get(i).get(), "leitura " + i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static BufferedImage imagem(Random aleatorio, int largura, int altura) {
+        BufferedImage imagem = new BufferedImage(largura, altura, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = imagem.createGraphics();
+        for (int forma = 0; forma < 12; forma++) {
+            g2d.setColor(new Color(aleatorio.nextInt(0x1000000)));
+            g2d.fillOval(aleatorio.nextInt(largura), aleatorio.nextInt(altura),
+                1 + aleatorio.nextInt(largura), 1 + aleatorio.nextInt(altura));
+        }
+        g2d.dispose();
+        return imagem;
+    }
+
+    private static byte[] codificar(BufferedImage imagem, String formato) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ImageIO.write(imagem, formato, saida);
+        return saida.toByteArray();
+    }
+}
@@ -0,0 +1,229 @@
+package com.sistema.ia.consumidor;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.Envelope;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Atribuição de shards de {@link DistribuidorShards}: rendezvous hashing estável quando instâncias
+ * entram e saem, e a troca de dono entre duas instâncias reais sobre uma exchange de membros falsa.
+ */
+class DistribuidorShardsTest {
+
+    private static final int SHARDS = 64;
+    private static final long INTERVALO_MS = 40;
+
+    @Test
+    void cadaShardTemUmDonoQueNaoDependeDaOrdem() {
+        List<String> instancias = instancias(5);
+        List<String> invertidas = new ArrayList<>(instancias);
+        Collections.reverse(invertidas);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            String dono = DistribuidorShards.dono(shard, instancias);
+            assertNotNull(dono, "shard " + shard);
+            assertEquals(dono, DistribuidorShards.dono(shard, invertidas), "shard " + shard + " com outra ordem");
+        }
+    }
+
+    @Test
+    void instanciaQueEntraSoTomaShardsParaSi() {
+        List<String> antes = instancias(4);
+        List<String> depois = new ArrayList<>(antes);
+        depois.add("instancia-nova");
+        int movidos = 0;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            String anterior = DistribuidorShards.dono(shard, antes);
+            String atual = DistribuidorShards.dono(shard, depois);
+            if (!anterior.equals(atual)) {
+                assertEquals("instancia-nova", atual, "shard " + shard + " trocou entre instâncias antigas");
+                movidos++;
+            }
+        }
+        assertTrue(movidos > 0 && movidos < SHARDS / 2, movidos + " shards movidos");
+    }
+
+    @Test
+    void instanciaQueSaiSoLiberaOsProprios() {
+        List<String> antes = instancias(5);
+        String saiu = antes.get(2);
+        List<String> depois = new ArrayList<>(antes);
+        depois.remove(saiu);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            String anterior = DistribuidorShards.dono(shard, antes);
+            if (!anterior.equals(saiu)) {
+                assertEquals(anterior, DistribuidorShards.dono(shard, depois), "shard " + shard + " de outra instância");
+            }
+        }
+    }
+
+    @Test
+    void shardsDistribuidosEntreAsInstancias() {
+        List<String> instancias = instancias(4);
+        Map<String, Integer> contagem = new HashMap<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            contagem.merge(DistribuidorShards.dono(shard, instancias), 1, Integer::sum);
+        }
+        for (String instancia : instancias) {
+            int shards = contagem.getOrDefault(instancia, 0);
+            assertTrue(shards >= SHARDS / 16, instancia + " com " + shards + " shards");
+        }
+    }
+
+    @Test
+    void shardsPassamDeUmaInstanciaParaOutraESeJuntamNaSaida() throws Exception {
+        MembrosFalsos membros = new MembrosFalsos();
+        Set<String> filasA = Collections.synchronizedSet(new HashSet<>());
+        Set<String> filasB = Collections.synchronizedSet(new HashSet<>());
+        DistribuidorShards a = distribuidor(membros, filasA);
+        DistribuidorShards b = distribuidor(membros, filasB);
+        try {
+            a.iniciar();
+            aguardar(() -> filasA.size() == 8, "a assume os 8 shards sozinha");
+
+            b.iniciar();
+            aguardar(() -> divididos(filasA, filasB), "shards divididos entre a e b, sem sobreposição");
+
+            b.encerrar();
+            assertTrue(filasB.isEmpty(), "b cancela o consumo ao sair");
+            aguardar(() -> filasA.size() == 8, "a reassume os shards de b");
+        } finally {
+            a.encerrar();
+            b.encerrar();
+        }
+        assertTrue(filasA.isEmpty(), "a cancela o consumo ao sair");
+    }
+
+    private static boolean divididos(Set<String> filasA, Set<String> filasB) {
+        synchronized (filasA) {
+            synchronized (filasB) {
+                Set<String> todas = new HashSet<>(filasA);
+                todas.addAll(filasB);
+                return todas.size() == 8 && filasA.size() + filasB.size() == 8;
+            }
+        }
+    }
+
+    private static void aguardar(BooleanSupplier condicao, String descricao) throws InterruptedException {
+        long limite = System.nanoTime() + 5_000_000_000L;
+        while (!condicao.getAsBoolean()) {
+            assertTrue(System.nanoTime() < limite, "tempo esgotado: " + descricao);
+            Thread.sleep(INTERVALO_MS / 4);
+        }
+    }
+
+    private static List<String> instancias(int quantidade) {
+        List<String> instancias = new ArrayList<>();
+        for (int i = 0; i < quantidade; i++) {
+            instancias.add("instancia-" + i);
+        }
+        return instancias;
+    }
+
+    /**
+     * Distribuidor de 8 shards cujo canal de consumo registra em {@code filas} as filas assinadas.
+     */
+    private static DistribuidorShards distribuidor(MembrosFalsos membros, Set<String> filas) {
+        Connection conexao = proxy(Connection.class, (metodo, argumentos) -> {
+            if ("createChannel".equals(metodo)) {
+                return membros.canal();
+            }
+            throw new IOException("Não suportado pela conexão falsa: " + metodo);
+        });
+        DistribuidorShards distribuidor = new DistribuidorShards(conexao, "face_analysis_queue",
+            "image_processing_exchange", "face", 8, INTERVALO_MS);
+        Channel consumo = proxy(Channel.class, (metodo, argumentos) -> {
+            switch (metodo) {
+                case "basicConsume":
+                    filas.add((String) argumentos[0]);
+                    return argumentos[0];
+                case "basicCancel":
+                    filas.remove((String) argumentos[0]);
+                    return null;
+                default:
+                    throw new IOException("Não suportado pelo canal falso: " + metodo);
+            }
+        });
+        distribuidor.adicionar(consumo, (consumerTag, entrega) -> { }, consumerTag -> { });
+        return distribuidor;
+    }
+
+    /**
+     * Exchange fanout de membros em memória: cada publicação é entregue na hora a todos os canais abertos.
+     */
+    private static final class MembrosFalsos {
+        private final List<DeliverCallback> assinantes = new CopyOnWriteArrayList<>();
+
+        Channel canal() {
+            DeliverCallback[] assinatura = new DeliverCallback[1];
+            boolean[] aberto = {true};
+            AMQP.Queue.DeclareOk declarada = proxy(AMQP.Queue.DeclareOk.class, (metodo, argumentos) -> "membros");
+            return proxy(Channel.class, (metodo, argumentos) -> {
+                switch (metodo) {
+                    case "exchangeDeclare":
+                    case "queueBind":
+                        return null;
+                    case "queueDeclare":
+                        return declarada;
+                    case "basicConsume":
+                        assinatura[0] = (DeliverCallback) argumentos[2];
+                        assinantes.add(assinatura[0]);
+                        return "membros";
+                    case "basicPublish":
+                        byte[] corpo = (byte[]) argumentos[3];
+                        for (DeliverCallback assinante : assinantes) {
+                            assinante.handle("membros", new Delivery(new Envelope(), null, Arrays.copyOf(corpo, corpo.length)));
+                        }
+                        return null;
+                    case "isOpen":
+                        return aberto[0];
+                    case "close":
+                        aberto[0] = false;
+                        assinantes.remove(assinatura[0]);
+                        return null;
+                    default:
+                        throw new IOException("Não suportado pelo canal falso: " + metodo);
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface Resposta {
+        Object responder(String metodo, Object[] argumentos) throws Exception;
+    }
+
+    private static <T> T proxy(Class<T> tipo, Resposta resposta) {
+        return tipo.cast(Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo},
+            (proxy, metodo, argumentos) -> {
+                switch (metodo.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == argumentos[0];
+                    default:
+                        return resposta.responder(metodo.getName(), argumentos);
+                }
+            }));
+    }
+}
@@ -0,0 +1,127 @@
+package com.sistema.ia.consumidor;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara o extrator de passada única com a implementação de referência baseada em MathEx
+ * ({@link AnalisadorSentimentoSmile#extrairCaracteristicasSmile}), nas mesmas imagens.
+ */
+class ExtratorCaracteristicasTest {
+
+    // Diferença tolerada por característica, relativa ao valor de referência (arredondamento)
+    private static final double TOLERANCIA = 1e-9;
+
+    private final AnalisadorSentimentoSmile analisador = new AnalisadorSentimentoSmile(Paths.get("sem-modelo"));
+
+    @Test
+    void imagensSinteticasCoincidemComAReferencia() {
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < 50; i++) {
+            comparar("sintética " + i, imagemSintetica(aleatorio, 16 + aleatorio.nextInt(200), 16 + aleatorio.nextInt(200)));
+        }
+        // Miniatura que já chega em cinza 64x64 (faces pré-processadas pelo gerador)
+        BufferedImage cinza = new BufferedImage(ExtratorCaracteristicas.LADO, ExtratorCaracteristicas.LADO,
+            BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g2d = cinza.createGraphics();
+        g2d.drawImage(imagemSintetica(aleatorio, 64, 64), 0, 0, null);
+        g2d.dispose();
+        comparar("cinza 64x64", cinza);
+    }
+
+    @Test
+    void imagemUniformeNaoGeraNaN() {
+        // A referência divide 0 por 0 (ou por um desvio que é só erro de arredondamento) aqui
+        double[] caracteristicas = ExtratorCaracteristicas.extrair(
+            ExtratorCaracteristicas.miniaturaCinza(imagemUniforme(Color.GRAY)));
+        for (int i = 0; i < caracteristicas.length; i++) {
+            assertTrue(Double.isFinite(caracteristicas[i]), "característica " + i + " = " + caracteristicas[i]);
+        }
+        assertEquals(0.0, caracteristicas[6], 0.0, "desvio");
+        assertEquals(0.0, caracteristicas[18], 0.0, "assimetria");
+        assertEquals(-3.0, caracteristicas[19], 0.0, "curtose");
+    }
+
+    @Test
+    void facesDeSharedImagesCoincidemComAReferencia() throws IOException {
+        List<Path> faces = faces(200);
+        Assumptions.assumeTrue(!faces.isEmpty(), "sem faces em IMAGENS_DIR (padrão ../shared-images)");
+        for (Path face : faces) {
+            BufferedImage imagem = ImageIO.read(new ByteArrayInputStream(Files.readAllBytes(face)));
+            comparar(face.getFileName().toString(), imagem);
+        }
+    }
+
+    private void comparar(String nome, BufferedImage imagem) {
+        double[] referencia = analisador.extrairCaracteristicasSmile(imagem);
+        double[] obtido = ExtratorCaracteristicas.extrair(ExtratorCaracteristicas.miniaturaCinza(imagem));
+        assertEquals(referencia.length, obtido.length, nome + ": número de características");
+        for (int i = 0; i < referencia.length; i++) {
+            assertEquals(referencia[i], obtido[i], TOLERANCIA * Math.max(1.0, Math.abs(referencia[i])),
+                nome + ": característica " + i);
+        }
+    }
+
+    private static BufferedImage imagemSintetica(Random aleatorio, int largura, int altura) {
+        BufferedImage imagem = new BufferedImage(largura, altura, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = imagem.createGraphics();
+        g2d.setColor(new Color(aleatorio.nextInt(0x1000000)));
+        g2d.fillRect(0, 0, largura, altura);
+        for (int forma = 0; forma < 8; forma++) {
+            g2d.setColor(new Color(aleatorio.nextInt(0x1000000)));
+            g2d.fillOval(aleatorio.nextInt(largura), aleatorio.nextInt(altura),
+                1 + aleatorio.nextInt(largura), 1 + aleatorio.nextInt(altura));
+        }
+        g2d.dispose();
+        // Ruído, para a textura não ser só de bordas limpas
+        for (int ruido = 0; ruido < largura * altura / 8; ruido++) {
+            imagem.setRGB(aleatorio.nextInt(largura), aleatorio.nextInt(altura), aleatorio.nextInt(0x1000000));
+        }
+        return imagem;
+    }
+
+    private static BufferedImage imagemUniforme(Color cor) {
+        BufferedImage imagem = new BufferedImage(48, 48, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = imagem.createGraphics();
+        g2d.setColor(cor);
+        g2d.fillRect(0, 0, 48, 48);
+        g2d.dispose();
+        return imagem;
+    }
+
+    /**
+     * Até {@code maximo} faces de IMAGENS_DIR (padrão ../shared-images, a partir do módulo).
+     */
+    static List<Path> faces(int maximo) throws IOException {
+        Path raiz = Paths.get(System.getenv().getOrDefault("IMAGENS_DIR", "../shared-images"));
+        List<Path> faces = new ArrayList<>();
+        for (String sentimento : new String[]{"happy", "sad"}) {
+            Path diretorio = raiz.resolve("faces").resolve(sentimento);
+            if (!Files.isDirectory(diretorio)) {
+                continue;
+            }
+            try (Stream<Path> arquivos = Files.list(diretorio)) {
+                faces.addAll(arquivos.filter(Files::isRegularFile).sorted().limit(maximo / 2).collect(Collectors.toList()));
+            }
+        }
+        return faces;
+    }
+}
@@ -0,0 +1,126 @@
+package com.sistema.ia.consumidor;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hash perceptual das faces e busca no {@link IndicePerceptual}.
+ */
+class HashPerceptualTest {
+
+    private static final int LIMIAR = 4;
+
+    @Test
+    void facesAmpliadasERecodificadasContinuamPerto() throws IOException {
+        List<Path> faces = ExtratorCaracteristicasTest.faces(400);
+        Assumptions.assumeTrue(!faces.isEmpty(), "sem faces em IMAGENS_DIR (padrão ../shared-images)");
+        int encontradas = 0;
+        for (Path face : faces) {
+            BufferedImage original = ImageIO.read(new ByteArrayInputStream(Files.readAllBytes(face)));
+            BufferedImage variante = ImageIO.read(new ByteArrayInputStream(jpeg(ampliar(original, 2))));
+            if (HashPerceptual.distancia(HashPerceptual.dhash(original), HashPerceptual.dhash(variante)) <= LIMIAR) {
+                encontradas++;
+            }
+        }
+        // Conferido com todas as faces de shared-images: 525 de 526 dentro do limiar
+        assertTrue(encontradas >= faces.size() * 0.98,
+            encontradas + " de " + faces.size() + " variantes dentro de " + LIMIAR + " bits");
+    }
+
+    @Test
+    void facesDiferentesRaramenteColidem() throws IOException {
+        List<Path> faces = ExtratorCaracteristicasTest.faces(200);
+        Assumptions.assumeTrue(faces.size() > 1, "sem faces em IMAGENS_DIR (padrão ../shared-images)");
+        long[] hashes = new long[faces.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = HashPerceptual.dhash(ImageIO.read(new ByteArrayInputStream(Files.readAllBytes(faces.get(i)))));
+        }
+        int pares = 0, colisoes = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            for (int j = i + 1; j < hashes.length; j++) {
+                pares++;
+                if (HashPerceptual.distancia(hashes[i], hashes[j]) <= LIMIAR) {
+                    colisoes++;
+                }
+            }
+        }
+        assertTrue(colisoes <= pares * 0.001, colisoes + " de " + pares + " pares distintos dentro do limiar");
+    }
+
+    @Test
+    void buscaNaArvoreIgualAVarreduraCompleta() {
+        Random aleatorio = new Random(23);
+        IndicePerceptual indice = new IndicePerceptual(LIMIAR, 100_000);
+        List<Long> hashes = new ArrayList<>();
+        // Grupos de hashes próximos, como variantes de uma mesma imagem
+        for (int grupo = 0; grupo < 500; grupo++) {
+            long base = aleatorio.nextLong();
+            for (int variante = 0; variante < 4; variante++) {
+                long hash = inverterBits(aleatorio, base, aleatorio.nextInt(6));
+                if (indice.adicionar(hash, "r" + (hashes.size() % 7), "o" + hashes.size())) {
+                    hashes.add(hash);
+                }
+            }
+        }
+        assertEquals(hashes.size(), indice.getTamanho(), "entradas");
+
+        for (int consulta = 0; consulta < 2000; consulta++) {
+            long alvo = consulta % 2 == 0
+                ? inverterBits(aleatorio, hashes.get(aleatorio.nextInt(hashes.size())), aleatorio.nextInt(LIMIAR + 3))
+                : aleatorio.nextLong();
+            int melhor = Integer.MAX_VALUE;
+            for (long hash : hashes) {
+                melhor = Math.min(melhor, HashPerceptual.distancia(alvo, hash));
+            }
+            IndicePerceptual.Correspondencia encontrada = indice.buscar(alvo);
+            if (melhor <= LIMIAR) {
+                assertNotNull(encontrada, "consulta " + consulta + " tinha vizinho a " + melhor + " bits");
+                assertEquals(melhor, encontrada.distancia, "consulta " + consulta);
+            } else {
+                assertNull(encontrada, "consulta " + consulta + " sem vizinho dentro do limiar");
+            }
+        }
+    }
+
+    private static long inverterBits(Random aleatorio, long hash, int quantidade) {
+        long resultado = hash;
+        while (Long.bitCount(resultado ^ hash) < quantidade) {
+            resultado ^= 1L << aleatorio.nextInt(64);
+        }
+        return resultado;
+    }
+
+    private static BufferedImage ampliar(BufferedImage original, int fator) {
+        BufferedImage ampliada = new BufferedImage(original.getWidth() * fator, original.getHeight() * fator,
+            BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = ampliada.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(original, 0, 0, ampliada.getWidth(), ampliada.getHeight(), null);
+        g2d.dispose();
+        return ampliada;
+    }
+
+    private static byte[] jpeg(BufferedImage imagem) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ImageIO.write(imagem, "jpg", saida);
+        return saida.toByteArray();
+    }
+}
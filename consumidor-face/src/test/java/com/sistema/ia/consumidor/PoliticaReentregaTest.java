@@ -0,0 +1,221 @@
+package com.sistema.ia.consumidor;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmCallback;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.Envelope;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contagem de tentativas no cabeçalho e escada de atrasos de {@link PoliticaReentrega}, sobre
+ * canais falsos que guardam as declarações e as republicações e confirmam cada uma na hora.
+ */
+class PoliticaReentregaTest {
+
+    private static final String FILA = "face_analysis_queue";
+
+    /** Publicação feita no canal de republicação */
+    private static final class Publicacao {
+        final String exchange;
+        final String routingKey;
+        final Map<String, Object> cabecalhos;
+
+        Publicacao(String exchange, String routingKey, Map<String, Object> cabecalhos) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.cabecalhos = cabecalhos;
+        }
+    }
+
+    private final Map<String, Map<String, Object>> filasDeclaradas = new HashMap<>();
+    private final Map<String, Map<String, Object>> ligacoes = new HashMap<>();
+    private final List<Publicacao> publicacoes = new ArrayList<>();
+    private boolean brokerAceita = true;
+
+    @Test
+    void filasDeEsperaDobramOAtrasoACadaTentativa() throws IOException {
+        PoliticaReentrega politica = new PoliticaReentrega(FILA, "image_processing_exchange", 4, 250, "dlx");
+        politica.preparar(canalConsumo());
+
+        assertEquals(4, filasDeclaradas.size(), "filas de espera");
+        long[] atrasos = {250, 500, 1000, 2000};
+        for (int tentativa = 1; tentativa <= atrasos.length; tentativa++) {
+            String fila = FILA + ".espera-" + atrasos[tentativa - 1] + "ms";
+            Map<String, Object> argumentos = filasDeclaradas.get(fila);
+            assertEquals(atrasos[tentativa - 1], argumentos.get("x-message-ttl"), fila + ": TTL");
+            assertEquals("image_processing_exchange", argumentos.get("x-dead-letter-exchange"), fila + ": volta");
+            assertEquals("all", ligacoes.get(fila).get("x-match"), fila + ": x-match");
+            assertEquals(tentativa, ligacoes.get(fila).get(PoliticaReentrega.CABECALHO_TENTATIVAS), fila + ": tentativa");
+        }
+        assertEquals("4 tentativas (250 ms, 500 ms, 1000 ms, 2000 ms), depois dlx", politica.descricao());
+    }
+
+    @Test
+    void primeiraFalhaVaiParaAEsperaComATentativaUm() throws IOException {
+        PoliticaReentrega politica = new PoliticaReentrega(FILA, "image_processing_exchange", 3, 100, "dlx");
+        Channel canal = canalConsumo();
+        politica.preparar(canal);
+
+        Map<String, Object> originais = new HashMap<>();
+        originais.put("origem", "gerador");
+        assertTrue(politica.reencaminhar(canal, entrega("face.3", originais), new IllegalStateException("x")),
+            "original confirmada");
+
+        assertEquals(1, publicacoes.size(), "republicações");
+        Publicacao publicacao = publicacoes.get(0);
+        assertEquals(FILA + ".espera", publicacao.exchange, "exchange de espera");
+        assertEquals("face.3", publicacao.routingKey, "routing key original, com o shard");
+        assertEquals(1, publicacao.cabecalhos.get(PoliticaReentrega.CABECALHO_TENTATIVAS), "tentativa");
+        assertEquals("gerador", publicacao.cabecalhos.get("origem"), "cabeçalhos da original mantidos");
+        assertNull(publicacao.cabecalhos.get(PoliticaReentrega.CABECALHO_ERRO), "sem erro antes da dead-letter");
+    }
+
+    @Test
+    void contadorDoCabecalhoAvancaAteADeadLetter() throws IOException {
+        PoliticaReentrega politica = new PoliticaReentrega(FILA, "image_processing_exchange", 3, 100, "dlx");
+        Channel canal = canalConsumo();
+        politica.preparar(canal);
+
+        for (int anteriores = 1; anteriores <= 3; anteriores++) {
+            Map<String, Object> cabecalhos = new HashMap<>();
+            cabecalhos.put(PoliticaReentrega.CABECALHO_TENTATIVAS, anteriores);
+            assertTrue(politica.reencaminhar(canal, entrega("face", cabecalhos), new IllegalStateException("falhou")),
+                "original confirmada");
+        }
+
+        assertEquals(3, publicacoes.size(), "republicações");
+        assertEquals(2, publicacoes.get(0).cabecalhos.get(PoliticaReentrega.CABECALHO_TENTATIVAS), "segunda tentativa");
+        assertEquals(3, publicacoes.get(1).cabecalhos.get(PoliticaReentrega.CABECALHO_TENTATIVAS), "terceira tentativa");
+        Publicacao deadLetter = publicacoes.get(2);
+        assertEquals("dlx", deadLetter.exchange, "dead-letter depois da última tentativa");
+        assertEquals("java.lang.IllegalStateException: falhou", deadLetter.cabecalhos.get(PoliticaReentrega.CABECALHO_ERRO),
+            "erro no cabeçalho");
+    }
+
+    @Test
+    void semDeadLetterAUltimaFalhaEhDescartada() throws IOException {
+        PoliticaReentrega politica = new PoliticaReentrega(FILA, "image_processing_exchange", 1, 100, "");
+        Channel canal = canalConsumo();
+        politica.preparar(canal);
+
+        Map<String, Object> cabecalhos = new HashMap<>();
+        cabecalhos.put(PoliticaReentrega.CABECALHO_TENTATIVAS, 1);
+        assertTrue(politica.reencaminhar(canal, entrega("face", cabecalhos), null), "original confirmada");
+        assertEquals(0, publicacoes.size(), "nada republicado");
+    }
+
+    @Test
+    void republicacaoRecusadaDevolveAOriginal() throws IOException {
+        PoliticaReentrega politica = new PoliticaReentrega(FILA, "image_processing_exchange", 3, 100, "dlx");
+        Channel canal = canalConsumo();
+        politica.preparar(canal);
+
+        brokerAceita = false;
+        assertFalse(politica.reencaminhar(canal, entrega("face", null), null), "original volta para a fila");
+        assertEquals(1, publicacoes.size(), "republicações");
+    }
+
+    private static Delivery entrega(String routingKey, Map<String, Object> cabecalhos) {
+        return new Delivery(new Envelope(7, false, "image_processing_exchange", routingKey),
+            new AMQP.BasicProperties.Builder().headers(cabecalhos).build(), new byte[]{1, 2, 3});
+    }
+
+    private Channel canalConsumo() {
+        Connection conexao = proxy(Connection.class, (metodo, argumentos) -> {
+            if ("createChannel".equals(metodo)) {
+                return canalRepublicacao();
+            }
+            throw new IOException("Não suportado pela conexão falsa: " + metodo);
+        });
+        return proxy(Channel.class, (metodo, argumentos) -> {
+            switch (metodo) {
+                case "exchangeDeclare":
+                case "addShutdownListener":
+                    return null;
+                case "queueDeclare":
+                    filasDeclaradas.put((String) argumentos[0], mapa(argumentos[4]));
+                    return null;
+                case "queueBind":
+                    ligacoes.put((String) argumentos[0], mapa(argumentos[3]));
+                    return null;
+                case "getConnection":
+                    return conexao;
+                case "isOpen":
+                    return true;
+                default:
+                    throw new IOException("Não suportado pelo canal falso: " + metodo);
+            }
+        });
+    }
+
+    private Channel canalRepublicacao() {
+        ConfirmCallback[] confirmacoes = new ConfirmCallback[2];
+        long[] sequencia = {1};
+        return proxy(Channel.class, (metodo, argumentos) -> {
+            switch (metodo) {
+                case "confirmSelect":
+                case "addShutdownListener":
+                    return null;
+                case "addConfirmListener":
+                    confirmacoes[0] = (ConfirmCallback) argumentos[0];
+                    confirmacoes[1] = (ConfirmCallback) argumentos[1];
+                    return null;
+                case "getNextPublishSeqNo":
+                    return sequencia[0];
+                case "basicPublish":
+                    AMQP.BasicProperties propriedades = (AMQP.BasicProperties) argumentos[2];
+                    publicacoes.add(new Publicacao((String) argumentos[0], (String) argumentos[1],
+                        propriedades.getHeaders()));
+                    // Confirmação imediata, ack ou nack conforme o teste
+                    confirmacoes[brokerAceita ? 0 : 1].handle(sequencia[0]++, false);
+                    return null;
+                case "isOpen":
+                    return true;
+                default:
+                    throw new IOException("Não suportado pelo canal falso: " + metodo);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Resposta {
+        Object responder(String metodo, Object[] argumentos) throws Exception;
+    }
+
+    /**
+     * Implementação falsa de {@code tipo}; hashCode e equals são os de identidade, porque a política
+     * usa o canal de consumo como chave de mapa.
+     */
+    private static <T> T proxy(Class<T> tipo, Resposta resposta) {
+        return tipo.cast(Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo},
+            (proxy, metodo, argumentos) -> {
+                switch (metodo.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == argumentos[0];
+                    default:
+                        return resposta.responder(metodo.getName(), argumentos);
+                }
+            }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> mapa(Object mapa) {
+        return (Map<String, Object>) mapa;
+    }
+}
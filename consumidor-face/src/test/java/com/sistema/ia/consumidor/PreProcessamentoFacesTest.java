@@ -0,0 +1,82 @@
+package com.sistema.ia.consumidor;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Faces pré-processadas pelo gerador ({@link MensagemImagem#FORMATO_CINZA_64}) devem dar
+ * exatamente as mesmas características que o arquivo de imagem original.
+ *
+ * O tensor vem de {@link DecodificadorImagem#reduzirCinza}, o mesmo código que PreProcessadorImagens
+ * chama no gerador; PreProcessadorImagensTest, lá, confere que as duas cópias da classe são iguais.
+ */
+class PreProcessamentoFacesTest {
+
+    private final AnalisadorSentimentoSmile analisador = new AnalisadorSentimentoSmile(Paths.get("sem-modelo"));
+
+    @Test
+    void tensorDaFaceTemAsMesmasCaracteristicasQueOArquivo() throws IOException {
+        int comparadas = 0;
+        for (Path face : ExtratorCaracteristicasTest.faces(400)) {
+            comparar(face.getFileName().toString(), Files.readAllBytes(face));
+            comparadas++;
+        }
+        Assumptions.assumeTrue(comparadas > 0, "sem faces em IMAGENS_DIR (padrão ../shared-images)");
+    }
+
+    @Test
+    void tensorDeImagensSinteticasTemAsMesmasCaracteristicas() throws IOException {
+        Random aleatorio = new Random(7);
+        // Tamanhos abaixo, perto e acima do dobro de 64 (com e sem subamostragem na leitura)
+        int[] lados = {48, 64, 100, 128, 200, 317};
+        for (int lado : lados) {
+            for (String formato : new String[]{"png", "jpg"}) {
+                comparar(lado + "." + formato, codificar(imagem(aleatorio, lado, lado * 3 / 4 + 1), formato));
+            }
+        }
+    }
+
+    private void comparar(String nome, byte[] arquivo) throws IOException {
+        byte[] pixels = DecodificadorImagem.reduzirCinza(arquivo, ExtratorCaracteristicas.LADO);
+        assertEquals(ExtratorCaracteristicas.LADO * ExtratorCaracteristicas.LADO, pixels.length, nome + ": tamanho do tensor");
+
+        double[] doArquivo = analisador.extrairCaracteristicas(analisador.decodificar(arquivo, null),
+            new double[ExtratorCaracteristicas.NUM_CARACTERISTICAS]);
+        double[] doTensor = analisador.extrairCaracteristicas(
+            analisador.decodificar(pixels, MensagemImagem.FORMATO_CINZA_64),
+            new double[ExtratorCaracteristicas.NUM_CARACTERISTICAS]);
+        assertArrayEquals(doArquivo, doTensor, nome);
+    }
+
+    private static BufferedImage imagem(Random aleatorio, int largura, int altura) {
+        BufferedImage imagem = new BufferedImage(largura, altura, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = imagem.createGraphics();
+        for (int forma = 0; forma < 12; forma++) {
+            g2d.setColor(new Color(aleatorio.nextInt(0x1000000)));
+            g2d.fillOval(aleatorio.nextInt(largura), aleatorio.nextInt(altura),
+                1 + aleatorio.nextInt(largura), 1 + aleatorio.nextInt(altura));
+        }
+        g2d.dispose();
+        return imagem;
+    }
+
+    private static byte[] codificar(BufferedImage imagem, String formato) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ImageIO.write(imagem, formato, saida);
+        return saida.toByteArray();
+    }
+}
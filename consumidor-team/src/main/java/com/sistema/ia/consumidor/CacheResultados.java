@@ -0,0 +1,119 @@
+package com.sistema.ia.consumidor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de resultados endereçado pelo conteúdo da imagem (hash de 64 bits dos bytes).
+ * Tamanho limitado com remoção LRU, contadores de acertos/falhas e persistência opcional
+ * em arquivo para sobreviver a reinícios.
+ */
+public class CacheResultados<V extends Serializable> {
+
+    private final int capacidade;
+    private final LinkedHashMap<Long, V> entradas;
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+
+    public CacheResultados(int capacidade) {
+        this.capacidade = capacidade;
+        this.entradas = new LinkedHashMap<Long, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, V> maisAntiga) {
+                return size() > CacheResultados.this.capacidade;
+            }
+        };
+    }
+
+    public boolean isAtivo() {
+        return capacidade > 0;
+    }
+
+    /**
+     * Retorna o resultado guardado para a chave, ou null em caso de falha.
+     */
+    public V obter(long chave) {
+        if (!isAtivo()) {
+            return null;
+        }
+        V valor;
+        synchronized (entradas) {
+            valor = entradas.get(chave);
+        }
+        (valor != null ? acertos : falhas).incrementAndGet();
+        return valor;
+    }
+
+    public void guardar(long chave, V valor) {
+        if (!isAtivo()) {
+            return;
+        }
+        synchronized (entradas) {
+            entradas.put(chave, valor);
+        }
+    }
+
+    public long getAcertos() { return acertos.get(); }
+    public long getFalhas() { return falhas.get(); }
+
+    public int getTamanho() {
+        synchronized (entradas) {
+            return entradas.size();
+        }
+    }
+
+    public double getTaxaAcerto() {
+        long total = acertos.get() + falhas.get();
+        return total == 0 ? 0 : acertos.get() / (double) total;
+    }
+
+    /**
+     * Grava as entradas da menos para a mais recente, preservando a ordem LRU na recarga.
+     */
+    public void salvar(Path arquivo) throws IOException {
+        if (arquivo.getParent() != null) {
+            Files.createDirectories(arquivo.getParent());
+        }
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (ObjectOutputStream saida = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario)))) {
+            synchronized (entradas) {
+                saida.writeInt(entradas.size());
+                for (Map.Entry<Long, V> entrada : entradas.entrySet()) {
+                    saida.writeLong(entrada.getKey());
+                    saida.writeObject(entrada.getValue());
+                }
+            }
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void carregar(Path arquivo) throws IOException {
+        try (ObjectInputStream entrada = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(arquivo)))) {
+            int quantidade = entrada.readInt();
+            synchronized (entradas) {
+                for (int i = 0; i < quantidade; i++) {
+                    entradas.put(entrada.readLong(), (V) entrada.readObject());
+                }
+            }
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Arquivo de cache inválido: " + arquivo, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Cache{entradas=%d, acertos=%d, falhas=%d, taxa=%.1f%%}",
+            getTamanho(), getAcertos(), getFalhas(), getTaxaAcerto() * 100);
+    }
+}
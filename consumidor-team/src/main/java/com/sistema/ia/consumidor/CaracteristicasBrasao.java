@@ -0,0 +1,176 @@
+package com.sistema.ia.consumidor;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Vetor de características de um brasão: histograma de cores mais descritores de forma.
+ *
+ * A imagem é reduzida para 32x32 ARGB e só os pixels do brasão entram na conta: os opacos,
+ * em PNGs com fundo transparente, ou os que diferem da cor dos cantos, nas demais.
+ *
+ * - Cor (28): matiz em 12 faixas por 2 níveis de saturação, mais 4 níveis de cinza para os
+ *   pixels sem cor, normalizado pela área do brasão.
+ * - Forma (16 + 8 + 1): ocupação do brasão numa grade 4x4, histograma de orientação das bordas
+ *   (8 direções, ponderado pela intensidade do gradiente) e proporção largura/altura.
+ *
+ * Os buffers de trabalho são por thread; o vetor é escrito no destino informado.
+ */
+public final class CaracteristicasBrasao {
+
+    public static final int DIMENSAO = 53;
+
+    private static final int LADO = 32;
+    private static final int FAIXAS_MATIZ = 12;
+    private static final int NIVEIS_CINZA = 4;
+    private static final int GRADE = 4;
+    private static final int DIRECOES = 8;
+    private static final int INICIO_GRADE = FAIXAS_MATIZ * 2 + NIVEIS_CINZA;
+    private static final int INICIO_BORDAS = INICIO_GRADE + GRADE * GRADE;
+    private static final int POSICAO_PROPORCAO = INICIO_BORDAS + DIRECOES;
+
+    // Peso de cada grupo na distância: a cor distingue mais que a forma entre brasões parecidos
+    private static final double PESO_COR = 1.0;
+    private static final double PESO_GRADE = 0.5;
+    private static final double PESO_BORDAS = 0.5;
+    private static final double PESO_PROPORCAO = 0.25;
+
+    private static final ThreadLocal<Rascunho> RASCUNHO = ThreadLocal.withInitial(Rascunho::new);
+
+    private static final class Rascunho {
+        final BufferedImage miniatura = new BufferedImage(LADO, LADO, BufferedImage.TYPE_INT_ARGB);
+        final boolean[] brasao = new boolean[LADO * LADO];
+        final double[] cinza = new double[LADO * LADO];
+        final float[] hsb = new float[3];
+    }
+
+    private CaracteristicasBrasao() {}
+
+    /**
+     * Preenche {@code destino} (pelo menos {@link #DIMENSAO} posições) e o retorna.
+     */
+    public static double[] extrair(BufferedImage imagem, double[] destino) {
+        Rascunho rascunho = RASCUNHO.get();
+        int[] argb = reduzir(imagem, rascunho.miniatura);
+        boolean[] brasao = rascunho.brasao;
+        double[] cinza = rascunho.cinza;
+        Arrays.fill(destino, 0, DIMENSAO, 0.0);
+
+        boolean transparente = imagem.getColorModel().hasAlpha() && cantoTransparente(argb);
+        int fundo = transparente ? 0 : corDosCantos(argb);
+        int area = 0;
+        int minX = LADO, minY = LADO, maxX = -1, maxY = -1;
+        for (int y = 0; y < LADO; y++) {
+            for (int x = 0; x < LADO; x++) {
+                int i = y * LADO + x;
+                int pixel = argb[i];
+                int r = (pixel >> 16) & 0xFF, g = (pixel >> 8) & 0xFF, b = pixel & 0xFF;
+                cinza[i] = (0.299 * r + 0.587 * g + 0.114 * b) / 255.0;
+                brasao[i] = transparente ? (pixel >>> 24) >= 128 : distancia(pixel, fundo) > 48;
+                if (!brasao[i]) {
+                    continue;
+                }
+                area++;
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+
+                Color.RGBtoHSB(r, g, b, rascunho.hsb);
+                float saturacao = rascunho.hsb[1], brilho = rascunho.hsb[2];
+                if (saturacao < 0.2f || brilho < 0.2f) {
+                    destino[FAIXAS_MATIZ * 2 + Math.min(NIVEIS_CINZA - 1, (int) (brilho * NIVEIS_CINZA))]++;
+                } else {
+                    int matiz = Math.min(FAIXAS_MATIZ - 1, (int) (rascunho.hsb[0] * FAIXAS_MATIZ));
+                    destino[matiz * 2 + (saturacao < 0.6f ? 0 : 1)]++;
+                }
+                destino[INICIO_GRADE + (y * GRADE / LADO) * GRADE + (x * GRADE / LADO)]++;
+            }
+        }
+        if (area == 0) {
+            return destino;
+        }
+
+        for (int i = 0; i < INICIO_GRADE; i++) {
+            destino[i] = destino[i] / area * PESO_COR;
+        }
+        double celula = (double) (LADO / GRADE) * (LADO / GRADE);
+        for (int i = INICIO_GRADE; i < INICIO_BORDAS; i++) {
+            destino[i] = destino[i] / celula * PESO_GRADE;
+        }
+
+        // Orientação das bordas (Sobel) dentro do brasão
+        double totalBordas = 0;
+        for (int y = 1; y < LADO - 1; y++) {
+            for (int x = 1; x < LADO - 1; x++) {
+                int i = y * LADO + x;
+                if (!brasao[i]) {
+                    continue;
+                }
+                double gx = cinza[i - LADO + 1] + 2 * cinza[i + 1] + cinza[i + LADO + 1]
+                    - cinza[i - LADO - 1] - 2 * cinza[i - 1] - cinza[i + LADO - 1];
+                double gy = cinza[i + LADO - 1] + 2 * cinza[i + LADO] + cinza[i + LADO + 1]
+                    - cinza[i - LADO - 1] - 2 * cinza[i - LADO] - cinza[i - LADO + 1];
+                double magnitude = Math.sqrt(gx * gx + gy * gy);
+                if (magnitude < 1e-3) {
+                    continue;
+                }
+                // Direção sem sentido (0 a π): uma borda clara-escura e a escura-clara contam igual
+                double angulo = Math.atan2(gy, gx);
+                if (angulo < 0) {
+                    angulo += Math.PI;
+                }
+                destino[INICIO_BORDAS + Math.min(DIRECOES - 1, (int) (angulo / Math.PI * DIRECOES))] += magnitude;
+                totalBordas += magnitude;
+            }
+        }
+        if (totalBordas > 0) {
+            for (int i = INICIO_BORDAS; i < POSICAO_PROPORCAO; i++) {
+                destino[i] = destino[i] / totalBordas * PESO_BORDAS;
+            }
+        }
+
+        double largura = maxX - minX + 1, altura = maxY - minY + 1;
+        destino[POSICAO_PROPORCAO] = largura / (largura + altura) * PESO_PROPORCAO;
+        return destino;
+    }
+
+    private static int[] reduzir(BufferedImage imagem, BufferedImage miniatura) {
+        Graphics2D g2d = miniatura.createGraphics();
+        try {
+            g2d.setComposite(AlphaComposite.Src);
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(imagem, 0, 0, LADO, LADO, null);
+        } finally {
+            g2d.dispose();
+        }
+        return ((DataBufferInt) miniatura.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Média dos quatro cantos, tomada como cor de fundo das imagens sem transparência.
+     */
+    private static int corDosCantos(int[] argb) {
+        int[] cantos = {argb[0], argb[LADO - 1], argb[LADO * (LADO - 1)], argb[LADO * LADO - 1]};
+        int r = 0, g = 0, b = 0;
+        for (int canto : cantos) {
+            r += (canto >> 16) & 0xFF;
+            g += (canto >> 8) & 0xFF;
+            b += canto & 0xFF;
+        }
+        return (r / 4) << 16 | (g / 4) << 8 | (b / 4);
+    }
+
+    private static boolean cantoTransparente(int[] argb) {
+        return (argb[0] >>> 24) < 128 || (argb[LADO - 1] >>> 24) < 128
+            || (argb[LADO * (LADO - 1)] >>> 24) < 128 || (argb[LADO * LADO - 1] >>> 24) < 128;
+    }
+
+    private static int distancia(int a, int b) {
+        return Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF))
+            + Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF))
+            + Math.abs((a & 0xFF) - (b & 0xFF));
+    }
+}
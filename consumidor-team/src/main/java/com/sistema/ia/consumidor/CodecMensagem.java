@@ -0,0 +1,152 @@
+package com.sistema.ia.consumidor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formato binário versionado de {@link MensagemImagem}, alternativo ao JSON.
+ *
+ * Layout (big-endian): magic "MI" (2 bytes), versão (1 byte), tipo, id e nomeArquivo
+ * (tamanho em 2 bytes + UTF-8), timestamp (8 bytes), tamanho dos dados (4 bytes, -1 = nulo)
+ * e os bytes da imagem sem base64. O formato é indicado pelo content-type da mensagem AMQP.
+ *
+ * Versão 2: hashConteudo e localizador (texto) entre o timestamp e os dados.
+ * Versão 3: envioPrevisto (8 bytes) depois do localizador.
+ * Versão 4: formatoDados (texto) depois do envioPrevisto.
+ * O decodificador continua aceitando mensagens das versões anteriores.
+ */
+public final class CodecMensagem {
+
+    public static final String CONTENT_TYPE_JSON = "application/json";
+    public static final String CONTENT_TYPE_BINARIO = "application/x-mensagem-imagem";
+
+    private static final byte MAGIC_1 = 'M';
+    private static final byte MAGIC_2 = 'I';
+    private static final byte VERSAO = 4;
+
+    private CodecMensagem() {}
+
+    public static boolean isBinario(String contentType) {
+        return CONTENT_TYPE_BINARIO.equals(contentType);
+    }
+
+    public static byte[] codificar(MensagemImagem mensagem) {
+        byte[] dados = mensagem.getDados();
+        return codificar(mensagem.getId(), mensagem.getTipo(), mensagem.getNomeArquivo(), mensagem.getTimestamp(),
+            mensagem.getEnvioPrevisto(), mensagem.getHashConteudo(), mensagem.getLocalizador(),
+            mensagem.getFormatoDados(), dados != null ? ByteBuffer.wrap(dados) : null);
+    }
+
+    /**
+     * Codifica lendo os dados direto de um buffer (por exemplo, uma fatia do catálogo mapeado),
+     * sem cópia intermediária: o único array alocado é o corpo da mensagem.
+     */
+    public static byte[] codificar(String id, String tipo, String nomeArquivo, long timestamp, long envioPrevisto,
+                                   String hashConteudo, String localizador, String formatoDados,
+                                   ByteBuffer dados) {
+        byte[] tipoBytes = utf8(tipo);
+        byte[] idBytes = utf8(id);
+        byte[] nomeBytes = utf8(nomeArquivo);
+        byte[] hashBytes = utf8(hashConteudo);
+        byte[] localizadorBytes = utf8(localizador);
+        byte[] formatoBytes = utf8(formatoDados);
+        int tamanhoDados = dados != null ? dados.remaining() : 0;
+
+        ByteBuffer saida = ByteBuffer.allocate(3 + tamanhoTexto(tipoBytes) + tamanhoTexto(idBytes)
+            + tamanhoTexto(nomeBytes) + 8 + tamanhoTexto(hashBytes) + tamanhoTexto(localizadorBytes)
+            + 8 + tamanhoTexto(formatoBytes) + 4 + tamanhoDados);
+        saida.put(MAGIC_1).put(MAGIC_2).put(VERSAO);
+        escreverTexto(saida, tipoBytes);
+        escreverTexto(saida, idBytes);
+        escreverTexto(saida, nomeBytes);
+        saida.putLong(timestamp);
+        escreverTexto(saida, hashBytes);
+        escreverTexto(saida, localizadorBytes);
+        saida.putLong(envioPrevisto);
+        escreverTexto(saida, formatoBytes);
+        saida.putInt(dados != null ? tamanhoDados : -1);
+        if (dados != null) {
+            saida.put(dados.duplicate());
+        }
+        return saida.array();
+    }
+
+    public static MensagemImagem decodificar(byte[] corpo) throws IOException {
+        try {
+            ByteBuffer entrada = ByteBuffer.wrap(corpo);
+            if (entrada.get() != MAGIC_1 || entrada.get() != MAGIC_2) {
+                throw new IOException("Mensagem binária sem o cabeçalho esperado");
+            }
+            byte versao = entrada.get();
+            if (versao < 1 || versao > VERSAO) {
+                throw new IOException("Versão de mensagem binária não suportada: " + versao);
+            }
+
+            MensagemImagem mensagem = new MensagemImagem();
+            mensagem.setTipo(lerTexto(entrada));
+            mensagem.setId(lerTexto(entrada));
+            mensagem.setNomeArquivo(lerTexto(entrada));
+            mensagem.setTimestamp(entrada.getLong());
+            if (versao >= 2) {
+                mensagem.setHashConteudo(lerTexto(entrada));
+                mensagem.setLocalizador(lerTexto(entrada));
+            }
+            if (versao >= 3) {
+                mensagem.setEnvioPrevisto(entrada.getLong());
+            }
+            if (versao >= 4) {
+                mensagem.setFormatoDados(lerTexto(entrada));
+            }
+            int tamanhoDados = entrada.getInt();
+            if (tamanhoDados < -1 || tamanhoDados > entrada.remaining()) {
+                // Validar antes de alocar: um tamanho corrompido não pode virar um array gigante
+                throw new IOException("Tamanho de dados inválido: " + tamanhoDados + " (restam "
+                    + entrada.remaining() + " bytes)");
+            }
+            if (tamanhoDados >= 0) {
+                byte[] dados = new byte[tamanhoDados];
+                entrada.get(dados);
+                mensagem.setDados(dados);
+            }
+            return mensagem;
+        } catch (RuntimeException e) {
+            throw new IOException("Mensagem binária corrompida", e);
+        }
+    }
+
+    private static byte[] utf8(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Texto grande demais para o formato binário: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int tamanhoTexto(byte[] texto) {
+        return 2 + (texto != null ? texto.length : 0);
+    }
+
+    private static void escreverTexto(ByteBuffer saida, byte[] texto) {
+        if (texto == null) {
+            saida.putShort((short) -1);
+            return;
+        }
+        saida.putShort((short) texto.length);
+        saida.put(texto);
+    }
+
+    private static String lerTexto(ByteBuffer entrada) {
+        short tamanho = entrada.getShort();
+        if (tamanho < 0) {
+            return null;
+        }
+        String texto = new String(entrada.array(), entrada.arrayOffset() + entrada.position(), tamanho,
+            StandardCharsets.UTF_8);
+        entrada.position(entrada.position() + tamanho);
+        return texto;
+    }
+}
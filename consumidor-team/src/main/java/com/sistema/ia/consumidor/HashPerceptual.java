@@ -0,0 +1,71 @@
+package com.sistema.ia.consumidor;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * Hash perceptual de 64 bits (dHash) de uma imagem já decodificada.
+ *
+ * A imagem vira uma grade 9x8 de tons de cinza (média de blocos 8x8 de uma miniatura 72x64)
+ * e cada bit diz se uma célula é mais escura que a vizinha da direita. Reencodificações,
+ * redimensionamentos e pequenos ajustes de brilho mudam poucos bits, ao contrário do
+ * {@link HashConteudo#hash64}, que muda por inteiro com qualquer byte diferente.
+ *
+ * Pixels transparentes contam como preto. A miniatura é por thread.
+ */
+public final class HashPerceptual {
+
+    private static final int COLUNAS = 9;
+    private static final int LINHAS = 8;
+    private static final int BLOCO = 8;
+    private static final int LARGURA = COLUNAS * BLOCO;
+    private static final int ALTURA = LINHAS * BLOCO;
+
+    private static final ThreadLocal<BufferedImage> MINIATURA =
+        ThreadLocal.withInitial(() -> new BufferedImage(LARGURA, ALTURA, BufferedImage.TYPE_BYTE_GRAY));
+
+    private HashPerceptual() {}
+
+    public static long dhash(BufferedImage imagem) {
+        BufferedImage miniatura = MINIATURA.get();
+        Graphics2D g2d = miniatura.createGraphics();
+        try {
+            g2d.setColor(Color.BLACK);
+            g2d.fillRect(0, 0, LARGURA, ALTURA);
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(imagem, 0, 0, LARGURA, ALTURA, null);
+        } finally {
+            g2d.dispose();
+        }
+        byte[] pixels = ((DataBufferByte) miniatura.getRaster().getDataBuffer()).getData();
+
+        long hash = 0;
+        for (int linha = 0; linha < LINHAS; linha++) {
+            int anterior = somaBloco(pixels, linha, 0);
+            for (int coluna = 1; coluna < COLUNAS; coluna++) {
+                int atual = somaBloco(pixels, linha, coluna);
+                hash = (hash << 1) | (anterior < atual ? 1 : 0);
+                anterior = atual;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Número de bits diferentes entre dois hashes.
+     */
+    public static int distancia(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static int somaBloco(byte[] pixels, int linha, int coluna) {
+        int soma = 0;
+        for (int y = linha * BLOCO, fimY = y + BLOCO; y < fimY; y++) {
+            for (int i = y * LARGURA + coluna * BLOCO, fim = i + BLOCO; i < fim; i++) {
+                soma += pixels[i] & 0xFF;
+            }
+        }
+        return soma;
+    }
+}
@@ -1,65 +1,289 @@
 package com.sistema.ia.consumidor;
 
-import smile.base.mlp.MultilayerPerceptron;
-import smile.math.MathEx;
-import smile.clustering.KMeans;
-
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Arrays;
+import java.util.Set;
 
 /**
- * Identificador de Times de Futebol usando biblioteca Smile ML
- * Identifica brasões de times brasileiros e internacionais
+ * Identificador de Times de Futebol por vizinho mais próximo
+ * Compara o brasão recebido com os brasões de referência do diretório de times
  */
 public class IdentificadorTimeSmile {
     
-    // Times baseados nas imagens reais disponíveis
-    private static final String[] TIMES_DISPONIVEIS = {
-        "ACF Fiorentina", "Aston Villa FC", "Athletic Bilbao", 
-        "Bayer 04 Leverkusen", "Bologna FC 1909", "Brighton & Hove Albion FC",
-        "Crystal Palace FC", "Newcastle United FC", "Real Betis", "VfB Stuttgart"
-    };
+    private static final int AMOSTRAS_VALIDACAO = 64;
+    
+    private final Path diretorioTimes;
+    private final boolean indexarReferencias;
+    private final Metricas metricas = Metricas.global();
+    private final double confiancaAprender;
+    private VigiaModelo vigia;
+    
+    // Índices montados a partir do diretório de times, trocados juntos quando ele muda. Cada
+    // identificação lê a referência uma única vez: quem já começou termina com a versão antiga
+    private volatile Referencias referencias;
+    
+    /**
+     * Índice de brasões e índice perceptual (null = desativado) de uma versão do diretório de times.
+     */
+    private static final class Referencias {
+        final IndiceBrasoes indice;
+        final IndicePerceptual perceptual;
+        final String versao;
+        
+        Referencias(IndiceBrasoes indice, IndicePerceptual perceptual, String versao) {
+            this.indice = indice;
+            this.perceptual = perceptual;
+            this.versao = versao;
+        }
+    }
+    
+    /**
+     * Carrega os brasões de referência de {@code diretorioTimes} (ver {@link IndiceBrasoes}).
+     */
+    public IdentificadorTimeSmile(Path diretorioTimes) {
+        this(diretorioTimes, null, false, 0);
+    }
+    
+    /**
+     * @param perceptual índice consultado antes da busca por características, ou null
+     * @param indexarReferencias inclui os brasões de referência no índice perceptual
+     * @param confiancaAprender identificações com pelo menos essa confiança entram no índice
+     *                          perceptual (0 = o índice não cresce com o tráfego)
+     */
+    public IdentificadorTimeSmile(Path diretorioTimes, IndicePerceptual perceptual, boolean indexarReferencias,
+                                  double confiancaAprender) {
+        long inicio = System.nanoTime();
+        this.diretorioTimes = diretorioTimes;
+        this.indexarReferencias = indexarReferencias;
+        this.confiancaAprender = confiancaAprender;
+        this.referencias = carregarReferencias(perceptual);
+        IndiceBrasoes indice = referencias.indice;
+        System.out.printf("Brasões de referência %s: %d imagem(ns) de %d time(s) em %s (%.0f ms)%n", referencias.versao,
+            indice.getNumReferencias(), indice.getNumTimes(), diretorioTimes, (System.nanoTime() - inicio) / 1e6);
+    }
     
     public ResultadoIdentificacao identificarTime(byte[] imagemBytes, String imageId) {
+        long inicio = System.nanoTime();
+        try {
+            return identificar(imagemBytes, imageId, new double[CaracteristicasBrasao.DIMENSAO]);
+        } finally {
+            metricas.registrarNanos("inferencia", System.nanoTime() - inicio);
+        }
+    }
+    
+    /**
+     * Identifica um lote de brasões reaproveitando o vetor de características.
+     * O resultado i corresponde à mensagem i; falhas individuais vêm como "ERRO".
+     */
+    public List<ResultadoIdentificacao> identificarTimesLote(List<MensagemImagem> mensagens) {
+        List<ResultadoIdentificacao> resultados = new ArrayList<>(mensagens.size());
+        long inicio = System.nanoTime();
+        double[] caracteristicas = new double[CaracteristicasBrasao.DIMENSAO];
+        for (MensagemImagem mensagem : mensagens) {
+            resultados.add(identificar(mensagem.getDados(), mensagem.getId(), caracteristicas));
+        }
+        metricas.registrarNanos("inferencia_lote", System.nanoTime() - inicio);
+        return resultados;
+    }
+    
+    private ResultadoIdentificacao identificar(byte[] imagemBytes, String imageId, double[] caracteristicas) {
+        Referencias atual = referencias;
+        if (atual.indice.getNumReferencias() == 0) {
+            return new ResultadoIdentificacao(imageId, "DESCONHECIDO", 0.0,
+                "Nenhum brasão de referência carregado", atual.versao);
+        }
         try {
-            // Simular delay de processamento de IA (2-4 segundos)
-            Thread.sleep(2000 + (int)(Math.random() * 2000));
-            
-            // Simular identificação de times usando características
-            // Usar hash do ID para escolher um time consistentemente
-            int timeIndex = Math.abs(imageId.hashCode()) % TIMES_DISPONIVEIS.length;
-            String timeIdentificado = TIMES_DISPONIVEIS[timeIndex];
-            double confianca = 0.75 + (Math.random() * 0.24); // 75-99% de confiança
-            
-            return new ResultadoIdentificacao(imageId, timeIdentificado, confianca, 
-                "Time identificado com biblioteca Smile ML");
-                
-        } catch (Exception e) {
-            return new ResultadoIdentificacao(imageId, "ERRO", 0.0, 
+            BufferedImage imagem = ImageIO.read(new ByteArrayInputStream(imagemBytes));
+            if (imagem == null) {
+                return new ResultadoIdentificacao(imageId, "ERRO", 0.0,
+                    "Erro na identificação: formato de imagem não reconhecido");
+            }
+            IndicePerceptual perceptual = atual.perceptual;
+            long hash = 0;
+            if (perceptual != null) {
+                long inicioHash = System.nanoTime();
+                hash = HashPerceptual.dhash(imagem);
+                metricas.registrarNanos("hash_perceptual", System.nanoTime() - inicioHash);
+                IndicePerceptual.Correspondencia correspondencia = perceptual.buscar(hash);
+                if (correspondencia != null) {
+                    metricas.incrementar("perceptual_acerto");
+                    return new ResultadoIdentificacao(imageId, correspondencia.rotulo, correspondencia.confianca(),
+                        "Quase-duplicata de " + correspondencia.origem + " (distância " + correspondencia.distancia + ")",
+                        atual.versao);
+                }
+            }
+            ResultadoIdentificacao resultado = buscarVizinho(atual, imagem, imageId, caracteristicas);
+            if (perceptual != null && confiancaAprender > 0 && resultado.getConfianca() >= confiancaAprender) {
+                perceptual.aprender(hash, resultado.getTime(), imageId);
+            }
+            return resultado;
+        } catch (IOException | RuntimeException e) {
+            return new ResultadoIdentificacao(imageId, "ERRO", 0.0,
                 "Erro na identificação: " + e.getMessage());
         }
     }
     
+    private static ResultadoIdentificacao buscarVizinho(Referencias atual, BufferedImage imagem, String imageId,
+                                                        double[] caracteristicas) {
+        IndiceBrasoes.Vizinho vizinho = atual.indice.buscar(CaracteristicasBrasao.extrair(imagem, caracteristicas));
+        return new ResultadoIdentificacao(imageId, vizinho.time, vizinho.confianca(),
+            String.format("Brasão mais próximo a distância %.3f (referências %s)", vizinho.distancia, atual.versao),
+            atual.versao);
+    }
+    
+    /**
+     * Versão das referências em uso, a mesma gravada em {@link ResultadoIdentificacao#getVersaoModelo}.
+     */
+    public String getVersaoModelo() {
+        return referencias.versao;
+    }
+    
+    IndicePerceptual getIndicePerceptual() {
+        return referencias.perceptual;
+    }
+    
+    /**
+     * Passa a observar o diretório de times: cada mudança gera novos índices em segundo plano,
+     * validados identificando uma amostra dos próprios brasões (cada um sem poder encontrar a si
+     * mesmo), que então substituem os atuais.
+     *
+     * @param acuraciaMinima fração mínima da amostra identificada corretamente para aceitar a nova versão
+     */
+    public synchronized void monitorarReferencias(long intervaloMillis, double acuraciaMinima) {
+        if (vigia != null) {
+            return;
+        }
+        vigia = new VigiaModelo("brasoes", diretorioTimes, intervaloMillis, () -> recarregar(acuraciaMinima));
+        vigia.iniciar();
+        System.out.println("Observando " + diretorioTimes + " a cada " + intervaloMillis + " ms");
+    }
+    
+    public synchronized void encerrarMonitoramento() {
+        if (vigia != null) {
+            vigia.encerrar();
+        }
+    }
+    
+    private void recarregar(double acuraciaMinima) throws IOException {
+        long inicio = System.nanoTime();
+        Referencias anterior = referencias;
+        Referencias candidata = carregarReferencias(anterior.perceptual != null ? anterior.perceptual.vazio() : null);
+        if (candidata.indice.getNumReferencias() == 0) {
+            metricas.incrementar("modelo_rejeitado");
+            throw new IOException("Nenhum brasão de referência em " + diretorioTimes);
+        }
+        
+        // Validação e aquecimento: a nova versão identifica parte dos brasões antes de receber tráfego
+        double acuracia = validar(candidata);
+        if (Double.isNaN(acuracia)) {
+            System.out.println("Nenhum time em " + diretorioTimes + " tem mais de uma referência: a acurácia das "
+                + "referências " + candidata.versao + " não pode ser medida e a versão é aceita sem validação");
+        } else if (acuracia < acuraciaMinima) {
+            metricas.incrementar("modelo_rejeitado");
+            throw new IOException(String.format("Referências %s identificam %.1f%% da amostra, mínimo %.1f%%",
+                candidata.versao, acuracia * 100, acuraciaMinima * 100));
+        }
+        
+        // O que foi aprendido com o tráfego continua valendo, exceto para times que saíram do diretório
+        int aprendidas = 0;
+        if (anterior.perceptual != null) {
+            Set<String> times = new HashSet<>();
+            for (int i = 0; i < candidata.indice.getNumReferencias(); i++) {
+                times.add(candidata.indice.getTime(i));
+            }
+            aprendidas = anterior.perceptual.copiarAprendidas(candidata.perceptual, times::contains);
+        }
+        
+        referencias = candidata;
+        metricas.incrementar("modelo_recarregado");
+        System.out.printf("Brasões de referência %s substituíram %s: %d imagem(ns) de %d time(s), %d entrada(s) "
+                + "aprendida(s) mantida(s) (%s, %.0f ms)%n",
+            candidata.versao, anterior.versao, candidata.indice.getNumReferencias(), candidata.indice.getNumTimes(),
+            aprendidas,
+            Double.isNaN(acuracia) ? "sem validação" : String.format("%.1f%% da amostra identificada", acuracia * 100),
+            (System.nanoTime() - inicio) / 1e6);
+    }
+    
+    /**
+     * Validação leave-one-out: identifica até {@link #AMOSTRAS_VALIDACAO} brasões de referência,
+     * lidos de novo do disco, com a própria referência excluída da busca, e retorna a fração que
+     * voltou com o próprio time. Só entram times com mais de uma referência (os outros não têm
+     * com o que ser comparados); sem nenhum, retorna NaN.
+     */
+    private static double validar(Referencias candidata) throws IOException {
+        IndiceBrasoes indice = candidata.indice;
+        Map<String, Integer> referenciasPorTime = new HashMap<>();
+        for (int i = 0; i < indice.getNumReferencias(); i++) {
+            referenciasPorTime.merge(indice.getTime(i), 1, Integer::sum);
+        }
+        List<Integer> elegiveis = new ArrayList<>();
+        for (int i = 0; i < indice.getNumReferencias(); i++) {
+            if (referenciasPorTime.get(indice.getTime(i)) > 1) {
+                elegiveis.add(i);
+            }
+        }
+        if (elegiveis.isEmpty()) {
+            return Double.NaN;
+        }
+        
+        double[] caracteristicas = new double[CaracteristicasBrasao.DIMENSAO];
+        int passo = Math.max(1, elegiveis.size() / AMOSTRAS_VALIDACAO);
+        int testadas = 0, acertos = 0;
+        for (int j = 0; j < elegiveis.size(); j += passo) {
+            int i = elegiveis.get(j);
+            BufferedImage imagem = ImageIO.read(new ByteArrayInputStream(Files.readAllBytes(indice.getArquivo(i))));
+            if (imagem == null) {
+                continue;
+            }
+            testadas++;
+            IndiceBrasoes.Vizinho vizinho = indice.buscar(CaracteristicasBrasao.extrair(imagem, caracteristicas), i);
+            if (vizinho != null && indice.getTime(i).equals(vizinho.time)) {
+                acertos++;
+            }
+        }
+        return testadas == 0 ? 0.0 : acertos / (double) testadas;
+    }
+    
+    private Referencias carregarReferencias(IndicePerceptual perceptual) {
+        // O carimbo é lido antes dos arquivos: uma mudança durante a leitura gera outra recarga
+        String versao = String.format("%08x", (int) VigiaModelo.carimbo(diretorioTimes));
+        return new Referencias(IndiceBrasoes.carregar(diretorioTimes, indexarReferencias ? perceptual : null),
+            perceptual, versao);
+    }
+    
     /**
      * Classe para representar o resultado da identificação
      */
-    public static class ResultadoIdentificacao {
+    public static class ResultadoIdentificacao implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
         private String imageId;
         private String time;
         private double confianca;
         private String detalhes;
+        private String versaoModelo;
         
         public ResultadoIdentificacao(String imageId, String time, double confianca, String detalhes) {
+            this(imageId, time, confianca, detalhes, null);
+        }
+        
+        public ResultadoIdentificacao(String imageId, String time, double confianca, String detalhes,
+                                      String versaoModelo) {
             this.imageId = imageId;
             this.time = time;
             this.confianca = confianca;
             this.detalhes = detalhes;
+            this.versaoModelo = versaoModelo;
         }
         
         public String getImageId() { return imageId; }
@@ -67,6 +291,18 @@ public class IdentificadorTimeSmile {
         public double getConfianca() { return confianca; }
         public String getDetalhes() { return detalhes; }
         
+        /**
+         * Versão das referências que produziu o resultado (null para erros)
+         */
+        public String getVersaoModelo() { return versaoModelo; }
+        
+        /**
+         * Mesmo resultado atribuído a outra mensagem (usado pelo cache de resultados)
+         */
+        public ResultadoIdentificacao comImageId(String outroImageId) {
+            return new ResultadoIdentificacao(outroImageId, time, confianca, detalhes, versaoModelo);
+        }
+        
         @Override
         public String toString() {
             if ("ERRO".equals(time)) {
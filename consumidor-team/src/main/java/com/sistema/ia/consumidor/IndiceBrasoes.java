@@ -0,0 +1,212 @@
+package com.sistema.ia.consumidor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Índice de vizinho mais próximo dos brasões de referência.
+ *
+ * Os vetores de {@link CaracteristicasBrasao} de todas as referências ficam num único double[]
+ * contíguo (referência i nas posições i*DIMENSAO...), com o time de cada uma num int[]. A busca
+ * é uma varredura exata: com algumas dezenas ou centenas de brasões e 53 dimensões ela leva
+ * microssegundos, e uma KD-tree não poda quase nada nessa dimensão.
+ *
+ * O time vem do nome do arquivo ({@code teams/Real_Betis.png} → "Real Betis") ou, para ter
+ * várias referências do mesmo time, do nome do subdiretório ({@code teams/Real Betis/*.png}).
+ * Incluir um time é só acrescentar o arquivo.
+ */
+public class IndiceBrasoes {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceBrasoes.class);
+
+    /**
+     * Resultado de uma busca: o time mais próximo, a distância até ele e até o melhor
+     * candidato de outro time (infinita se só houver um time no índice).
+     */
+    public static final class Vizinho {
+        public final String time;
+        public final double distancia;
+        public final double distanciaOutroTime;
+
+        Vizinho(String time, double distancia, double distanciaOutroTime) {
+            this.time = time;
+            this.distancia = distancia;
+            this.distanciaOutroTime = distanciaOutroTime;
+        }
+
+        /**
+         * Confiança pela razão entre as distâncias: 1 para uma referência idêntica, perto de 0
+         * quando o segundo time está tão perto quanto o primeiro.
+         */
+        public double confianca() {
+            if (Double.isInfinite(distanciaOutroTime)) {
+                return 1.0 / (1.0 + distancia);
+            }
+            return distanciaOutroTime > 0 ? Math.max(0.0, 1.0 - distancia / distanciaOutroTime) : 0.0;
+        }
+    }
+
+    private final String[] times;
+    private final int[] timeDaReferencia;
+    private final double[] vetores;
+    private final Path[] arquivos;
+
+    private IndiceBrasoes(String[] times, int[] timeDaReferencia, double[] vetores, Path[] arquivos) {
+        this.times = times;
+        this.timeDaReferencia = timeDaReferencia;
+        this.vetores = vetores;
+        this.arquivos = arquivos;
+    }
+
+    /**
+     * Lê as imagens de {@code diretorio}; um diretório ausente resulta num índice vazio.
+     */
+    public static IndiceBrasoes carregar(Path diretorio) {
+        return carregar(diretorio, null);
+    }
+
+    /**
+     * Como {@link #carregar(Path)}, incluindo também cada referência em {@code perceptual}
+     * (se não for null) sem decodificá-la de novo.
+     */
+    public static IndiceBrasoes carregar(Path diretorio, IndicePerceptual perceptual) {
+        Map<String, Integer> indiceTime = new LinkedHashMap<>();
+        List<Integer> timesReferencias = new ArrayList<>();
+        List<double[]> referencias = new ArrayList<>();
+        List<Path> arquivosReferencias = new ArrayList<>();
+
+        if (!Files.isDirectory(diretorio)) {
+            logger.warn("Diretório de brasões {} não encontrado; nenhum time de referência", diretorio);
+        } else {
+            try (Stream<Path> arquivos = Files.walk(diretorio, 2)) {
+                arquivos.filter(Files::isRegularFile).filter(IndiceBrasoes::isImagem).sorted().forEach(arquivo -> {
+                    try {
+                        BufferedImage imagem = ImageIO.read(arquivo.toFile());
+                        if (imagem == null) {
+                            logger.warn("Brasão em formato não reconhecido: {}", arquivo);
+                            return;
+                        }
+                        String time = nomeDoTime(diretorio, arquivo);
+                        timesReferencias.add(indiceTime.computeIfAbsent(time, t -> indiceTime.size()));
+                        referencias.add(CaracteristicasBrasao.extrair(imagem, new double[CaracteristicasBrasao.DIMENSAO]));
+                        arquivosReferencias.add(arquivo);
+                        if (perceptual != null) {
+                            perceptual.adicionar(HashPerceptual.dhash(imagem), time, arquivo.getFileName().toString());
+                        }
+                    } catch (IOException e) {
+                        logger.warn("Erro ao ler brasão {}", arquivo, e);
+                    }
+                });
+            } catch (IOException e) {
+                logger.error("Erro ao listar brasões em {}", diretorio, e);
+            }
+        }
+
+        int dimensao = CaracteristicasBrasao.DIMENSAO;
+        double[] vetores = new double[referencias.size() * dimensao];
+        int[] timeDaReferencia = new int[referencias.size()];
+        for (int i = 0; i < referencias.size(); i++) {
+            System.arraycopy(referencias.get(i), 0, vetores, i * dimensao, dimensao);
+            timeDaReferencia[i] = timesReferencias.get(i);
+        }
+        return new IndiceBrasoes(indiceTime.keySet().toArray(new String[0]), timeDaReferencia, vetores,
+            arquivosReferencias.toArray(new Path[0]));
+    }
+
+    public int getNumReferencias() {
+        return timeDaReferencia.length;
+    }
+
+    public int getNumTimes() {
+        return times.length;
+    }
+
+    /**
+     * Arquivo de onde veio a referência i.
+     */
+    public Path getArquivo(int referencia) {
+        return arquivos[referencia];
+    }
+
+    public String getTime(int referencia) {
+        return times[timeDaReferencia[referencia]];
+    }
+
+    /**
+     * Referência mais próxima de {@code consulta} (distância euclidiana), ou null com o índice vazio.
+     */
+    public Vizinho buscar(double[] consulta) {
+        return buscar(consulta, -1);
+    }
+
+    /**
+     * Como {@link #buscar(double[])}, ignorando a referência {@code excluida} (validação leave-one-out:
+     * a referência consultada não pode encontrar a si mesma).
+     */
+    public Vizinho buscar(double[] consulta, int excluida) {
+        if (timeDaReferencia.length == 0 || (timeDaReferencia.length == 1 && excluida == 0)) {
+            return null;
+        }
+        int dimensao = CaracteristicasBrasao.DIMENSAO;
+        // Melhor distância por time: a confiança compara o primeiro time com o segundo
+        double[] melhorPorTime = new double[times.length];
+        Arrays.fill(melhorPorTime, Double.POSITIVE_INFINITY);
+        for (int r = 0, base = 0; r < timeDaReferencia.length; r++, base += dimensao) {
+            if (r == excluida) {
+                continue;
+            }
+            double soma = 0;
+            for (int d = 0; d < dimensao; d++) {
+                double diferenca = vetores[base + d] - consulta[d];
+                soma += diferenca * diferenca;
+            }
+            int time = timeDaReferencia[r];
+            if (soma < melhorPorTime[time]) {
+                melhorPorTime[time] = soma;
+            }
+        }
+
+        int primeiro = 0;
+        for (int t = 1; t < times.length; t++) {
+            if (melhorPorTime[t] < melhorPorTime[primeiro]) {
+                primeiro = t;
+            }
+        }
+        double segundo = Double.POSITIVE_INFINITY;
+        for (int t = 0; t < times.length; t++) {
+            if (t != primeiro && melhorPorTime[t] < segundo) {
+                segundo = melhorPorTime[t];
+            }
+        }
+        return new Vizinho(times[primeiro], Math.sqrt(melhorPorTime[primeiro]), Math.sqrt(segundo));
+    }
+
+    private static String nomeDoTime(Path diretorio, Path arquivo) {
+        Path relativo = diretorio.relativize(arquivo);
+        String nome = relativo.getNameCount() > 1 ? relativo.getName(0).toString() : arquivo.getFileName().toString();
+        int ponto = nome.lastIndexOf('.');
+        if (relativo.getNameCount() == 1 && ponto > 0) {
+            nome = nome.substring(0, ponto);
+        }
+        return nome.replace('_', ' ').trim();
+    }
+
+    private static boolean isImagem(Path arquivo) {
+        String nome = arquivo.getFileName().toString().toLowerCase(Locale.ROOT);
+        return nome.endsWith(".png") || nome.endsWith(".jpg") || nome.endsWith(".jpeg")
+            || nome.endsWith(".gif") || nome.endsWith(".bmp");
+    }
+}
@@ -0,0 +1,264 @@
+package com.sistema.ia.consumidor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Índice de imagens conhecidas por hash perceptual ({@link HashPerceptual}), com busca por
+ * distância de Hamming até um limiar.
+ *
+ * É uma BK-tree em arrays primitivos: o nó i guarda o hash, o rótulo (posição numa tabela de
+ * rótulos), a distância até o pai e a lista de filhos encadeada por primeiroFilho/proximoIrmao.
+ * Pela desigualdade triangular, a busca só desce nos filhos cuja distância ao pai está a até
+ * {@code limiar} da distância entre a consulta e o pai, e visita uma fração pequena dos nós.
+ *
+ * Aceita inclusões a qualquer momento, até {@code capacidade} entradas. Buscas concorrentes
+ * compartilham uma trava de leitura; inclusões usam a de escrita. As entradas incluídas por
+ * {@link #aprender} (resultados do modelo) ficam marcadas, para passarem a um índice novo
+ * quando as referências forem recarregadas.
+ */
+public class IndicePerceptual {
+
+    /**
+     * Entrada mais próxima encontrada numa busca.
+     */
+    public static final class Correspondencia {
+        public final String rotulo;
+        public final String origem;
+        public final int distancia;
+
+        Correspondencia(String rotulo, String origem, int distancia) {
+            this.rotulo = rotulo;
+            this.origem = origem;
+            this.distancia = distancia;
+        }
+
+        /**
+         * Fração dos 64 bits que coincidem.
+         */
+        public double confianca() {
+            return 1.0 - distancia / 64.0;
+        }
+    }
+
+    private static final int SEM_NO = -1;
+
+    private final int limiar;
+    private final int capacidade;
+    private final ReentrantReadWriteLock trava = new ReentrantReadWriteLock();
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+
+    private final List<String> rotulos = new ArrayList<>();
+    private final Map<String, Integer> indiceRotulo = new HashMap<>();
+
+    private int tamanho;
+    private long[] hashes = new long[64];
+    private int[] rotuloDoNo = new int[64];
+    private String[] origens = new String[64];
+    private boolean[] aprendida = new boolean[64];
+    private int[] distanciaAoPai = new int[64];
+    private int[] primeiroFilho = new int[64];
+    private int[] proximoIrmao = new int[64];
+
+    public IndicePerceptual(int limiar, int capacidade) {
+        this.limiar = limiar;
+        this.capacidade = capacidade;
+    }
+
+    /**
+     * Inclui uma imagem. Retorna false se o índice estiver cheio ou já houver uma entrada com o
+     * mesmo hash (a primeira prevalece).
+     */
+    public boolean adicionar(long hash, String rotulo, String origem) {
+        return incluir(hash, rotulo, origem, false);
+    }
+
+    /**
+     * Como {@link #adicionar}, para um resultado do modelo (e não uma imagem de referência).
+     */
+    public boolean aprender(long hash, String rotulo, String origem) {
+        return incluir(hash, rotulo, origem, true);
+    }
+
+    private boolean incluir(long hash, String rotulo, String origem, boolean doModelo) {
+        trava.writeLock().lock();
+        try {
+            if (tamanho >= capacidade) {
+                return false;
+            }
+            int no = 0;
+            int pai = SEM_NO;
+            int distancia = 0;
+            if (tamanho > 0) {
+                while (true) {
+                    distancia = HashPerceptual.distancia(hash, hashes[no]);
+                    if (distancia == 0) {
+                        return false;
+                    }
+                    int filho = filhoADistancia(no, distancia);
+                    if (filho == SEM_NO) {
+                        pai = no;
+                        break;
+                    }
+                    no = filho;
+                }
+            }
+
+            int novo = tamanho++;
+            garantirEspaco(tamanho);
+            hashes[novo] = hash;
+            rotuloDoNo[novo] = indiceRotulo.computeIfAbsent(rotulo, r -> {
+                rotulos.add(r);
+                return rotulos.size() - 1;
+            });
+            origens[novo] = origem;
+            aprendida[novo] = doModelo;
+            distanciaAoPai[novo] = distancia;
+            primeiroFilho[novo] = SEM_NO;
+            proximoIrmao[novo] = SEM_NO;
+            if (pai != SEM_NO) {
+                proximoIrmao[novo] = primeiroFilho[pai];
+                primeiroFilho[pai] = novo;
+            }
+            return true;
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Entrada mais próxima a até {@code limiar} bits de {@code hash}, ou null se não houver.
+     */
+    public Correspondencia buscar(long hash) {
+        int melhor = SEM_NO;
+        int melhorDistancia = limiar + 1;
+        trava.readLock().lock();
+        try {
+            if (tamanho > 0) {
+                // Pilha explícita: a profundidade da árvore depende da ordem das inclusões
+                int[] pendentes = new int[Math.min(tamanho, 256)];
+                int topo = 0;
+                pendentes[topo++] = 0;
+                while (topo > 0) {
+                    int no = pendentes[--topo];
+                    int distancia = HashPerceptual.distancia(hash, hashes[no]);
+                    if (distancia < melhorDistancia) {
+                        melhor = no;
+                        melhorDistancia = distancia;
+                        if (distancia == 0) {
+                            break;
+                        }
+                    }
+                    for (int filho = primeiroFilho[no]; filho != SEM_NO; filho = proximoIrmao[filho]) {
+                        if (Math.abs(distanciaAoPai[filho] - distancia) <= limiar) {
+                            if (topo == pendentes.length) {
+                                pendentes = Arrays.copyOf(pendentes, topo * 2);
+                            }
+                            pendentes[topo++] = filho;
+                        }
+                    }
+                }
+            }
+            if (melhor == SEM_NO) {
+                falhas.incrementAndGet();
+                return null;
+            }
+            acertos.incrementAndGet();
+            return new Correspondencia(rotulos.get(rotuloDoNo[melhor]), origens[melhor], melhorDistancia);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Índice vazio com o mesmo limiar e a mesma capacidade.
+     */
+    public IndicePerceptual vazio() {
+        return new IndicePerceptual(limiar, capacidade);
+    }
+
+    /**
+     * Passa para {@code destino} as entradas aprendidas cujo rótulo {@code rotuloValido} aceita,
+     * e retorna quantas entraram. As que colidem com uma entrada já presente no destino ficam de
+     * fora (a referência prevalece).
+     */
+    public int copiarAprendidas(IndicePerceptual destino, Predicate<String> rotuloValido) {
+        List<Integer> nos = new ArrayList<>();
+        long[] copiaHashes;
+        String[] copiaOrigens;
+        List<String> copiaRotulos;
+        int[] copiaRotuloDoNo;
+        trava.readLock().lock();
+        try {
+            for (int no = 0; no < tamanho; no++) {
+                if (aprendida[no] && rotuloValido.test(rotulos.get(rotuloDoNo[no]))) {
+                    nos.add(no);
+                }
+            }
+            copiaHashes = hashes;
+            copiaOrigens = origens;
+            copiaRotulos = new ArrayList<>(rotulos);
+            copiaRotuloDoNo = rotuloDoNo;
+        } finally {
+            trava.readLock().unlock();
+        }
+        // Nós existentes nunca mudam: inclusões só acrescentam nós ou trocam os arrays por cópias maiores
+        int copiadas = 0;
+        for (int no : nos) {
+            if (destino.aprender(copiaHashes[no], copiaRotulos.get(copiaRotuloDoNo[no]), copiaOrigens[no])) {
+                copiadas++;
+            }
+        }
+        return copiadas;
+    }
+
+    public int getTamanho() {
+        trava.readLock().lock();
+        try {
+            return tamanho;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    public int getLimiar() { return limiar; }
+    public long getAcertos() { return acertos.get(); }
+    public long getFalhas() { return falhas.get(); }
+
+    private int filhoADistancia(int no, int distancia) {
+        for (int filho = primeiroFilho[no]; filho != SEM_NO; filho = proximoIrmao[filho]) {
+            if (distanciaAoPai[filho] == distancia) {
+                return filho;
+            }
+        }
+        return SEM_NO;
+    }
+
+    private void garantirEspaco(int necessario) {
+        if (necessario <= hashes.length) {
+            return;
+        }
+        int novoTamanho = Math.max(necessario, hashes.length * 2);
+        hashes = Arrays.copyOf(hashes, novoTamanho);
+        rotuloDoNo = Arrays.copyOf(rotuloDoNo, novoTamanho);
+        origens = Arrays.copyOf(origens, novoTamanho);
+        aprendida = Arrays.copyOf(aprendida, novoTamanho);
+        distanciaAoPai = Arrays.copyOf(distanciaAoPai, novoTamanho);
+        primeiroFilho = Arrays.copyOf(primeiroFilho, novoTamanho);
+        proximoIrmao = Arrays.copyOf(proximoIrmao, novoTamanho);
+    }
+
+    @Override
+    public String toString() {
+        long total = acertos.get() + falhas.get();
+        return String.format("IndicePerceptual{entradas=%d, limiar=%d, acertos=%d, falhas=%d, taxa=%.1f%%}",
+            getTamanho(), limiar, getAcertos(), getFalhas(), total == 0 ? 0.0 : acertos.get() * 100.0 / total);
+    }
+}
@@ -0,0 +1,12 @@
+package com.sistema.ia.consumidor;
+
+/**
+ * Mensagem que não deve ser processada nem voltar para a fila (ex.: prazo vencido).
+ * Ela é rejeitada sem requeue; com dead-letter exchange na fila, o broker a encaminha para lá.
+ */
+public class MensagemRejeitadaException extends Exception {
+
+    public MensagemRejeitadaException(String mensagem) {
+        super(mensagem);
+    }
+}
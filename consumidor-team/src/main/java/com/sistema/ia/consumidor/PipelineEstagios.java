@@ -0,0 +1,250 @@
+package com.sistema.ia.consumidor;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Processa as entregas em estágios encadeados (ex.: leitura → decodificação → características
+ * → classificação), cada um com suas próprias threads e uma fila limitada de entrada.
+ *
+ * Estágios diferentes trabalham em mensagens diferentes ao mesmo tempo, então a vazão fica
+ * perto da do estágio mais lento, e não da soma de todos. Quando um estágio não dá conta, a
+ * fila dele enche e bloqueia o estágio anterior; as mensagens param de ser confirmadas e o
+ * broker para de entregar ao atingir o prefetch.
+ *
+ * O ack/nack de cada mensagem é feito pela thread do estágio em que ela terminou.
+ */
+public class PipelineEstagios<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineEstagios.class);
+
+    /**
+     * Um estágio do pipeline. Retorna false se o item já foi concluído (ex.: resultado em cache)
+     * e deve pular os estágios seguintes. Lançar exceção (ou Error) faz a mensagem ser tentada de novo (pela
+     * {@link PoliticaReentrega}, ou voltando direto para a fila sem ela), exceto
+     * {@link MensagemRejeitadaException}, que a rejeita para a dead-letter exchange.
+     */
+    public interface Estagio<T> {
+        boolean processar(T item) throws Exception;
+    }
+
+    private static final class Item<T> {
+        final Delivery delivery;
+        final T trabalho;
+        long enfileiradoNanos;
+
+        Item(Delivery delivery, T trabalho) {
+            this.delivery = delivery;
+            this.trabalho = trabalho;
+        }
+    }
+
+    private final class Etapa {
+        final String nome;
+        final int numThreads;
+        final Estagio<T> estagio;
+        BlockingQueue<Item<T>> fila;
+        Etapa proxima;
+
+        Etapa(String nome, int numThreads, Estagio<T> estagio) {
+            this.nome = nome;
+            this.numThreads = numThreads;
+            this.estagio = estagio;
+        }
+    }
+
+    private final String nome;
+    private final Function<Delivery, T> criarTrabalho;
+    private final int capacidadeFila;
+    private final List<Etapa> etapas = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final Metricas metricas = Metricas.global();
+    private Channel channel;
+    private PoliticaReentrega reentrega;
+    private Semaphore emAndamento;
+    private int maxEmAndamento;
+
+    /**
+     * @param criarTrabalho  cria o objeto que acompanha a entrega pelos estágios
+     * @param capacidadeFila tamanho da fila de entrada de cada estágio, exceto o primeiro
+     */
+    public PipelineEstagios(String nome, Function<Delivery, T> criarTrabalho, int capacidadeFila) {
+        this.nome = nome;
+        this.criarTrabalho = criarTrabalho;
+        this.capacidadeFila = capacidadeFila;
+    }
+
+    public PipelineEstagios<T> adicionarEstagio(String nomeEstagio, int numThreads, Estagio<T> estagio) {
+        etapas.add(new Etapa(nomeEstagio, Math.max(1, numThreads), estagio));
+        return this;
+    }
+
+    /**
+     * Mensagens que o pipeline comporta sem bloquear: uma por thread mais as filas entre estágios.
+     * Um prefetch menor deixa threads ociosas; um maior só acumula na fila do primeiro estágio.
+     */
+    public int getCapacidade() {
+        int capacidade = 0;
+        for (Etapa etapa : etapas) {
+            capacidade += etapa.numThreads;
+        }
+        return capacidade + capacidadeFila * Math.max(0, etapas.size() - 1);
+    }
+
+    /**
+     * Inicia as threads dos estágios e cria o callback de entrega.
+     * A fila do primeiro estágio comporta o prefetch inteiro, então a thread do RabbitMQ nunca bloqueia.
+     *
+     * @param reentrega destino das mensagens que falharam (null = basicNack com requeue)
+     */
+    public DeliverCallback iniciar(Channel channel, int prefetch, PoliticaReentrega reentrega) {
+        if (etapas.isEmpty()) {
+            throw new IllegalStateException("Pipeline " + nome + " sem estágios");
+        }
+        this.channel = channel;
+        this.reentrega = reentrega;
+        this.maxEmAndamento = prefetch;
+        this.emAndamento = new Semaphore(prefetch);
+        for (int i = 0; i < etapas.size(); i++) {
+            Etapa etapa = etapas.get(i);
+            etapa.fila = new ArrayBlockingQueue<>(i == 0 ? prefetch : capacidadeFila);
+            etapa.proxima = i + 1 < etapas.size() ? etapas.get(i + 1) : null;
+            for (int t = 0; t < etapa.numThreads; t++) {
+                Thread thread = new Thread(() -> executar(etapa), nome + "-" + etapa.nome + "-" + (t + 1));
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+
+        Etapa primeira = etapas.get(0);
+        return (consumerTag, delivery) -> {
+            emAndamento.acquireUninterruptibly();
+            Item<T> item = new Item<>(delivery, criarTrabalho.apply(delivery));
+            item.enfileiradoNanos = System.nanoTime();
+            primeira.fila.add(item);
+        };
+    }
+
+    public String descricao() {
+        StringBuilder descricao = new StringBuilder();
+        for (Etapa etapa : etapas) {
+            if (descricao.length() > 0) {
+                descricao.append(" → ");
+            }
+            descricao.append(etapa.nome).append(" (").append(etapa.numThreads).append(')');
+        }
+        return descricao.toString();
+    }
+
+    private void executar(Etapa etapa) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Item<T> item = etapa.fila.take();
+                long inicio = System.nanoTime();
+                metricas.registrarNanos("fila_" + etapa.nome, inicio - item.enfileiradoNanos);
+
+                boolean continuar;
+                try {
+                    continuar = etapa.estagio.processar(item.trabalho);
+                } catch (MensagemRejeitadaException e) {
+                    metricas.registrarNanos("estagio_" + etapa.nome, System.nanoTime() - inicio);
+                    rejeitar(item, e);
+                    continue;
+                } catch (Throwable e) {
+                    // Inclui Error: sem ack/nack a mensagem ficaria presa e a vaga em andamento nunca voltaria
+                    logger.error("Erro no estágio {} do pipeline", etapa.nome, e);
+                    metricas.registrarNanos("estagio_" + etapa.nome, System.nanoTime() - inicio);
+                    devolver(item, e);
+                    continue;
+                }
+                metricas.registrarNanos("estagio_" + etapa.nome, System.nanoTime() - inicio);
+
+                if (continuar && etapa.proxima != null) {
+                    // Bloqueia se o próximo estágio estiver atrasado: é assim que a pressão sobe até o broker
+                    item.enfileiradoNanos = System.nanoTime();
+                    etapa.proxima.fila.put(item);
+                } else {
+                    confirmar(item);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void confirmar(Item<T> item) {
+        long deliveryTag = item.delivery.getEnvelope().getDeliveryTag();
+        if (item.delivery.getEnvelope().isRedeliver()) {
+            metricas.incrementar("reentregue");
+        }
+        try {
+            long inicioAck = System.nanoTime();
+            channel.basicAck(deliveryTag, false);
+            metricas.registrarNanos("ack", System.nanoTime() - inicioAck);
+            metricas.incrementar("processada");
+        } catch (IOException | RuntimeException e) {
+            logger.error("Erro ao confirmar mensagem {}", deliveryTag, e);
+        } finally {
+            emAndamento.release();
+        }
+    }
+
+    private void devolver(Item<T> item, Throwable erro) {
+        long deliveryTag = item.delivery.getEnvelope().getDeliveryTag();
+        metricas.incrementar("erro");
+        try {
+            if (reentrega != null && reentrega.reencaminhar(channel, item.delivery, erro)) {
+                channel.basicAck(deliveryTag, false);
+            } else {
+                channel.basicNack(deliveryTag, false, true);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Erro ao devolver mensagem {} para a fila", deliveryTag, e);
+        } finally {
+            emAndamento.release();
+        }
+    }
+
+    private void rejeitar(Item<T> item, MensagemRejeitadaException motivo) {
+        long deliveryTag = item.delivery.getEnvelope().getDeliveryTag();
+        logger.debug("Mensagem {} rejeitada: {}", deliveryTag, motivo.getMessage());
+        metricas.incrementar("descartada");
+        try {
+            channel.basicReject(deliveryTag, false);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Erro ao rejeitar mensagem {}", deliveryTag, e);
+        } finally {
+            emAndamento.release();
+        }
+    }
+
+    /**
+     * Espera as mensagens em andamento passarem por todos os estágios e encerra as threads.
+     * Deve ser chamado depois de cancelar o consumer e antes de fechar o canal.
+     */
+    public void encerrar(long timeoutSegundos) throws InterruptedException {
+        if (emAndamento != null) {
+            if (emAndamento.tryAcquire(maxEmAndamento, timeoutSegundos, TimeUnit.SECONDS)) {
+                emAndamento.release(maxEmAndamento);
+            } else {
+                logger.warn("Pipeline não esvaziou em {}s, interrompendo", timeoutSegundos);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.sistema.ia.consumidor;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Delivery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Novas tentativas com espera exponencial para mensagens que falharam, no lugar do
+ * basicNack com requeue, que devolve a mensagem para a frente da fila e a reentrega
+ * em seguida, ocupando o prefetch indefinidamente se ela nunca puder ser processada.
+ *
+ * A mensagem que falhou é republicada numa fila de espera, com o contador de tentativas no
+ * cabeçalho {@value #CABECALHO_TENTATIVAS}. Há uma fila de espera por tentativa, cada uma com
+ * TTL fixo (atraso base, o dobro, o quádruplo...) e a exchange principal como dead-letter.
+ * As filas de espera ficam atrás de uma exchange do tipo headers, que escolhe a fila pelo
+ * contador; assim a mensagem mantém a routing key original (inclusive o shard) e, ao vencer
+ * o TTL, volta exatamente para a fila de onde saiu. Depois da última tentativa ela
+ * vai para a dead-letter exchange, com o erro no cabeçalho {@value #CABECALHO_ERRO}, e fica
+ * guardada para inspeção.
+ *
+ * As republicações usam publisher confirms num canal próprio para cada canal de consumo, já que
+ * várias threads de trabalho republicam ao mesmo tempo e um canal não aceita publicações
+ * concorrentes. As publicações nesse canal são serializadas por uma trava; a confirmação de cada
+ * cópia é acompanhada pelo seu número de sequência, então a thread espera só pela sua e um nack
+ * não afeta as demais. A original só é confirmada depois que o broker aceitou a cópia.
+ */
+public class PoliticaReentrega {
+
+    private static final Logger logger = LoggerFactory.getLogger(PoliticaReentrega.class);
+
+    // Sem o prefixo "x-": a exchange headers ignora esses cabeçalhos na comparação
+    public static final String CABECALHO_TENTATIVAS = "tentativas";
+    public static final String CABECALHO_ERRO = "ultimo-erro";
+    private static final long ESPERA_CONFIRMACAO_MILLIS = 5000;
+
+    private final String fila;
+    private final String exchange;
+    private final String exchangeEspera;
+    private final int maxTentativas;
+    private final long atrasoBaseMillis;
+    private final String deadLetterExchange;
+    private final Metricas metricas = Metricas.global();
+    private final Map<Channel, CanalRepublicacao> canais = new ConcurrentHashMap<>();
+
+    /**
+     * Canal de republicação com confirms, compartilhado pelas threads de um canal de consumo.
+     */
+    private static final class CanalRepublicacao implements AutoCloseable {
+        final Channel channel;
+        final ConcurrentNavigableMap<Long, CompletableFuture<Boolean>> pendentes = new ConcurrentSkipListMap<>();
+
+        CanalRepublicacao(Channel channel) throws IOException {
+            this.channel = channel;
+            channel.confirmSelect();
+            channel.addConfirmListener((sequencia, multiplas) -> concluir(sequencia, multiplas, true),
+                (sequencia, multiplas) -> concluir(sequencia, multiplas, false));
+            // Canal fechado ou recuperado: as sequências recomeçam e as pendentes nunca serão confirmadas
+            channel.addShutdownListener(motivo -> falharPendentes());
+        }
+
+        CompletableFuture<Boolean> publicar(String exchange, String routingKey, AMQP.BasicProperties propriedades,
+                                            byte[] corpo) throws IOException {
+            CompletableFuture<Boolean> confirmacao = new CompletableFuture<>();
+            synchronized (this) {
+                long sequencia = channel.getNextPublishSeqNo();
+                pendentes.put(sequencia, confirmacao);
+                try {
+                    channel.basicPublish(exchange, routingKey, propriedades, corpo);
+                } catch (IOException | RuntimeException e) {
+                    pendentes.remove(sequencia);
+                    throw e;
+                }
+            }
+            return confirmacao;
+        }
+
+        private void concluir(long sequencia, boolean multiplas, boolean aceita) {
+            if (!multiplas) {
+                CompletableFuture<Boolean> confirmacao = pendentes.remove(sequencia);
+                if (confirmacao != null) {
+                    confirmacao.complete(aceita);
+                }
+                return;
+            }
+            ConcurrentNavigableMap<Long, CompletableFuture<Boolean>> concluidas = pendentes.headMap(sequencia, true);
+            for (Map.Entry<Long, CompletableFuture<Boolean>> entrada : concluidas.entrySet()) {
+                if (concluidas.remove(entrada.getKey(), entrada.getValue())) {
+                    entrada.getValue().complete(aceita);
+                }
+            }
+        }
+
+        private void falharPendentes() {
+            for (Long sequencia : pendentes.keySet()) {
+                CompletableFuture<Boolean> confirmacao = pendentes.remove(sequencia);
+                if (confirmacao != null) {
+                    confirmacao.complete(false);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            falharPendentes();
+            try {
+                if (channel.isOpen()) {
+                    channel.close();
+                }
+            } catch (IOException | TimeoutException | RuntimeException e) {
+                logger.debug("Erro ao fechar canal de republicação", e);
+            }
+        }
+    }
+
+    /**
+     * @param fila               fila consumida; as filas de espera são nomeadas a partir dela
+     * @param exchange           exchange pela qual a mensagem volta à fila
+     * @param maxTentativas      novas tentativas antes da dead-letter exchange
+     * @param deadLetterExchange destino final (vazio descarta a mensagem)
+     */
+    public PoliticaReentrega(String fila, String exchange, int maxTentativas, long atrasoBaseMillis,
+                             String deadLetterExchange) {
+        this.fila = fila;
+        this.exchange = exchange;
+        this.exchangeEspera = fila + ".espera";
+        this.maxTentativas = maxTentativas;
+        this.atrasoBaseMillis = atrasoBaseMillis;
+        this.deadLetterExchange = deadLetterExchange;
+    }
+
+    /**
+     * Declara as filas de espera e abre o canal de republicação do canal de consumo. Deve ser
+     * chamado em cada canal de consumo antes do basicConsume.
+     */
+    public void preparar(Channel channel) throws IOException {
+        channel.exchangeDeclare(exchangeEspera, "headers", true);
+        for (int tentativa = 1; tentativa <= maxTentativas; tentativa++) {
+            Map<String, Object> argumentos = new HashMap<>();
+            argumentos.put("x-message-ttl", atraso(tentativa));
+            argumentos.put("x-dead-letter-exchange", exchange);
+            channel.queueDeclare(filaEspera(tentativa), true, false, false, argumentos);
+            
+            Map<String, Object> ligacao = new HashMap<>();
+            ligacao.put("x-match", "all");
+            ligacao.put(CABECALHO_TENTATIVAS, tentativa);
+            channel.queueBind(filaEspera(tentativa), exchangeEspera, "", ligacao);
+        }
+        canalRepublicacao(channel);
+        channel.addShutdownListener(motivo -> {
+            CanalRepublicacao canal = canais.remove(channel);
+            if (canal != null) {
+                canal.close();
+            }
+        });
+    }
+
+    public String descricao() {
+        StringBuilder atrasos = new StringBuilder();
+        for (int tentativa = 1; tentativa <= maxTentativas; tentativa++) {
+            atrasos.append(tentativa > 1 ? ", " : "").append(atraso(tentativa)).append(" ms");
+        }
+        return maxTentativas + " tentativas (" + atrasos + "), depois "
+            + (deadLetterExchange.isEmpty() ? "descarte" : deadLetterExchange);
+    }
+
+    /**
+     * Republica a entrega que falhou para a próxima fila de espera ou, esgotadas as tentativas,
+     * para a dead-letter exchange. Retorna true se a original deve ser confirmada (ack); false
+     * se a republicação falhou e ela deve voltar para a fila como antes.
+     */
+    public boolean reencaminhar(Channel channel, Delivery delivery, Throwable erro) {
+        int tentativas = tentativas(delivery) + 1;
+        Map<String, Object> cabecalhos = delivery.getProperties() != null && delivery.getProperties().getHeaders() != null
+            ? new HashMap<>(delivery.getProperties().getHeaders()) : new HashMap<>();
+        cabecalhos.put(CABECALHO_TENTATIVAS, tentativas);
+        AMQP.BasicProperties.Builder construtor = delivery.getProperties() != null
+            ? delivery.getProperties().builder() : new AMQP.BasicProperties.Builder();
+
+        try {
+            CompletableFuture<Boolean> confirmacao;
+            if (tentativas <= maxTentativas) {
+                confirmacao = canalRepublicacao(channel).publicar(exchangeEspera, delivery.getEnvelope().getRoutingKey(),
+                    construtor.headers(cabecalhos).build(), delivery.getBody());
+                metricas.incrementar("reentrega_agendada");
+                logger.warn("Mensagem {} falhou, tentativa {} de {} em {} ms", delivery.getEnvelope().getDeliveryTag(),
+                    tentativas, maxTentativas, atraso(tentativas));
+            } else {
+                metricas.incrementar("falha_definitiva");
+                if (deadLetterExchange.isEmpty()) {
+                    logger.error("Mensagem {} descartada após {} tentativas", delivery.getEnvelope().getDeliveryTag(),
+                        maxTentativas);
+                    return true;
+                }
+                cabecalhos.put(CABECALHO_ERRO, erro != null ? String.valueOf(erro) : "falha no processamento");
+                confirmacao = canalRepublicacao(channel).publicar(deadLetterExchange,
+                    delivery.getEnvelope().getRoutingKey(), construtor.headers(cabecalhos).build(), delivery.getBody());
+                logger.error("Mensagem {} enviada para {} após {} tentativas", delivery.getEnvelope().getDeliveryTag(),
+                    deadLetterExchange, maxTentativas);
+            }
+            if (!confirmacao.get(ESPERA_CONFIRMACAO_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.error("Broker recusou a republicação da mensagem {}", delivery.getEnvelope().getDeliveryTag());
+                return false;
+            }
+            return true;
+        } catch (IOException | TimeoutException | ExecutionException | RuntimeException e) {
+            logger.error("Erro ao republicar mensagem {}", delivery.getEnvelope().getDeliveryTag(), e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Canal de republicação do canal de consumo, aberto de novo se o anterior tiver sido fechado.
+     */
+    private CanalRepublicacao canalRepublicacao(Channel consumo) throws IOException {
+        CanalRepublicacao atual = canais.get(consumo);
+        if (atual != null && atual.channel.isOpen()) {
+            return atual;
+        }
+        synchronized (canais) {
+            atual = canais.get(consumo);
+            if (atual != null && atual.channel.isOpen()) {
+                return atual;
+            }
+            if (atual != null) {
+                atual.close();
+            }
+            CanalRepublicacao novo = new CanalRepublicacao(consumo.getConnection().createChannel());
+            canais.put(consumo, novo);
+            return novo;
+        }
+    }
+
+    private static int tentativas(Delivery delivery) {
+        Map<String, Object> cabecalhos = delivery.getProperties() != null ? delivery.getProperties().getHeaders() : null;
+        Object valor = cabecalhos != null ? cabecalhos.get(CABECALHO_TENTATIVAS) : null;
+        return valor instanceof Number ? ((Number) valor).intValue() : 0;
+    }
+
+    private long atraso(int tentativa) {
+        return atrasoBaseMillis << (tentativa - 1);
+    }
+
+    private String filaEspera(int tentativa) {
+        // O atraso faz parte do nome: mudar a configuração cria filas novas em vez de conflitar com o TTL das antigas
+        return fila + ".espera-" + atraso(tentativa) + "ms";
+    }
+}
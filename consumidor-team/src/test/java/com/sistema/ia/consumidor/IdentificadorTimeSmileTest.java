@@ -0,0 +1,98 @@
+package com.sistema.ia.consumidor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Identificação de brasões pelo índice perceptual e pela busca por características.
+ */
+class IdentificadorTimeSmileTest {
+
+    private static final int LIMIAR = 4;
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void semIndicePerceptualIdentificaPeloVizinhoMaisProximo() throws IOException {
+        IdentificadorTimeSmile identificador = new IdentificadorTimeSmile(IndiceBrasoesTest.criarBrasoes(diretorio));
+        IdentificadorTimeSmile.ResultadoIdentificacao resultado = identificador.identificarTime(
+            jpeg(IndiceBrasoesTest.brasao(new Color(0, 77, 152), new Color(165, 0, 68), 5, false)), "variante");
+        assertEquals("Barcelona", resultado.getTime(), "time");
+        assertTrue(resultado.getDetalhes().startsWith("Brasão mais próximo"), resultado.getDetalhes());
+    }
+
+    @Test
+    void referenciaRecodificadaEhQuaseDuplicata() throws IOException {
+        IndicePerceptual perceptual = new IndicePerceptual(LIMIAR, 1000);
+        IdentificadorTimeSmile identificador = new IdentificadorTimeSmile(IndiceBrasoesTest.criarBrasoes(diretorio),
+            perceptual, true, 0);
+        // As duas variantes do Sevilla só diferem no tom de vermelho e têm o mesmo dHash: a primeira prevalece
+        assertEquals(3, perceptual.getTamanho(), "referências no índice perceptual");
+
+        // O Barcelona não tem faixas da cor do fundo: no Betis, as faixas brancas empatam com o fundo e o
+        // ruído do JPEG vira esses bits do dHash, deixando a cópia recodificada a 6 bits da original
+        BufferedImage barcelona = ImageIO.read(diretorio.resolve("Barcelona.png").toFile());
+        IdentificadorTimeSmile.ResultadoIdentificacao resultado = identificador.identificarTime(jpeg(barcelona), "barcelona");
+        assertEquals("Barcelona", resultado.getTime(), "time");
+        assertTrue(resultado.getDetalhes().startsWith("Quase-duplicata de Barcelona.png"), resultado.getDetalhes());
+        assertTrue(resultado.getConfianca() >= 1.0 - LIMIAR / 64.0, "confiança " + resultado.getConfianca());
+        assertEquals(1L, perceptual.getAcertos(), "acertos");
+    }
+
+    @Test
+    void semReferenciasOIndiceSoAprendeComOTrafego() throws IOException {
+        IdentificadorTimeSmile identificador = new IdentificadorTimeSmile(IndiceBrasoesTest.criarBrasoes(diretorio),
+            new IndicePerceptual(LIMIAR, 1000), false, 0.01);
+        assertEquals(0, identificador.getIndicePerceptual().getTamanho(), "índice começa vazio");
+
+        byte[] variante = jpeg(IndiceBrasoesTest.brasao(new Color(0, 77, 152), new Color(165, 0, 68), 5, false));
+        IdentificadorTimeSmile.ResultadoIdentificacao primeira = identificador.identificarTime(variante, "primeira");
+        assertEquals("Barcelona", primeira.getTime(), "primeira identificação");
+        assertTrue(primeira.getDetalhes().startsWith("Brasão mais próximo"), primeira.getDetalhes());
+        assertEquals(1, identificador.getIndicePerceptual().getTamanho(), "identificação aprendida");
+
+        IdentificadorTimeSmile.ResultadoIdentificacao segunda = identificador.identificarTime(variante, "segunda");
+        assertEquals("Barcelona", segunda.getTime(), "segunda identificação");
+        assertTrue(segunda.getDetalhes().startsWith("Quase-duplicata de primeira"), segunda.getDetalhes());
+    }
+
+    @Test
+    void aprendidasPassamParaONovoIndice() {
+        IndicePerceptual anterior = new IndicePerceptual(LIMIAR, 1000);
+        anterior.adicionar(0L, "Sevilla", "referencia");
+        anterior.aprender(-1L, "Barcelona", "aprendida-1");
+        anterior.aprender(0x00000000FFFFFFFFL, "Barcelona", "aprendida-2");
+        anterior.aprender(0xFFFF0000FFFF0000L, "Removido", "aprendida-3");
+
+        IndicePerceptual novo = anterior.vazio();
+        // Nova referência com o mesmo hash de uma aprendida: a referência prevalece
+        novo.adicionar(-1L, "Real Betis", "nova-referencia");
+        int copiadas = anterior.copiarAprendidas(novo, Set.of("Barcelona", "Real Betis", "Sevilla")::contains);
+
+        assertEquals(1, copiadas, "copiadas");
+        assertEquals(2, novo.getTamanho(), "entradas no novo índice");
+        assertEquals("aprendida-2", novo.buscar(0x00000000FFFFFFFFL).origem, "aprendida mantida");
+        assertEquals("Real Betis", novo.buscar(-1L).rotulo, "referência prevalece");
+        assertNull(novo.buscar(0L), "referência antiga não é copiada");
+        assertNull(novo.buscar(0xFFFF0000FFFF0000L), "time que saiu do diretório");
+    }
+
+    private static byte[] jpeg(BufferedImage imagem) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ImageIO.write(imagem, "jpg", saida);
+        return saida.toByteArray();
+    }
+}
@@ -0,0 +1,159 @@
+package com.sistema.ia.consumidor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Busca de vizinho mais próximo do {@link IndiceBrasoes} sobre brasões sintéticos.
+ */
+class IndiceBrasoesTest {
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void nomeDoTimeVemDoArquivoOuDoSubdiretorio() throws IOException {
+        IndiceBrasoes indice = IndiceBrasoes.carregar(criarBrasoes(diretorio));
+        assertEquals(4, indice.getNumReferencias(), "referências");
+        assertEquals(3, indice.getNumTimes(), "times");
+        Set<String> times = new HashSet<>();
+        for (int i = 0; i < indice.getNumReferencias(); i++) {
+            times.add(indice.getTime(i));
+        }
+        assertEquals(Set.of("Barcelona", "Real Betis", "Sevilla"), times, "times");
+    }
+
+    @Test
+    void referenciaIdenticaTemConfiancaMaxima() throws IOException {
+        IndiceBrasoes indice = IndiceBrasoes.carregar(criarBrasoes(diretorio));
+        for (int i = 0; i < indice.getNumReferencias(); i++) {
+            IndiceBrasoes.Vizinho vizinho = indice.buscar(caracteristicas(indice.getArquivo(i)));
+            assertEquals(indice.getTime(i), vizinho.time, indice.getArquivo(i).toString());
+            assertEquals(0.0, vizinho.distancia, 1e-12, "distância");
+            assertEquals(1.0, vizinho.confianca(), 1e-12, "confiança");
+        }
+    }
+
+    @Test
+    void confiancaComparaComOMelhorDeOutroTime() throws IOException {
+        IndiceBrasoes indice = IndiceBrasoes.carregar(criarBrasoes(diretorio));
+        // Variante que não está no índice: um Barcelona com as faixas deslocadas
+        double[] consulta = CaracteristicasBrasao.extrair(
+            brasao(new Color(0, 77, 152), new Color(165, 0, 68), 5, false), new double[CaracteristicasBrasao.DIMENSAO]);
+        IndiceBrasoes.Vizinho vizinho = indice.buscar(consulta);
+        assertEquals("Barcelona", vizinho.time, "time");
+
+        double outroTime = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < indice.getNumReferencias(); i++) {
+            if (!indice.getTime(i).equals(vizinho.time)) {
+                outroTime = Math.min(outroTime, distancia(consulta, caracteristicas(indice.getArquivo(i))));
+            }
+        }
+        assertEquals(outroTime, vizinho.distanciaOutroTime, 1e-9, "distância ao segundo time");
+        assertEquals(1.0 - vizinho.distancia / outroTime, vizinho.confianca(), 1e-9, "confiança");
+        assertTrue(vizinho.distancia > 0 && vizinho.confianca() < 1.0, "variante não é idêntica");
+    }
+
+    @Test
+    void umTimeSoNaoTemSegundoColocado() throws IOException {
+        salvar(brasao(Color.RED, Color.WHITE, 3, true), diretorio.resolve("Sevilla.png"));
+        IndiceBrasoes indice = IndiceBrasoes.carregar(diretorio);
+        double[] consulta = CaracteristicasBrasao.extrair(brasao(Color.RED, Color.WHITE, 4, true),
+            new double[CaracteristicasBrasao.DIMENSAO]);
+        IndiceBrasoes.Vizinho vizinho = indice.buscar(consulta);
+        assertEquals("Sevilla", vizinho.time, "time");
+        assertTrue(Double.isInfinite(vizinho.distanciaOutroTime), "sem segundo time");
+        assertEquals(1.0 / (1.0 + vizinho.distancia), vizinho.confianca(), 1e-12, "confiança");
+    }
+
+    @Test
+    void buscaSemAPropriaReferenciaAchaOutraDoMesmoTime() throws IOException {
+        IndiceBrasoes indice = IndiceBrasoes.carregar(criarBrasoes(diretorio));
+        int encontradas = 0;
+        for (int i = 0; i < indice.getNumReferencias(); i++) {
+            if (!"Sevilla".equals(indice.getTime(i))) {
+                continue;
+            }
+            IndiceBrasoes.Vizinho vizinho = indice.buscar(caracteristicas(indice.getArquivo(i)), i);
+            assertEquals("Sevilla", vizinho.time, "leave-one-out de " + indice.getArquivo(i));
+            assertNotEquals(0.0, vizinho.distancia, "a própria referência ficou de fora");
+            encontradas++;
+        }
+        assertEquals(2, encontradas, "referências do Sevilla");
+    }
+
+    @Test
+    void diretorioAusenteDaIndiceVazio() {
+        IndiceBrasoes indice = IndiceBrasoes.carregar(diretorio.resolve("nao-existe"));
+        assertEquals(0, indice.getNumReferencias(), "referências");
+        assertNull(indice.buscar(new double[CaracteristicasBrasao.DIMENSAO]), "busca");
+    }
+
+    /**
+     * Três times: dois num arquivo cada e o Sevilla num subdiretório com duas variantes.
+     */
+    static Path criarBrasoes(Path diretorio) throws IOException {
+        salvar(brasao(new Color(0, 77, 152), new Color(165, 0, 68), 3, false), diretorio.resolve("Barcelona.png"));
+        salvar(brasao(new Color(0, 150, 70), Color.WHITE, 4, false), diretorio.resolve("Real_Betis.png"));
+        Files.createDirectories(diretorio.resolve("Sevilla"));
+        salvar(brasao(Color.RED, Color.WHITE, 3, true), diretorio.resolve("Sevilla").resolve("escudo-1.png"));
+        salvar(brasao(new Color(225, 25, 15), Color.WHITE, 3, true), diretorio.resolve("Sevilla").resolve("escudo-2.png"));
+        return diretorio;
+    }
+
+    /**
+     * Escudo com faixas verticais alternadas (ou um círculo por cima, com {@code circulo}) sobre fundo branco.
+     */
+    static BufferedImage brasao(Color primaria, Color secundaria, int faixas, boolean circulo) {
+        BufferedImage imagem = new BufferedImage(96, 112, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = imagem.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, 96, 112);
+        int largura = 72 / faixas;
+        for (int faixa = 0; faixa < faixas; faixa++) {
+            g2d.setColor(faixa % 2 == 0 ? primaria : secundaria);
+            g2d.fillRect(12 + faixa * largura, 10, largura, 70);
+        }
+        g2d.setColor(primaria);
+        g2d.fillPolygon(new int[] {12, 84, 48}, new int[] {80, 80, 104}, 3);
+        if (circulo) {
+            g2d.setColor(Color.BLACK);
+            g2d.fillOval(32, 30, 32, 32);
+        }
+        g2d.dispose();
+        return imagem;
+    }
+
+    static void salvar(BufferedImage imagem, Path arquivo) throws IOException {
+        ImageIO.write(imagem, "png", arquivo.toFile());
+    }
+
+    private static double[] caracteristicas(Path arquivo) throws IOException {
+        return CaracteristicasBrasao.extrair(ImageIO.read(arquivo.toFile()), new double[CaracteristicasBrasao.DIMENSAO]);
+    }
+
+    private static double distancia(double[] a, double[] b) {
+        double soma = 0;
+        for (int d = 0; d < CaracteristicasBrasao.DIMENSAO; d++) {
+            soma += (a[d] - b[d]) * (a[d] - b[d]);
+        }
+        return Math.sqrt(soma);
+    }
+}
@@ -0,0 +1,296 @@
+package com.sistema.ia.gerador;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Catálogo de imagens empacotado em um único arquivo e mapeado em memória.
+ *
+ * Formato: cabeçalho (magic, versão, assinatura das imagens, quantidade), tabela de
+ * índice (tipo, nome, caminho relativo, offset, tamanho) e os bytes das imagens em sequência.
+ * Na inicialização basta um mmap; cada envio lê uma fatia do mapeamento sem syscall.
+ */
+public class CatalogoImagens {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogoImagens.class);
+    private static final int MAGIC = 0x494D4743; // "IMGC"
+    private static final int VERSAO = 2;
+
+    private final List<Entrada> faces;
+    private final List<Entrada> times;
+
+    private CatalogoImagens(List<Entrada> faces, List<Entrada> times) {
+        this.faces = faces;
+        this.times = times;
+    }
+
+    /**
+     * Abre o catálogo, empacotando de novo os diretórios de imagens se ele não existir,
+     * se alguma imagem mudou desde o empacotamento ou se {@code reconstruir} for true.
+     */
+    public static CatalogoImagens abrir(Path imagens, Path arquivo, boolean reconstruir) throws IOException {
+        long assinatura = assinatura(imagens);
+        if (reconstruir || !Files.exists(arquivo) || lerAssinatura(arquivo) != assinatura) {
+            empacotar(imagens, arquivo, assinatura);
+        }
+        return mapear(arquivo);
+    }
+
+    public List<Entrada> getFaces() { return faces; }
+    public List<Entrada> getTimes() { return times; }
+
+    /**
+     * Imagem do catálogo: uma fatia somente leitura do arquivo mapeado.
+     */
+    public static class Entrada {
+        private final ByteBuffer mapeamento;
+        private final String tipo;
+        private final String nomeArquivo;
+        private final String localizador;
+        private final int offset;
+        private final int tamanho;
+        private volatile String hash;
+
+        Entrada(ByteBuffer mapeamento, String tipo, String nomeArquivo, String localizador, int offset, int tamanho) {
+            this.mapeamento = mapeamento;
+            this.tipo = tipo;
+            this.nomeArquivo = nomeArquivo;
+            this.localizador = localizador;
+            this.offset = offset;
+            this.tamanho = tamanho;
+        }
+
+        public String getTipo() { return tipo; }
+        public String getNomeArquivo() { return nomeArquivo; }
+        public int getTamanho() { return tamanho; }
+
+        /**
+         * Caminho da imagem relativo ao diretório de imagens (ex.: faces/happy/x.jpg).
+         */
+        public String getLocalizador() { return localizador; }
+
+        /**
+         * SHA-256 do conteúdo em hexadecimal, calculado no primeiro uso.
+         */
+        public String getHash() {
+            String atual = hash;
+            if (atual == null) {
+                atual = sha256(dados());
+                hash = atual;
+            }
+            return atual;
+        }
+
+        /**
+         * Visão dos bytes da imagem direto no mapeamento, sem cópia.
+         */
+        public ByteBuffer dados() {
+            return mapeamento.duplicate().position(offset).limit(offset + tamanho).slice();
+        }
+
+        /**
+         * Cópia dos bytes da imagem para um array (exigido pela serialização JSON).
+         */
+        public byte[] copiarDados() {
+            byte[] copia = new byte[tamanho];
+            mapeamento.duplicate().position(offset).get(copia);
+            return copia;
+        }
+    }
+
+    private static CatalogoImagens mapear(Path arquivo) throws IOException {
+        MappedByteBuffer mapeamento;
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            mapeamento = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+
+        ByteBuffer leitura = mapeamento.duplicate();
+        DataInputStream indice = new DataInputStream(new ByteBufferInputStream(leitura));
+        if (indice.readInt() != MAGIC || indice.readInt() != VERSAO) {
+            throw new IOException("Arquivo de catálogo inválido: " + arquivo);
+        }
+        indice.readLong(); // assinatura
+        int quantidade = indice.readInt();
+
+        String[] tipos = new String[quantidade];
+        String[] nomes = new String[quantidade];
+        String[] localizadores = new String[quantidade];
+        long[] offsets = new long[quantidade];
+        int[] tamanhos = new int[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            tipos[i] = indice.readUTF();
+            nomes[i] = indice.readUTF();
+            localizadores[i] = indice.readUTF();
+            offsets[i] = indice.readLong();
+            tamanhos[i] = indice.readInt();
+        }
+        int inicioDados = leitura.position();
+
+        ByteBuffer somenteLeitura = mapeamento.asReadOnlyBuffer();
+        List<Entrada> faces = new ArrayList<>();
+        List<Entrada> times = new ArrayList<>();
+        for (int i = 0; i < quantidade; i++) {
+            Entrada entrada = new Entrada(somenteLeitura, tipos[i], nomes[i], localizadores[i],
+                (int) (inicioDados + offsets[i]), tamanhos[i]);
+            ("face".equals(tipos[i]) ? faces : times).add(entrada);
+        }
+        logger.info("Catálogo {} mapeado: {} imagens, {} bytes", arquivo, quantidade, mapeamento.capacity());
+        return new CatalogoImagens(Collections.unmodifiableList(faces), Collections.unmodifiableList(times));
+    }
+
+    private static void empacotar(Path imagens, Path arquivo, long assinatura) throws IOException {
+        List<Path> arquivosFaces = new ArrayList<>();
+        arquivosFaces.addAll(listarImagens(imagens.resolve("faces").resolve("happy")));
+        arquivosFaces.addAll(listarImagens(imagens.resolve("faces").resolve("sad")));
+        List<Path> arquivosTimes = listarImagens(imagens.resolve("teams"));
+
+        // Índice com offsets relativos ao início da área de dados
+        ByteArrayOutputStream bytesIndice = new ByteArrayOutputStream();
+        DataOutputStream indice = new DataOutputStream(bytesIndice);
+        long offset = escreverIndice(indice, imagens, "face", arquivosFaces, 0);
+        escreverIndice(indice, imagens, "team", arquivosTimes, offset);
+
+        if (arquivo.getParent() != null) {
+            Files.createDirectories(arquivo.getParent());
+        }
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario)))) {
+            saida.writeInt(MAGIC);
+            saida.writeInt(VERSAO);
+            saida.writeLong(assinatura);
+            saida.writeInt(arquivosFaces.size() + arquivosTimes.size());
+            bytesIndice.writeTo(saida);
+            for (Path imagem : arquivosFaces) {
+                Files.copy(imagem, saida);
+            }
+            for (Path imagem : arquivosTimes) {
+                Files.copy(imagem, saida);
+            }
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Catálogo empacotado em {}: {} faces, {} times", arquivo, arquivosFaces.size(), arquivosTimes.size());
+    }
+
+    private static List<Path> listarImagens(Path diretorio) throws IOException {
+        if (!Files.isDirectory(diretorio)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            return arquivos.filter(Files::isRegularFile)
+                           .filter(path -> isImageFile(path.toString()))
+                           .sorted()
+                           .collect(Collectors.toList());
+        }
+    }
+
+    private static long escreverIndice(DataOutputStream indice, Path imagens, String tipo, List<Path> arquivos,
+                                       long offset) throws IOException {
+        for (Path imagem : arquivos) {
+            long tamanho = Files.size(imagem);
+            indice.writeUTF(tipo);
+            indice.writeUTF(imagem.getFileName().toString());
+            indice.writeUTF(imagens.relativize(imagem).toString().replace('\\', '/'));
+            indice.writeLong(offset);
+            indice.writeInt((int) tamanho);
+            offset += tamanho;
+        }
+        return offset;
+    }
+
+    static boolean isImageFile(String fileName) {
+        String lower = fileName.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") ||
+               lower.endsWith(".png") || lower.endsWith(".gif");
+    }
+
+    private static String sha256(ByteBuffer dados) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(dados);
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    /**
+     * Caminho, tamanho e data de modificação de cada imagem: muda quando arquivos entram, saem
+     * ou são sobrescritos (a data do diretório só acompanha entradas e saídas).
+     */
+    private static long assinatura(Path imagens) throws IOException {
+        long assinatura = 17;
+        for (Path diretorio : new Path[] {
+                imagens.resolve("faces").resolve("happy"), imagens.resolve("faces").resolve("sad"), imagens.resolve("teams")}) {
+            for (Path imagem : listarImagens(diretorio)) {
+                BasicFileAttributes atributos = Files.readAttributes(imagem, BasicFileAttributes.class);
+                assinatura = assinatura * 31 + imagens.relativize(imagem).toString().hashCode();
+                assinatura = assinatura * 31 + atributos.size();
+                assinatura = assinatura * 31 + atributos.lastModifiedTime().toMillis();
+            }
+            assinatura = assinatura * 31 + 1; // separa os diretórios
+        }
+        return assinatura;
+    }
+
+    private static long lerAssinatura(Path arquivo) {
+        try (DataInputStream entrada = new DataInputStream(Files.newInputStream(arquivo))) {
+            if (entrada.readInt() != MAGIC || entrada.readInt() != VERSAO) {
+                return Long.MIN_VALUE;
+            }
+            return entrada.readLong();
+        } catch (IOException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Adapta um ByteBuffer para a leitura do índice com DataInputStream.
+     */
+    private static class ByteBufferInputStream extends java.io.InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] destino, int offset, int tamanho) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int lidos = Math.min(tamanho, buffer.remaining());
+            buffer.get(destino, offset, lidos);
+            return lidos;
+        }
+    }
+}
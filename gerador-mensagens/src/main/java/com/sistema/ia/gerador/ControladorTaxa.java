@@ -0,0 +1,214 @@
+package com.sistema.ia.gerador;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Controle de taxa em malha fechada pelo acúmulo nas filas (AIMD).
+ *
+ * A cada intervalo consulta a profundidade das filas com declaração passiva e estima a taxa
+ * de consumo (o que foi publicado para a fila menos o quanto ela cresceu). Com shards, a
+ * profundidade de uma routing key é a soma das filas de shard dela. Se alguma fila
+ * passar do alvo, o limite de envio é multiplicado pelo fator de redução; senão cresce
+ * somando o incremento, até a taxa do perfil de carga. Um bloqueio do broker
+ * (connection.blocked) também conta como sobrecarga.
+ *
+ * Enquanto o limite está abaixo da taxa do perfil, ele é aplicado por um balde de fichas com
+ * rajada curta ({@value #FICHAS_MAXIMAS} fichas, para absorver o jitter do agendamento e as
+ * chegadas de Poisson): o envio agendado que não encontra ficha é suprimido, em vez de
+ * atrasado, para o gerador não despejar o atraso acumulado quando as filas esvaziarem. Com o
+ * limite no teto, todos os envios passam. {@link #permitirEnvio} é chamado só pela thread de
+ * envio; o limite é alterado pela thread de controle e pelo aviso de bloqueio do broker.
+ */
+public class ControladorTaxa {
+
+    private static final Logger logger = LoggerFactory.getLogger(ControladorTaxa.class);
+    private static final double FICHAS_MAXIMAS = 3;
+
+    private final Connection connection;
+    private final Map<String, List<String>> filasPorRoutingKey;
+    private final DoubleSupplier taxaPerfil;
+    private final long filaAlvo;
+    private final double incremento;
+    private final double fatorReducao;
+    private final double taxaMinima;
+    private final long intervaloMillis;
+    private final Map<String, LongAdder> publicadas = new ConcurrentHashMap<>();
+    private final Map<String, long[]> ultimaLeitura = new ConcurrentHashMap<>();
+    private final Metricas metricas = Metricas.global();
+
+    private volatile double limite;
+    private Channel canalConsulta;
+    private Thread thread;
+
+    // Estado do balde de fichas, só da thread de envio
+    private double fichas = FICHAS_MAXIMAS;
+    private long ultimaFichaNanos = System.nanoTime();
+
+    /**
+     * @param filasPorRoutingKey filas consultadas para cada routing key publicada
+     * @param taxaPerfil         taxa atual do perfil de carga, teto do limite
+     */
+    public ControladorTaxa(Connection connection, Map<String, List<String>> filasPorRoutingKey, DoubleSupplier taxaPerfil,
+                           long filaAlvo, double incremento, double fatorReducao, double taxaMinima,
+                           long intervaloMillis) {
+        this.connection = connection;
+        this.filasPorRoutingKey = filasPorRoutingKey;
+        this.taxaPerfil = taxaPerfil;
+        this.filaAlvo = filaAlvo;
+        this.incremento = incremento;
+        this.fatorReducao = fatorReducao;
+        this.taxaMinima = taxaMinima;
+        this.intervaloMillis = intervaloMillis;
+        this.limite = Math.max(taxaMinima, taxaPerfil.getAsDouble());
+        for (String routingKey : filasPorRoutingKey.keySet()) {
+            publicadas.put(routingKey, new LongAdder());
+        }
+    }
+
+    public void iniciar() {
+        thread = new Thread(this::executar, "gerador-controle");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void parar() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public double getLimite() {
+        return limite;
+    }
+
+    /**
+     * Consome uma ficha se houver; false significa que este envio deve ser suprimido.
+     */
+    public boolean permitirEnvio(long agoraNanos) {
+        double limiteAtual = limite;
+        if (limiteAtual >= taxaPerfil.getAsDouble()) {
+            // Sem restrição: o próprio perfil já dita a taxa
+            fichas = FICHAS_MAXIMAS;
+            ultimaFichaNanos = agoraNanos;
+            return true;
+        }
+        fichas = Math.min(FICHAS_MAXIMAS, fichas + limiteAtual * (agoraNanos - ultimaFichaNanos) / 1e9);
+        ultimaFichaNanos = agoraNanos;
+        if (fichas >= 1) {
+            fichas -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    public void registrarEnvio(String routingKey) {
+        LongAdder contador = publicadas.get(routingKey);
+        if (contador != null) {
+            contador.increment();
+        }
+    }
+
+    /**
+     * Redução multiplicativa imediata (ex.: broker bloqueou a conexão).
+     */
+    public void reduzir(String motivo) {
+        double anterior;
+        double novo;
+        synchronized (this) {
+            anterior = limite;
+            novo = Math.max(taxaMinima, anterior * fatorReducao);
+            limite = novo;
+        }
+        System.out.printf("[CONTROLE] %s: limite %.1f -> %.1f msgs/s%n", motivo, anterior, novo);
+    }
+
+    private void executar() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(intervaloMillis);
+                ajustar();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        fecharCanal();
+    }
+
+    private void ajustar() {
+        long agora = System.nanoTime();
+        boolean acimaDoAlvo = false;
+        StringBuilder situacao = new StringBuilder();
+        for (Map.Entry<String, List<String>> entrada : filasPorRoutingKey.entrySet()) {
+            List<String> filas = entrada.getValue();
+            String fila = filas.size() == 1 ? filas.get(0) : entrada.getKey() + ".*";
+            long profundidade = 0;
+            try {
+                for (String consultada : filas) {
+                    profundidade += profundidade(consultada);
+                }
+            } catch (IOException e) {
+                // Fila ainda não declarada pelos consumidores (ou canal fechado): tenta de novo no próximo ciclo
+                logger.debug("Não foi possível consultar as filas {}", filas, e);
+                fecharCanal();
+                continue;
+            }
+            long enviadas = publicadas.get(entrada.getKey()).sum();
+            long[] anterior = ultimaLeitura.put(fila, new long[]{agora, profundidade, enviadas});
+            if (anterior != null) {
+                double segundos = (agora - anterior[0]) / 1e9;
+                double consumo = ((enviadas - anterior[2]) - (profundidade - anterior[1])) / segundos;
+                situacao.append(String.format(" %s=%d (consumo ~%.1f msgs/s)", fila, profundidade, Math.max(0, consumo)));
+            } else {
+                situacao.append(String.format(" %s=%d", fila, profundidade));
+            }
+            acimaDoAlvo |= profundidade > filaAlvo;
+        }
+
+        double anterior;
+        double novo;
+        double teto = Math.max(taxaMinima, taxaPerfil.getAsDouble());
+        synchronized (this) {
+            // reduzir() pode ser chamado ao mesmo tempo pela thread da conexão
+            anterior = limite;
+            novo = acimaDoAlvo ? Math.max(taxaMinima, Math.min(anterior, teto) * fatorReducao)
+                : Math.min(teto, anterior + incremento);
+            limite = novo;
+        }
+        if (acimaDoAlvo) {
+            metricas.incrementar("reducao_controle");
+        }
+        if (acimaDoAlvo || Math.abs(novo - anterior) >= 0.05) {
+            System.out.printf("[CONTROLE] filas:%s | limite %.1f -> %.1f msgs/s%n", situacao, anterior, novo);
+        }
+    }
+
+    private long profundidade(String fila) throws IOException {
+        if (canalConsulta == null || !canalConsulta.isOpen()) {
+            canalConsulta = connection.createChannel();
+        }
+        AMQP.Queue.DeclareOk declarada = canalConsulta.queueDeclarePassive(fila);
+        return declarada.getMessageCount();
+    }
+
+    private void fecharCanal() {
+        if (canalConsulta != null && canalConsulta.isOpen()) {
+            try {
+                canalConsulta.close();
+            } catch (Exception e) {
+                logger.debug("Erro ao fechar canal de consulta", e);
+            }
+        }
+        canalConsulta = null;
+    }
+}
@@ -1,24 +1,30 @@
 package com.sistema.ia.gerador;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 public class GeradorMensagens {
     
@@ -26,12 +32,45 @@ public class GeradorMensagens {
     private static final String EXCHANGE_NAME = "image_processing_exchange";
     private static final String ROUTING_KEY_FACE = "face";
     private static final String ROUTING_KEY_TEAM = "team";
+    private static final long INTERVALO_RELATORIO_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int MAX_EM_VOO = Integer.parseInt(System.getenv().getOrDefault("PUBLICACAO_MAX_EM_VOO", "1000"));
+    // Publicações de uma mensagem rejeitada (nack) pelo broker antes de contá-la como falha, e a
+    // espera antes da primeira republicação (dobra a cada rejeição)
+    private static final int MAX_TENTATIVAS =
+        Integer.parseInt(System.getenv().getOrDefault("PUBLICACAO_MAX_TENTATIVAS", "5"));
+    private static final long ATRASO_REPUBLICACAO_MS =
+        Long.parseLong(System.getenv().getOrDefault("PUBLICACAO_ATRASO_MS", "100"));
+    private static final long ESPERA_CONFIRMACOES_MILLIS = 5000;
+    private static final int METRICAS_PORTA = Integer.parseInt(System.getenv().getOrDefault("METRICAS_PORTA", "9100"));
+    private static final int INUNDACAO_PUBLICADORES = Integer.parseInt(System.getenv().getOrDefault("INUNDACAO_PUBLICADORES", "4"));
+    private static final boolean INUNDACAO_CONEXAO_POR_PUBLICADOR =
+        Boolean.parseBoolean(System.getenv().getOrDefault("INUNDACAO_CONEXAO_POR_PUBLICADOR", "false"));
+    private static final int MODELOS_SIMULADOS = 16;
+    // Roteamento por conteúdo: a routing key ganha o shard da imagem (ex.: face.3); 0 desativa
+    private static final int SHARDS = Integer.parseInt(System.getenv().getOrDefault("SHARDS", "0"));
+    private static final boolean CONTROLE_ADAPTATIVO =
+        Boolean.parseBoolean(System.getenv().getOrDefault("CONTROLE_ADAPTATIVO", "false"));
+    private static final long CONTROLE_FILA_ALVO = Long.parseLong(System.getenv().getOrDefault("CONTROLE_FILA_ALVO", "1000"));
+    private static final long CONTROLE_INTERVALO_MS = Long.parseLong(System.getenv().getOrDefault("CONTROLE_INTERVALO_MS", "1000"));
+    private static final double CONTROLE_INCREMENTO = Double.parseDouble(System.getenv().getOrDefault("CONTROLE_INCREMENTO", "1"));
+    private static final double CONTROLE_REDUCAO = Double.parseDouble(System.getenv().getOrDefault("CONTROLE_REDUCAO", "0.5"));
+    private static final double CONTROLE_TAXA_MINIMA = Double.parseDouble(System.getenv().getOrDefault("CONTROLE_TAXA_MINIMA", "0.5"));
     
     private final ConnectionFactory factory;
     private final ObjectMapper objectMapper;
     private final Random random;
-    private final List<File> faceImages;
-    private final List<File> teamImages;
+    private final List<CatalogoImagens.Entrada> faceImages;
+    private final List<CatalogoImagens.Entrada> teamImages;
+    private final boolean formatoBinario;
+    private final boolean envioPorReferencia;
+    private final PreProcessadorImagens preProcessador;
+    private final PerfilCarga perfil;
+    private final double proporcaoFaces;
+    private final AMQP.BasicProperties propriedadesFace;
+    private final AMQP.BasicProperties propriedadesTeam;
+    private final Metricas metricas = Metricas.global();
+    private final AtomicInteger conexoesBloqueadas = new AtomicInteger();
+    private volatile ControladorTaxa controlador;
     
     public GeradorMensagens() {
         this.factory = new ConnectionFactory();
@@ -39,60 +78,39 @@ public class GeradorMensagens {
         this.random = new Random();
         this.faceImages = new ArrayList<>();
         this.teamImages = new ArrayList<>();
+        this.formatoBinario = "binario".equalsIgnoreCase(System.getenv().getOrDefault("FORMATO_MENSAGEM", "json"));
+        this.envioPorReferencia = Boolean.parseBoolean(System.getenv().getOrDefault("ENVIO_POR_REFERENCIA", "false"));
+        this.preProcessador = Boolean.parseBoolean(System.getenv().getOrDefault("PRE_PROCESSAR_FACES", "false"))
+            ? new PreProcessadorImagens() : null;
+        this.perfil = PerfilCarga.doAmbiente(System.getenv(), random);
+        this.proporcaoFaces = proporcaoFaces(System.getenv().getOrDefault("MISTURA_FACE_TEAM", "1:1"));
+        this.propriedadesFace = propriedades(Long.parseLong(System.getenv().getOrDefault("PRAZO_FACE_MS", "0")));
+        this.propriedadesTeam = propriedades(Long.parseLong(System.getenv().getOrDefault("PRAZO_TEAM_MS", "0")));
         
         // Configurar conexão RabbitMQ
         factory.setHost(System.getenv().getOrDefault("RABBITMQ_HOST", "localhost"));
         factory.setPort(Integer.parseInt(System.getenv().getOrDefault("RABBITMQ_PORT", "5672")));
         factory.setUsername(System.getenv().getOrDefault("RABBITMQ_USER", "admin"));
         factory.setPassword(System.getenv().getOrDefault("RABBITMQ_PASS", "admin123"));
+        factory.setVirtualHost(System.getenv().getOrDefault("RABBITMQ_VHOST", "/"));
         
         // Carregar arquivos de imagem
         carregarImagens();
     }
     
     private void carregarImagens() {
-        String imagensPath = "/shared-images";
+        Path imagensPath = Paths.get(System.getenv().getOrDefault("IMAGENS_DIR", "/shared-images"));
+        Path catalogoPath = Paths.get(System.getenv().getOrDefault("CATALOGO_ARQUIVO", "/tmp/catalogo-imagens.bin"));
+        boolean reconstruir = Boolean.parseBoolean(System.getenv().getOrDefault("CATALOGO_RECONSTRUIR", "false"));
         
-        // Carregar imagens de faces (happy e sad)
-        Path facesHappyPath = Paths.get(imagensPath, "faces", "happy");
-        Path facesSadPath = Paths.get(imagensPath, "faces", "sad");
-        
-        if (Files.exists(facesHappyPath)) {
-            try {
-                Files.list(facesHappyPath)
-                     .filter(Files::isRegularFile)
-                     .filter(path -> isImageFile(path.toString()))
-                     .forEach(path -> faceImages.add(path.toFile()));
-                logger.info("Carregadas {} imagens de faces felizes", faceImages.size());
-            } catch (IOException e) {
-                logger.error("Erro ao carregar imagens de faces felizes", e);
-            }
-        }
-        
-        if (Files.exists(facesSadPath)) {
-            try {
-                Files.list(facesSadPath)
-                     .filter(Files::isRegularFile)
-                     .filter(path -> isImageFile(path.toString()))
-                     .forEach(path -> faceImages.add(path.toFile()));
-                logger.info("Total de imagens de faces: {}", faceImages.size());
-            } catch (IOException e) {
-                logger.error("Erro ao carregar imagens de faces tristes", e);
-            }
-        }
-        
-        // Carregar imagens de times
-        Path teamsPath = Paths.get(imagensPath, "teams");
-        if (Files.exists(teamsPath)) {
-            try {
-                Files.list(teamsPath)
-                     .filter(Files::isRegularFile)
-                     .filter(path -> isImageFile(path.toString()))
-                     .forEach(path -> teamImages.add(path.toFile()));
-                logger.info("Carregadas {} imagens de teams", teamImages.size());
-            } catch (IOException e) {
-                logger.error("Erro ao carregar imagens de teams", e);
-            }
+        // Empacotar as imagens (faces happy/sad e teams) em um arquivo único e mapeá-lo em memória
+        try {
+            CatalogoImagens catalogo = CatalogoImagens.abrir(imagensPath, catalogoPath, reconstruir);
+            faceImages.addAll(catalogo.getFaces());
+            teamImages.addAll(catalogo.getTimes());
+            logger.info("Carregadas {} imagens de faces e {} imagens de teams", faceImages.size(), teamImages.size());
+        } catch (IOException e) {
+            logger.error("Erro ao carregar catálogo de imagens", e);
         }
         
         // Se não há imagens, gerar dados simulados
@@ -103,39 +121,148 @@ public class GeradorMensagens {
         }
     }
     
-    private boolean isImageFile(String fileName) {
-        String lower = fileName.toLowerCase();
-        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || 
-               lower.endsWith(".png") || lower.endsWith(".gif");
-    }
-    
     public void iniciarGeracao() {
         try (Connection connection = factory.newConnection();
              Channel channel = connection.createChannel()) {
             
             System.out.println("Conectado ao RabbitMQ!");
+            monitorarBloqueio(connection);
+            if (metricas.expor(METRICAS_PORTA) != null) {
+                System.out.println("Métricas disponíveis em http://localhost:" + METRICAS_PORTA + "/metrics");
+            }
             
             // Declarar exchange
             channel.exchangeDeclare(EXCHANGE_NAME, "topic", true);
             System.out.println("Exchange declarado: " + EXCHANGE_NAME);
+            System.out.println("Formato das mensagens: " + (formatoBinario ? "binário" : "JSON")
+                + (envioPorReferencia ? ", por referência (hash + localizador)" : "")
+                + (preProcessador != null ? ", faces pré-processadas (64x64 em cinza)" : ""));
+            if (SHARDS > 0) {
+                System.out.println("Roteamento por conteúdo em " + SHARDS + " shards (routing keys face.N / team.N)");
+            }
+            System.out.println("Prazo (TTL) das mensagens - face: " + descreverPrazo(propriedadesFace)
+                + ", team: " + descreverPrazo(propriedadesTeam));
+            
+            System.out.println("=== GERADOR INICIADO - Perfil de carga: " + perfil
+                + ", faces: " + Math.round(proporcaoFaces * 100) + "% ===");
             
-            System.out.println("=== GERADOR INICIADO - Enviando exatamente 5 mensagens por segundo ===");
+            // Publisher confirms assíncronos: nenhuma mensagem perdida pelo broker passa despercebida
+            PublicadorConfirmado publicador = new PublicadorConfirmado(channel, EXCHANGE_NAME, MAX_EM_VOO,
+                MAX_TENTATIVAS, ATRASO_REPUBLICACAO_MS);
+            System.out.println("Publisher confirms ativados, até " + MAX_EM_VOO + " mensagens sem confirmação");
             
-            ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+            if (CONTROLE_ADAPTATIVO) {
+                // Malha fechada: o perfil vira o teto e o limite real segue a profundidade das filas
+                Map<String, List<String>> filas = new LinkedHashMap<>();
+                filas.put(ROUTING_KEY_FACE, filasControladas(System.getenv().getOrDefault("CONTROLE_FILA_FACE", "face_analysis_queue")));
+                filas.put(ROUTING_KEY_TEAM, filasControladas(System.getenv().getOrDefault("CONTROLE_FILA_TEAM", "team_identification_queue")));
+                long inicioNanos = System.nanoTime();
+                controlador = new ControladorTaxa(connection, filas,
+                    () -> perfil.taxaEm((System.nanoTime() - inicioNanos) / 1e9), CONTROLE_FILA_ALVO,
+                    CONTROLE_INCREMENTO, CONTROLE_REDUCAO, CONTROLE_TAXA_MINIMA, CONTROLE_INTERVALO_MS);
+                controlador.iniciar();
+                System.out.println("Controle adaptativo ativado: filas " + filas.values() + " abaixo de "
+                    + CONTROLE_FILA_ALVO + " mensagens (AIMD +" + CONTROLE_INCREMENTO + " / x" + CONTROLE_REDUCAO + ")");
+            }
             
-            // Agendar envio de mensagens a cada 200ms (exatamente 5 msgs/segundo)
-            scheduler.scheduleAtFixedRate(() -> {
+            // Uma única thread de envio, dona do canal, seguindo o agendamento do perfil
+            Thread envio = new Thread(() -> executarPerfil(publicador), "gerador-envio");
+            envio.start();
+            
+            // Manter o programa rodando
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                System.out.println("Parando gerador de mensagens...");
+                if (controlador != null) {
+                    controlador.parar();
+                }
+                envio.interrupt();
                 try {
-                    enviarMensagem(channel);
-                } catch (Exception e) {
-                    System.err.println("Erro ao enviar mensagem: " + e.getMessage());
+                    envio.join(ESPERA_CONFIRMACOES_MILLIS + TimeUnit.SECONDS.toMillis(5));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-            }, 0, 200, TimeUnit.MILLISECONDS);
+            }));
+            
+            // Aguardar indefinidamente
+            Thread.currentThread().join();
+            
+        } catch (Exception e) {
+            System.err.println("Erro fatal no gerador de mensagens: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Modo inundação: publica o mais rápido que o broker aceitar, para testes de carga.
+     *
+     * Cada publicador roda na sua thread com canal próprio (e, opcionalmente, conexão própria),
+     * sem agendamento nem log por mensagem. Os corpos são modelos serializados de antemão; a
+     * cada envio só o id e os instantes são gravados numa cópia. A taxa alcançada é reportada
+     * periodicamente.
+     */
+    public void iniciarInundacao() {
+        try (Connection connection = factory.newConnection()) {
+            
+            System.out.println("Conectado ao RabbitMQ!");
+            monitorarBloqueio(connection);
+            if (metricas.expor(METRICAS_PORTA) != null) {
+                System.out.println("Métricas disponíveis em http://localhost:" + METRICAS_PORTA + "/metrics");
+            }
+            
+            try (Channel channel = connection.createChannel()) {
+                channel.exchangeDeclare(EXCHANGE_NAME, "topic", true);
+            }
+            System.out.println("Exchange declarado: " + EXCHANGE_NAME);
+            
+            List<ModeloMensagem> modelosFaces = criarModelos("face", ROUTING_KEY_FACE, faceImages);
+            List<ModeloMensagem> modelosTimes = criarModelos("team", ROUTING_KEY_TEAM, teamImages);
+            System.out.println("Modelos pré-serializados (" + (formatoBinario ? "binário" : "JSON")
+                + (envioPorReferencia ? ", por referência" : "")
+                + (preProcessador != null ? ", faces pré-processadas" : "") + ") - Faces: " + modelosFaces.size()
+                + ", Teams: " + modelosTimes.size());
+            
+            System.out.println("=== GERADOR INICIADO - Modo inundação: " + INUNDACAO_PUBLICADORES + " publicadores"
+                + (INUNDACAO_CONEXAO_POR_PUBLICADOR ? " com conexões próprias" : " em uma conexão")
+                + ", até " + MAX_EM_VOO + " mensagens sem confirmação cada, faces: "
+                + Math.round(proporcaoFaces * 100) + "% ===");
+            
+            LongAdder enviadas = new LongAdder();
+            List<Thread> publicadores = new ArrayList<>();
+            for (int i = 0; i < INUNDACAO_PUBLICADORES; i++) {
+                Thread publicador = new Thread(() -> executarInundacao(connection, modelosFaces, modelosTimes, enviadas),
+                    "gerador-inundacao-" + (i + 1));
+                publicadores.add(publicador);
+                publicador.start();
+            }
+            
+            ScheduledExecutorService relatorio = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+                Thread thread = new Thread(tarefa, "gerador-relatorio");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long inicioNanos = System.nanoTime();
+            AtomicLong anterior = new AtomicLong();
+            long intervaloSegundos = TimeUnit.NANOSECONDS.toSeconds(INTERVALO_RELATORIO_NANOS);
+            relatorio.scheduleAtFixedRate(() -> {
+                long total = enviadas.sum();
+                double segundos = (System.nanoTime() - inicioNanos) / 1e9;
+                System.out.printf("[GERADOR] t=%.0fs taxa realizada %.0f msgs/s (média %.0f msgs/s), total %d%n",
+                    segundos, (total - anterior.getAndSet(total)) / (double) intervaloSegundos, total / segundos, total);
+            }, intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
             
-            // Manter o programa rodando
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("Parando gerador de mensagens...");
-                scheduler.shutdown();
+                relatorio.shutdownNow();
+                publicadores.forEach(Thread::interrupt);
+                long limite = System.currentTimeMillis() + ESPERA_CONFIRMACOES_MILLIS + TimeUnit.SECONDS.toMillis(5);
+                try {
+                    for (Thread publicador : publicadores) {
+                        publicador.join(Math.max(1, limite - System.currentTimeMillis()));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                System.out.println("Total enviado: " + enviadas.sum());
             }));
             
             // Aguardar indefinidamente
@@ -147,51 +274,300 @@ public class GeradorMensagens {
         }
     }
     
-    private void enviarMensagem(Channel channel) throws Exception {
-        // Decidir tipo de mensagem (50% face, 50% team)
-        boolean isFace = random.nextBoolean();
+    /**
+     * Laço de um publicador do modo inundação: sem espera entre envios, limitado apenas pelas
+     * confirmações do broker.
+     */
+    private void executarInundacao(Connection compartilhada, List<ModeloMensagem> modelosFaces,
+                                   List<ModeloMensagem> modelosTimes, LongAdder enviadas) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        Connection connection = null;
+        try {
+            if (INUNDACAO_CONEXAO_POR_PUBLICADOR) {
+                connection = factory.newConnection();
+                monitorarBloqueio(connection);
+            } else {
+                connection = compartilhada;
+            }
+            try (Channel channel = connection.createChannel()) {
+                PublicadorConfirmado publicador = new PublicadorConfirmado(channel, EXCHANGE_NAME, MAX_EM_VOO,
+                    MAX_TENTATIVAS, ATRASO_REPUBLICACAO_MS);
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        if (conexoesBloqueadas.get() > 0) {
+                            // Broker sem recursos: esperar o desbloqueio em vez de empilhar publicações no socket
+                            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                            continue;
+                        }
+                        boolean face = aleatorio.nextDouble() < proporcaoFaces;
+                        List<ModeloMensagem> modelos = face ? modelosFaces : modelosTimes;
+                        ModeloMensagem modelo = modelos.get(aleatorio.nextInt(modelos.size()));
+                        byte[] corpo = modelo.instanciar(aleatorio.nextLong(), aleatorio.nextLong(), System.currentTimeMillis());
+                        publicador.publicar(modelo.getRoutingKey(), face ? propriedadesFace : propriedadesTeam, corpo);
+                        enviadas.increment();
+                        metricas.incrementar("enviada");
+                    }
+                } catch (InterruptedException e) {
+                    // Encerramento pedido
+                }
+                
+                // Limpar a interrupção para poder esperar as confirmações antes de fechar o canal
+                Thread.interrupted();
+                if (!publicador.aguardarConfirmacoes(ESPERA_CONFIRMACOES_MILLIS)) {
+                    System.err.println(Thread.currentThread().getName() + " encerrando com "
+                        + publicador.getEmVoo() + " mensagens sem confirmação do broker");
+                }
+            }
+        } catch (Exception e) {
+            metricas.incrementar("erro_envio");
+            logger.error("Publicador {} interrompido por erro", Thread.currentThread().getName(), e);
+        } finally {
+            if (connection != null && connection != compartilhada) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                    logger.warn("Erro ao fechar conexão do publicador", e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Um modelo por imagem do catálogo; sem imagens do tipo, alguns modelos com dados simulados.
+     */
+    private List<ModeloMensagem> criarModelos(String tipo, String routingKey, List<CatalogoImagens.Entrada> imagens)
+            throws IOException {
+        List<ModeloMensagem> modelos = new ArrayList<>();
+        if (imagens.isEmpty()) {
+            for (int i = 0; i < MODELOS_SIMULADOS; i++) {
+                modelos.add(ModeloMensagem.criar(montarMensagem(null, tipo, null, 0),
+                    SHARDS > 0 ? routingKey + "." + (i % SHARDS) : routingKey, formatoBinario, objectMapper));
+            }
+        } else {
+            for (CatalogoImagens.Entrada imagem : imagens) {
+                modelos.add(ModeloMensagem.criar(montarMensagem(null, tipo, imagem, 0), rotear(routingKey, imagem),
+                    formatoBinario, objectMapper));
+            }
+        }
+        return modelos;
+    }
+    
+    /**
+     * Laço de envio em malha aberta: cada mensagem sai no instante agendado pelo perfil, mesmo
+     * que a anterior tenha atrasado. Se o envio ficar para trás, as próximas saem em sequência
+     * até alcançar o agendamento. Ao ser interrompido, espera as confirmações pendentes.
+     */
+    private void executarPerfil(PublicadorConfirmado publicador) {
+        long inicioNanos = System.nanoTime();
+        long inicioEpochMillis = System.currentTimeMillis();
+        long previstoNanos = 0;
+        long enviadas = 0;
+        long enviadasNoRelatorio = 0;
+        long proximoRelatorioNanos = inicioNanos + INTERVALO_RELATORIO_NANOS;
+        
+        while (!Thread.currentThread().isInterrupted()) {
+            previstoNanos = perfil.proximoEnvioNanos(previstoNanos);
+            long espera = inicioNanos + previstoNanos - System.nanoTime();
+            if (espera > 0) {
+                LockSupport.parkNanos(espera);
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+            }
+            
+            metricas.registrarNanos("atraso_agendamento", System.nanoTime() - inicioNanos - previstoNanos);
+            if (conexoesBloqueadas.get() > 0) {
+                // Com a conexão bloqueada o envio travaria no socket; o agendamento segue e o envio é descartado
+                metricas.incrementar("suprimida_bloqueio");
+            } else if (controlador != null && !controlador.permitirEnvio(System.nanoTime())) {
+                metricas.incrementar("suprimida_controle");
+            } else {
+                try {
+                    enviarMensagem(publicador, inicioEpochMillis + TimeUnit.NANOSECONDS.toMillis(previstoNanos));
+                    enviadas++;
+                    metricas.incrementar("enviada");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    metricas.incrementar("erro_envio");
+                    System.err.println("Erro ao enviar mensagem: " + e.getMessage());
+                }
+            }
+            
+            long agora = System.nanoTime();
+            if (agora >= proximoRelatorioNanos) {
+                double segundos = (agora - inicioNanos) / 1e9;
+                double janela = (agora - proximoRelatorioNanos + INTERVALO_RELATORIO_NANOS) / 1e9;
+                System.out.printf("[GERADOR] t=%.0fs taxa alvo %.1f msgs/s%s, realizada %.1f msgs/s, atraso %d ms, total %d%s%n",
+                    segundos, perfil.taxaEm(segundos),
+                    controlador != null ? String.format(" (limite %.1f)", controlador.getLimite()) : "",
+                    (enviadas - enviadasNoRelatorio) / janela,
+                    TimeUnit.NANOSECONDS.toMillis(Math.max(0, agora - inicioNanos - previstoNanos)), enviadas,
+                    conexoesBloqueadas.get() > 0 ? ", conexão bloqueada pelo broker" : "");
+                enviadasNoRelatorio = enviadas;
+                proximoRelatorioNanos = agora + INTERVALO_RELATORIO_NANOS;
+            }
+        }
+        
+        // Limpar a interrupção para poder esperar as confirmações antes de fechar o canal
+        Thread.interrupted();
+        try {
+            if (!publicador.aguardarConfirmacoes(ESPERA_CONFIRMACOES_MILLIS)) {
+                System.err.println("Encerrando com " + publicador.getEmVoo() + " mensagens sem confirmação do broker");
+            }
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Erro ao aguardar confirmações: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Propriedades AMQP de um tipo de mensagem: o content-type indica o formato para os consumidores
+     * e, com prazo configurado, o expiration faz o broker descartar (para a dead-letter exchange das
+     * filas) a mensagem que esperar mais que isso. Os consumidores usam o mesmo prazo ao receber.
+     */
+    private AMQP.BasicProperties propriedades(long prazoMillis) {
+        AMQP.BasicProperties.Builder propriedades = new AMQP.BasicProperties.Builder()
+            .contentType(formatoBinario ? CodecMensagem.CONTENT_TYPE_BINARIO : CodecMensagem.CONTENT_TYPE_JSON);
+        if (prazoMillis > 0) {
+            propriedades.expiration(String.valueOf(prazoMillis));
+        }
+        return propriedades.build();
+    }
+    
+    private static String descreverPrazo(AMQP.BasicProperties propriedades) {
+        return propriedades.getExpiration() != null ? propriedades.getExpiration() + " ms" : "sem prazo";
+    }
+    
+    /**
+     * Routing key de envio: com shards, o shard vem do hash do conteúdo da imagem, então a mesma
+     * imagem sempre cai na mesma fila e é processada pela mesma instância de consumidor (a que tem
+     * o resultado em cache). Dados simulados vão para um shard qualquer.
+     */
+    private String rotear(String routingKey, CatalogoImagens.Entrada imagem) {
+        if (SHARDS <= 0) {
+            return routingKey;
+        }
+        int shard = imagem != null
+            ? (int) Long.remainderUnsigned(Long.parseUnsignedLong(imagem.getHash().substring(0, 15), 16), SHARDS)
+            : ThreadLocalRandom.current().nextInt(SHARDS);
+        return routingKey + "." + shard;
+    }
+    
+    /**
+     * Filas consultadas pelo controle adaptativo: a fila configurada ou, com shards, cada fila de shard dela.
+     */
+    private static List<String> filasControladas(String fila) {
+        List<String> filas = new ArrayList<>();
+        if (SHARDS <= 0) {
+            filas.add(fila);
+        }
+        for (int shard = 0; shard < SHARDS; shard++) {
+            filas.add(fila + ".shard-" + shard);
+        }
+        return filas;
+    }
+    
+    /**
+     * Acompanha connection.blocked/unblocked: o broker bloqueia os publicadores quando passa do
+     * limite de memória ou disco, e sem isso o envio simplesmente travaria no socket sem aviso.
+     * Enquanto houver conexão bloqueada os envios são suspensos, e o controle adaptativo (se
+     * ativo) reduz o limite de taxa.
+     */
+    private void monitorarBloqueio(Connection connection) {
+        connection.addBlockedListener(motivo -> {
+            conexoesBloqueadas.incrementAndGet();
+            metricas.incrementar("bloqueio_broker");
+            System.err.println("AVISO: broker bloqueou a conexão " + connection + ": " + motivo);
+            ControladorTaxa atual = controlador;
+            if (atual != null) {
+                atual.reduzir("Broker bloqueou a conexão");
+            }
+        }, () -> {
+            conexoesBloqueadas.decrementAndGet();
+            System.out.println("Broker desbloqueou a conexão " + connection);
+        });
+    }
+    
+    private void enviarMensagem(PublicadorConfirmado publicador, long envioPrevisto) throws Exception {
+        // Decidir tipo de mensagem conforme a mistura face:team configurada
+        boolean isFace = random.nextDouble() < proporcaoFaces;
         String tipo = isFace ? "face" : "team";
         String routingKey = isFace ? ROUTING_KEY_FACE : ROUTING_KEY_TEAM;
+        String id = UUID.randomUUID().toString();
         
-        MensagemImagem mensagem;
+        // Imagem real do catálogo, ou null para enviar dados simulados
+        List<CatalogoImagens.Entrada> imagens = isFace ? faceImages : teamImages;
+        CatalogoImagens.Entrada imagem = imagens.isEmpty() ? null : imagens.get(random.nextInt(imagens.size()));
         
-        if (isFace && !faceImages.isEmpty()) {
-            // Enviar imagem real de face
-            File faceFile = faceImages.get(random.nextInt(faceImages.size()));
-            byte[] imageData = Files.readAllBytes(faceFile.toPath());
-            mensagem = new MensagemImagem(
-                UUID.randomUUID().toString(),
-                "face",
-                faceFile.getName(),
-                imageData
-            );
-        } else if (!isFace && !teamImages.isEmpty()) {
-            // Enviar imagem real de team
-            File teamFile = teamImages.get(random.nextInt(teamImages.size()));
-            byte[] imageData = Files.readAllBytes(teamFile.toPath());
-            mensagem = new MensagemImagem(
-                UUID.randomUUID().toString(),
-                "team",
-                teamFile.getName(),
-                imageData
-            );
+        long inicio = System.nanoTime();
+        byte[] messageBody;
+        if (formatoBinario && imagem != null && !envioPorReferencia && !preProcessada(tipo)) {
+            // Binário: bytes copiados direto do catálogo mapeado para o corpo da mensagem
+            messageBody = CodecMensagem.codificar(id, tipo, imagem.getNomeArquivo(), System.currentTimeMillis(),
+                envioPrevisto, null, null, null, imagem.dados());
         } else {
-            // Enviar dados simulados
-            mensagem = new MensagemImagem(
-                UUID.randomUUID().toString(),
-                tipo,
-                tipo + "_simulado_" + System.currentTimeMillis() + ".jpg",
-                gerarDadosSimulados()
-            );
+            MensagemImagem mensagem = montarMensagem(id, tipo, imagem, envioPrevisto);
+            messageBody = formatoBinario ? CodecMensagem.codificar(mensagem) : objectMapper.writeValueAsBytes(mensagem);
         }
         
-        // Converter para JSON
-        byte[] messageBody = objectMapper.writeValueAsBytes(mensagem);
+        long serializada = System.nanoTime();
+        metricas.registrarNanos("serializacao", serializada - inicio);
         
-        // Publicar mensagem
-        channel.basicPublish(EXCHANGE_NAME, routingKey, null, messageBody);
+        // Publicar mensagem (o content-type indica o formato para os consumidores)
+        publicador.publicar(rotear(routingKey, imagem), isFace ? propriedadesFace : propriedadesTeam, messageBody);
+        metricas.registrarNanos("publicacao", System.nanoTime() - serializada);
+        if (controlador != null) {
+            controlador.registrarEnvio(routingKey);
+        }
         
-        System.out.println("[" + System.currentTimeMillis() + "] Mensagem enviada: " + routingKey + " -> " + mensagem.getId());
+        System.out.println("[" + System.currentTimeMillis() + "] Mensagem enviada: " + routingKey + " -> " + id);
+    }
+    
+    /**
+     * Mensagem para a imagem do catálogo (pré-processada, por referência ou com os bytes copiados), ou com
+     * dados simulados quando {@code imagem} é null.
+     */
+    private MensagemImagem montarMensagem(String id, String tipo, CatalogoImagens.Entrada imagem, long envioPrevisto) {
+        MensagemImagem mensagem;
+        byte[] tensor = imagem != null && preProcessada(tipo) ? preProcessador.tensor(imagem) : null;
+        if (tensor != null) {
+            // Pré-processada: os 64x64 pixels em cinza já prontos, sem arquivo para o consumidor decodificar
+            mensagem = new MensagemImagem(id, tipo, imagem.getNomeArquivo(), tensor);
+            mensagem.setFormatoDados(MensagemImagem.FORMATO_CINZA_64);
+        } else if (envioPorReferencia && imagem != null) {
+            // Por referência: só o hash do conteúdo e o caminho; o consumidor resolve os bytes localmente
+            mensagem = new MensagemImagem(id, tipo, imagem.getNomeArquivo(), null);
+            mensagem.setHashConteudo(imagem.getHash());
+            mensagem.setLocalizador(imagem.getLocalizador());
+        } else if (imagem != null) {
+            mensagem = new MensagemImagem(id, tipo, imagem.getNomeArquivo(), imagem.copiarDados());
+        } else {
+            mensagem = new MensagemImagem(id, tipo, tipo + "_simulado_" + System.currentTimeMillis() + ".jpg",
+                gerarDadosSimulados());
+        }
+        mensagem.setEnvioPrevisto(envioPrevisto);
+        return mensagem;
+    }
+    
+    private boolean preProcessada(String tipo) {
+        return preProcessador != null && "face".equals(tipo);
+    }
+    
+    /**
+     * Converte a mistura "faces:times" (ex.: "3:1") na fração de mensagens de face.
+     */
+    private static double proporcaoFaces(String mistura) {
+        String[] partes = mistura.split(":");
+        if (partes.length != 2) {
+            throw new IllegalArgumentException("MISTURA_FACE_TEAM deve ter o formato faces:times, recebido " + mistura);
+        }
+        double faces = Double.parseDouble(partes[0].trim());
+        double times = Double.parseDouble(partes[1].trim());
+        if (faces < 0 || times < 0 || faces + times <= 0) {
+            throw new IllegalArgumentException("MISTURA_FACE_TEAM inválida: " + mistura);
+        }
+        return faces / (faces + times);
     }
     
     private byte[] gerarDadosSimulados() {
@@ -207,13 +583,17 @@ public class GeradorMensagens {
         // Aguardar RabbitMQ estar pronto
         try {
             System.out.println("Aguardando RabbitMQ inicializar...");
-            Thread.sleep(10000); // 10 segundos
+            Thread.sleep(Long.parseLong(System.getenv().getOrDefault("ESPERA_INICIAL_MS", "10000")));
             System.out.println("Iniciando gerador após aguardar RabbitMQ...");
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
         
         GeradorMensagens gerador = new GeradorMensagens();
-        gerador.iniciarGeracao();
+        if ("inundacao".equalsIgnoreCase(System.getenv().getOrDefault("MODO_GERADOR", "perfil"))) {
+            gerador.iniciarInundacao();
+        } else {
+            gerador.iniciarGeracao();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.sistema.ia.gerador;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências sem lock, no estilo do HdrHistogram: faixas lineares dentro de
+ * cada potência de dois, com 64 subfaixas por oitava (erro relativo abaixo de 1,6%).
+ *
+ * Os valores são registrados em microssegundos, de 0 até cerca de 12 dias; acima disso
+ * ficam na última faixa. Registrar é um incremento atômico, sem alocação.
+ */
+public class HistogramaLatencia {
+
+    private static final int BITS_SUBFAIXA = 6;
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+    private static final int MAIOR_EXPOENTE = 39;
+    private static final long VALOR_MAXIMO = (1L << (MAIOR_EXPOENTE + 1)) - 1;
+    private static final int NUM_FAIXAS = (MAIOR_EXPOENTE - BITS_SUBFAIXA + 2) * SUBFAIXAS;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(NUM_FAIXAS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder soma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    public void registrar(long microssegundos) {
+        long valor = Math.min(Math.max(microssegundos, 0), VALOR_MAXIMO);
+        contagens.incrementAndGet(indice(valor));
+        total.increment();
+        soma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    public void registrarNanos(long nanos) {
+        registrar(nanos / 1000);
+    }
+
+    public long getTotal() { return total.sum(); }
+    public long getSoma() { return soma.sum(); }
+    public long getMaximo() { return maximo.get(); }
+
+    /**
+     * Maior valor da faixa que contém o percentil {@code fracao} (0 a 1), limitado ao máximo observado.
+     */
+    public long percentil(double fracao) {
+        return percentis(fracao)[0];
+    }
+
+    /**
+     * Vários percentis calculados sobre a mesma cópia das contagens.
+     */
+    public long[] percentis(double... fracoes) {
+        long[] copia = new long[NUM_FAIXAS];
+        long registrados = 0;
+        for (int i = 0; i < NUM_FAIXAS; i++) {
+            copia[i] = contagens.get(i);
+            registrados += copia[i];
+        }
+        long maximoObservado = getMaximo();
+
+        long[] valores = new long[fracoes.length];
+        for (int f = 0; f < fracoes.length && registrados > 0; f++) {
+            long posicao = Math.max(1, (long) Math.ceil(fracoes[f] * registrados));
+            long acumulado = 0;
+            valores[f] = maximoObservado;
+            for (int i = 0; i < NUM_FAIXAS; i++) {
+                acumulado += copia[i];
+                if (acumulado >= posicao) {
+                    valores[f] = Math.min(limiteSuperior(i), maximoObservado);
+                    break;
+                }
+            }
+        }
+        return valores;
+    }
+
+    private static int indice(long valor) {
+        int expoente = 63 - Long.numberOfLeadingZeros(valor | SUBFAIXAS);
+        int deslocamento = expoente - BITS_SUBFAIXA;
+        return (deslocamento << BITS_SUBFAIXA) + (int) (valor >>> deslocamento);
+    }
+
+    private static long limiteSuperior(int indice) {
+        int deslocamento = Math.max(0, (indice >> BITS_SUBFAIXA) - 1);
+        long inicio = (long) (indice - (deslocamento << BITS_SUBFAIXA)) << deslocamento;
+        return inicio + (1L << deslocamento) - 1;
+    }
+}
@@ -1,9 +1,13 @@
 package com.sistema.ia.gerador;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class MensagemImagem {
     
+    /** 64x64 bytes de cinza (0-255), linha a linha, como os consumidores usam para extrair características */
+    public static final String FORMATO_CINZA_64 = "cinza-64x64";
+    
     @JsonProperty("id")
     private String id;
     
@@ -19,6 +23,24 @@ public class MensagemImagem {
     @JsonProperty("timestamp")
     private long timestamp;
     
+    // Instante em que o perfil de carga agendou o envio (0 = sem agendamento; usar o timestamp)
+    @JsonProperty("envioPrevisto")
+    private long envioPrevisto;
+    
+    // Modo por referência: dados vem nulo e a imagem é localizada pelo hash SHA-256 do conteúdo
+    @JsonProperty("hashConteudo")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String hashConteudo;
+    
+    @JsonProperty("localizador")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String localizador;
+    
+    // Formato de dados: nulo = arquivo de imagem; FORMATO_CINZA_64 = pixels 64x64 em tons de cinza já prontos
+    @JsonProperty("formatoDados")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String formatoDados;
+    
     public MensagemImagem() {}
     
     public MensagemImagem(String id, String tipo, String nomeArquivo, byte[] dados) {
@@ -45,6 +67,18 @@ public class MensagemImagem {
     public long getTimestamp() { return timestamp; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
     
+    public long getEnvioPrevisto() { return envioPrevisto; }
+    public void setEnvioPrevisto(long envioPrevisto) { this.envioPrevisto = envioPrevisto; }
+    
+    public String getHashConteudo() { return hashConteudo; }
+    public void setHashConteudo(String hashConteudo) { this.hashConteudo = hashConteudo; }
+    
+    public String getLocalizador() { return localizador; }
+    public void setLocalizador(String localizador) { this.localizador = localizador; }
+    
+    public String getFormatoDados() { return formatoDados; }
+    public void setFormatoDados(String formatoDados) { this.formatoDados = formatoDados; }
+    
     @Override
     public String toString() {
         return String.format("MensagemImagem{id='%s', tipo='%s', arquivo='%s', timestamp=%d}", 
@@ -0,0 +1,95 @@
+package com.sistema.ia.gerador;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de métricas do serviço: contadores e histogramas de latência por etapa,
+ * expostos em texto no formato do Prometheus por um endpoint HTTP {@code /metrics}.
+ */
+public final class Metricas {
+
+    private static final Metricas GLOBAL = new Metricas();
+    private static final double[] QUANTIS = {0.5, 0.9, 0.99, 0.999};
+
+    private final ConcurrentSkipListMap<String, LongAdder> contadores = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, HistogramaLatencia> histogramas = new ConcurrentSkipListMap<>();
+
+    private Metricas() {}
+
+    public static Metricas global() {
+        return GLOBAL;
+    }
+
+    public void incrementar(String contador) {
+        contadores.computeIfAbsent(contador, nome -> new LongAdder()).increment();
+    }
+
+    public HistogramaLatencia histograma(String etapa) {
+        return histogramas.computeIfAbsent(etapa, nome -> new HistogramaLatencia());
+    }
+
+    public void registrarNanos(String etapa, long nanos) {
+        histograma(etapa).registrarNanos(nanos);
+    }
+
+    public void registrarMillis(String etapa, long millis) {
+        histograma(etapa).registrar(millis * 1000);
+    }
+
+    /**
+     * Texto no formato de exposição do Prometheus (latências em microssegundos).
+     */
+    public String formatar() {
+        StringBuilder saida = new StringBuilder();
+        saida.append("# TYPE mensagens_total counter\n");
+        for (Map.Entry<String, LongAdder> contador : contadores.entrySet()) {
+            saida.append("mensagens_total{evento=\"").append(contador.getKey()).append("\"} ")
+                 .append(contador.getValue().sum()).append('\n');
+        }
+        saida.append("# TYPE latencia_microssegundos summary\n");
+        for (Map.Entry<String, HistogramaLatencia> entrada : histogramas.entrySet()) {
+            String etapa = entrada.getKey();
+            HistogramaLatencia histograma = entrada.getValue();
+            long[] valores = histograma.percentis(QUANTIS);
+            for (int i = 0; i < QUANTIS.length; i++) {
+                saida.append("latencia_microssegundos{etapa=\"").append(etapa).append("\",quantile=\"")
+                     .append(QUANTIS[i]).append("\"} ").append(valores[i]).append('\n');
+            }
+            saida.append("latencia_microssegundos_count{etapa=\"").append(etapa).append("\"} ")
+                 .append(histograma.getTotal()).append('\n');
+            saida.append("latencia_microssegundos_sum{etapa=\"").append(etapa).append("\"} ")
+                 .append(histograma.getSoma()).append('\n');
+            saida.append("latencia_microssegundos_max{etapa=\"").append(etapa).append("\"} ")
+                 .append(histograma.getMaximo()).append('\n');
+        }
+        return saida.toString();
+    }
+
+    /**
+     * Sobe o endpoint {@code /metrics} na porta indicada (0 não expõe nada).
+     */
+    public HttpServer expor(int porta) throws IOException {
+        if (porta <= 0) {
+            return null;
+        }
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(porta), 0);
+        servidor.createContext("/metrics", troca -> {
+            byte[] corpo = formatar().getBytes(StandardCharsets.UTF_8);
+            troca.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            troca.sendResponseHeaders(200, corpo.length);
+            try (OutputStream saida = troca.getResponseBody()) {
+                saida.write(corpo);
+            }
+        });
+        servidor.start();
+        return servidor;
+    }
+}
@@ -0,0 +1,137 @@
+package com.sistema.ia.gerador;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Corpo de mensagem serializado uma única vez e reaproveitado no modo inundação.
+ *
+ * O modelo é gerado com um id e instantes marcadores; as posições deles no corpo (JSON ou
+ * binário) são localizadas na criação. Cada envio copia o corpo e grava um UUID novo e o
+ * instante atual nessas posições, sem passar pelo Jackson nem pelo codec.
+ */
+public class ModeloMensagem {
+
+    private static final String ID_MARCADOR = "00000000-0000-4000-8000-000000000000";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String routingKey;
+    private final byte[] corpo;
+    private final boolean binario;
+    private final int posicaoId;
+    private final int posicaoTimestamp;
+    private final int posicaoEnvioPrevisto;
+    private final int digitosInstante;
+
+    private ModeloMensagem(String routingKey, byte[] corpo, boolean binario, int posicaoId,
+                           int posicaoTimestamp, int posicaoEnvioPrevisto, int digitosInstante) {
+        this.routingKey = routingKey;
+        this.corpo = corpo;
+        this.binario = binario;
+        this.posicaoId = posicaoId;
+        this.posicaoTimestamp = posicaoTimestamp;
+        this.posicaoEnvioPrevisto = posicaoEnvioPrevisto;
+        this.digitosInstante = digitosInstante;
+    }
+
+    /**
+     * Serializa {@code mensagem} como modelo; o id e os instantes dela são substituídos pelos marcadores.
+     */
+    public static ModeloMensagem criar(MensagemImagem mensagem, String routingKey, boolean binario,
+                                       ObjectMapper objectMapper) throws IOException {
+        long marcador = System.currentTimeMillis();
+        mensagem.setId(ID_MARCADOR);
+        mensagem.setTimestamp(marcador);
+        mensagem.setEnvioPrevisto(marcador + 1);
+        byte[] corpo = binario ? CodecMensagem.codificar(mensagem) : objectMapper.writeValueAsBytes(mensagem);
+
+        int posicaoId = indiceDe(corpo, ID_MARCADOR.getBytes(StandardCharsets.US_ASCII));
+        int posicaoTimestamp;
+        int posicaoEnvioPrevisto;
+        if (binario) {
+            // Os bytes da imagem vêm depois do cabeçalho, então a primeira ocorrência é a do cabeçalho
+            posicaoTimestamp = indiceDe(corpo, ByteBuffer.allocate(8).putLong(marcador).array());
+            posicaoEnvioPrevisto = indiceDe(corpo, ByteBuffer.allocate(8).putLong(marcador + 1).array());
+        } else {
+            posicaoTimestamp = posicaoValorJson(corpo, "timestamp", marcador);
+            posicaoEnvioPrevisto = posicaoValorJson(corpo, "envioPrevisto", marcador + 1);
+        }
+        if (posicaoId < 0 || posicaoTimestamp < 0 || posicaoEnvioPrevisto < 0) {
+            throw new IllegalStateException("Campos do modelo de mensagem não encontrados no corpo serializado");
+        }
+        return new ModeloMensagem(routingKey, corpo, binario, posicaoId, posicaoTimestamp, posicaoEnvioPrevisto,
+            Long.toString(marcador).length());
+    }
+
+    public String getRoutingKey() { return routingKey; }
+
+    /**
+     * Cópia do corpo com um UUID (versão 4) formado por {@code idAlto}/{@code idBaixo} e
+     * timestamp e envio previsto iguais a {@code agora}.
+     */
+    public byte[] instanciar(long idAlto, long idBaixo, long agora) {
+        byte[] copia = corpo.clone();
+        escreverUuid(copia, posicaoId, (idAlto & ~0xF000L) | 0x4000L, (idBaixo & 0x3FFFFFFFFFFFFFFFL) | Long.MIN_VALUE);
+        if (binario) {
+            escreverLong(copia, posicaoTimestamp, agora);
+            escreverLong(copia, posicaoEnvioPrevisto, agora);
+        } else {
+            escreverDigitos(copia, posicaoTimestamp, agora, digitosInstante);
+            escreverDigitos(copia, posicaoEnvioPrevisto, agora, digitosInstante);
+        }
+        return copia;
+    }
+
+    private static void escreverUuid(byte[] destino, int posicao, long alto, long baixo) {
+        // 32 dígitos hexadecimais; os hífens do marcador ficam onde estão
+        int nibble = 0;
+        for (int i = 0; i < ID_MARCADOR.length(); i++) {
+            if (ID_MARCADOR.charAt(i) == '-') {
+                continue;
+            }
+            long metade = nibble < 16 ? alto : baixo;
+            int deslocamento = 60 - 4 * (nibble % 16);
+            destino[posicao + i] = (byte) HEX[(int) (metade >>> deslocamento) & 0xF];
+            nibble++;
+        }
+    }
+
+    private static void escreverLong(byte[] destino, int posicao, long valor) {
+        for (int i = 7; i >= 0; i--) {
+            destino[posicao + i] = (byte) valor;
+            valor >>>= 8;
+        }
+    }
+
+    private static void escreverDigitos(byte[] destino, int posicao, long valor, int digitos) {
+        if (Long.toString(valor).length() != digitos) {
+            throw new IllegalStateException("Instante " + valor + " não cabe nos " + digitos + " dígitos do modelo");
+        }
+        for (int i = digitos - 1; i >= 0; i--) {
+            destino[posicao + i] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        }
+    }
+
+    private static int posicaoValorJson(byte[] corpo, String campo, long valor) {
+        String prefixo = "\"" + campo + "\":";
+        int posicao = indiceDe(corpo, (prefixo + valor).getBytes(StandardCharsets.US_ASCII));
+        return posicao < 0 ? -1 : posicao + prefixo.length();
+    }
+
+    private static int indiceDe(byte[] corpo, byte[] padrao) {
+        for (int i = 0; i + padrao.length <= corpo.length; i++) {
+            int j = 0;
+            while (j < padrao.length && corpo[i + j] == padrao[j]) {
+                j++;
+            }
+            if (j == padrao.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
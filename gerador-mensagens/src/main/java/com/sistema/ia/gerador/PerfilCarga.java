@@ -0,0 +1,135 @@
+package com.sistema.ia.gerador;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Perfil de carga do gerador: taxa instantânea de envio (msgs/s) em função do tempo
+ * desde o início, com chegadas regulares ou de Poisson.
+ *
+ * Os instantes de envio são calculados a partir do agendamento, e não do último envio real:
+ * se o broker atrasar um envio, os seguintes não são empurrados para frente, e cada mensagem
+ * leva o instante em que deveria ter saído (evita a omissão coordenada nas medições de latência).
+ */
+public class PerfilCarga {
+
+    // Passo de integração da taxa; perfis constantes por trechos são calculados sem erro
+    private static final double PASSO_SEGUNDOS = 0.001;
+
+    private final DoubleUnaryOperator taxa;
+    private final boolean poisson;
+    private final String descricao;
+    private final Random random;
+
+    private PerfilCarga(DoubleUnaryOperator taxa, boolean poisson, String descricao, Random random) {
+        this.taxa = taxa;
+        this.poisson = poisson;
+        this.descricao = descricao + (poisson ? ", chegadas de Poisson" : ", chegadas regulares");
+        this.random = random;
+    }
+
+    public static PerfilCarga constante(double taxa, boolean poisson, Random random) {
+        exigirPositiva("taxa", taxa);
+        return new PerfilCarga(t -> taxa, poisson, String.format("constante de %.1f msgs/s", taxa), random);
+    }
+
+    /**
+     * Rampa linear de {@code taxaInicial} até {@code taxaFinal} em {@code duracaoSegundos};
+     * depois mantém a taxa final.
+     */
+    public static PerfilCarga rampa(double taxaInicial, double taxaFinal, double duracaoSegundos,
+                                    boolean poisson, Random random) {
+        exigirPositiva("taxa final", taxaFinal);
+        exigirPositiva("duração da rampa", duracaoSegundos);
+        return new PerfilCarga(
+            t -> t >= duracaoSegundos ? taxaFinal : taxaInicial + (taxaFinal - taxaInicial) * t / duracaoSegundos,
+            poisson, String.format("rampa de %.1f a %.1f msgs/s em %.0fs", taxaInicial, taxaFinal, duracaoSegundos),
+            random);
+    }
+
+    /**
+     * Onda quadrada: {@code taxaPico} nos primeiros {@code duracaoPicoSegundos} de cada
+     * {@code periodoSegundos}, {@code taxaBase} no restante.
+     */
+    public static PerfilCarga rajada(double taxaBase, double taxaPico, double periodoSegundos,
+                                     double duracaoPicoSegundos, boolean poisson, Random random) {
+        exigirPositiva("taxa de pico", taxaPico);
+        exigirPositiva("período da rajada", periodoSegundos);
+        if (taxaBase <= 0) {
+            exigirPositiva("duração da rajada", duracaoPicoSegundos);
+        }
+        return new PerfilCarga(t -> (t % periodoSegundos) < duracaoPicoSegundos ? taxaPico : taxaBase, poisson,
+            String.format("rajadas de %.1f msgs/s por %.0fs a cada %.0fs (base %.1f msgs/s)",
+                taxaPico, duracaoPicoSegundos, periodoSegundos, taxaBase), random);
+    }
+
+    /**
+     * Monta o perfil a partir das variáveis de ambiente (PERFIL_CARGA e parâmetros associados).
+     */
+    public static PerfilCarga doAmbiente(Map<String, String> ambiente, Random random) {
+        String nome = ambiente.getOrDefault("PERFIL_CARGA", "constante").toLowerCase();
+        boolean poisson = "poisson".equals(nome)
+            || "poisson".equalsIgnoreCase(ambiente.getOrDefault("CHEGADAS", "regular"));
+        double taxa = Double.parseDouble(ambiente.getOrDefault("TAXA_MSGS", "5"));
+
+        switch (nome) {
+            case "constante":
+            case "poisson":
+                return constante(taxa, poisson, random);
+            case "rampa":
+                return rampa(Double.parseDouble(ambiente.getOrDefault("RAMPA_TAXA_INICIAL", "1")),
+                    Double.parseDouble(ambiente.getOrDefault("RAMPA_TAXA_FINAL", "100")),
+                    Double.parseDouble(ambiente.getOrDefault("RAMPA_DURACAO_S", "300")), poisson, random);
+            case "rajada":
+                return rajada(taxa,
+                    Double.parseDouble(ambiente.getOrDefault("RAJADA_TAXA", "50")),
+                    Double.parseDouble(ambiente.getOrDefault("RAJADA_PERIODO_S", "60")),
+                    Double.parseDouble(ambiente.getOrDefault("RAJADA_DURACAO_S", "10")), poisson, random);
+            default:
+                throw new IllegalArgumentException("Perfil de carga desconhecido: " + nome
+                    + " (use constante, rampa, rajada ou poisson)");
+        }
+    }
+
+    /**
+     * Instante previsto do próximo envio, em nanossegundos desde o início, dado o anterior.
+     * Avança até a integral da taxa atingir 1 (regular) ou uma amostra de Exp(1) (Poisson).
+     */
+    public long proximoEnvioNanos(long anteriorNanos) {
+        double alvo = poisson ? -Math.log(1 - random.nextDouble()) : 1.0;
+        double t = anteriorNanos / 1e9;
+        double acumulado = 0;
+        while (true) {
+            double r = taxa.applyAsDouble(t);
+            if (r > 0) {
+                double falta = (alvo - acumulado) / r;
+                if (falta <= PASSO_SEGUNDOS) {
+                    t += falta;
+                    break;
+                }
+                acumulado += r * PASSO_SEGUNDOS;
+            }
+            t += PASSO_SEGUNDOS;
+        }
+        return (long) (t * 1e9);
+    }
+
+    /**
+     * Taxa alvo no instante dado, para comparação com a taxa realizada.
+     */
+    public double taxaEm(double segundos) {
+        return taxa.applyAsDouble(segundos);
+    }
+
+    @Override
+    public String toString() {
+        return descricao;
+    }
+
+    private static void exigirPositiva(String nome, double valor) {
+        if (!(valor > 0)) {
+            throw new IllegalArgumentException("O valor de " + nome + " deve ser positivo: " + valor);
+        }
+    }
+}
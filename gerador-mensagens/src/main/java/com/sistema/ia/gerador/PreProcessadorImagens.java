@@ -0,0 +1,62 @@
+package com.sistema.ia.gerador;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pré-processamento das faces no gerador: cada imagem do catálogo é decodificada e reduzida
+ * uma única vez para os 64x64 pixels em tons de cinza que o consumidor usa nas características.
+ * O resultado (4 KB) fica em memória para os envios seguintes. Arquivos que já cabem em 4 KB
+ * seguem como estão: o tensor só economizaria CPU no consumidor à custa de uma mensagem maior.
+ *
+ * A redução é a de {@link DecodificadorImagem#reduzirCinza}, a mesma classe do consumidor, então
+ * as características extraídas do tensor são as mesmas da imagem original.
+ */
+public class PreProcessadorImagens {
+
+    public static final int LADO = 64;
+
+    private static final Logger logger = LoggerFactory.getLogger(PreProcessadorImagens.class);
+
+    // Marca imagens enviadas como arquivo original (menores que o tensor ou que não puderam ser
+    // decodificadas), para não tentar de novo a cada envio
+    private static final byte[] ORIGINAL = new byte[0];
+
+    private final Map<CatalogoImagens.Entrada, byte[]> tensores = new ConcurrentHashMap<>();
+
+    /**
+     * Pixels 64x64 em cinza, linha a linha, ou null se a imagem deve ir como arquivo original
+     * (não é maior que o tensor, ou não pôde ser decodificada).
+     */
+    public byte[] tensor(CatalogoImagens.Entrada imagem) {
+        byte[] tensor = tensores.computeIfAbsent(imagem, this::reduzir);
+        return tensor == ORIGINAL ? null : tensor;
+    }
+
+    public int getTamanho() {
+        return tensores.size();
+    }
+
+    private byte[] reduzir(CatalogoImagens.Entrada imagem) {
+        if (imagem.getTamanho() <= LADO * LADO) {
+            logger.debug("{} tem {} bytes, não maior que o tensor; enviando o arquivo original",
+                imagem.getLocalizador(), imagem.getTamanho());
+            return ORIGINAL;
+        }
+        try {
+            byte[] tensor = DecodificadorImagem.reduzirCinza(imagem.copiarDados(), LADO);
+            if (tensor == null) {
+                logger.warn("Formato de imagem não reconhecido, enviando o arquivo original: {}", imagem.getLocalizador());
+                return ORIGINAL;
+            }
+            return tensor;
+        } catch (IOException e) {
+            logger.warn("Erro ao pré-processar {}, enviando o arquivo original", imagem.getLocalizador(), e);
+            return ORIGINAL;
+        }
+    }
+}
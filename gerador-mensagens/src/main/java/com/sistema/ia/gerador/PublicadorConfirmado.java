@@ -0,0 +1,248 @@
+package com.sistema.ia.gerador;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publicação com publisher confirms assíncronos sobre um canal com uma única thread dona.
+ *
+ * Cada mensagem publicada fica guardada pelo número de sequência até o broker confirmar.
+ * Os acks (inclusive múltiplos) liberam as vagas; os nacks colocam as mensagens numa fila
+ * que a thread dona republica nos envios seguintes, depois de um atraso que dobra a cada
+ * rejeição. Uma mensagem rejeitada {@code maxTentativas} vezes conta como falha e libera a vaga.
+ * O número de mensagens sem confirmação é limitado: ao atingir o limite, {@link #publicar}
+ * espera pelas confirmações.
+ *
+ * Confirmações de um canal que caiu nunca chegam (e a recuperação automática recomeça a
+ * numeração), então ao fechar o canal as mensagens pendentes são descartadas e suas vagas
+ * liberadas. Com o canal fechado, {@link #publicar} e {@link #aguardarConfirmacoes} lançam
+ * IOException em vez de esperar.
+ *
+ * Só a thread dona chama {@link #publicar} e {@link #aguardarConfirmacoes}; os callbacks
+ * de confirmação rodam na thread da conexão e nunca publicam.
+ */
+public class PublicadorConfirmado {
+
+    private static final Logger logger = LoggerFactory.getLogger(PublicadorConfirmado.class);
+    private static final long ESPERA_VAGA_MILLIS = 10;
+
+    private final Channel channel;
+    private final String exchange;
+    private final Semaphore vagas;
+    private final int maxTentativas;
+    private final long atrasoNanos;
+    private final ConcurrentNavigableMap<Long, Pendente> pendentes = new ConcurrentSkipListMap<>();
+    private final Queue<Pendente> rejeitadas = new ConcurrentLinkedQueue<>();
+    private final AtomicLong descartadas = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private final Metricas metricas = Metricas.global();
+
+    private static final class Pendente {
+        final String routingKey;
+        final AMQP.BasicProperties propriedades;
+        final byte[] corpo;
+        long publicadaNanos;
+        int tentativas;
+        // Instante a partir do qual uma mensagem rejeitada pode ser republicada
+        long republicarNanos;
+
+        Pendente(String routingKey, AMQP.BasicProperties propriedades, byte[] corpo) {
+            this.routingKey = routingKey;
+            this.propriedades = propriedades;
+            this.corpo = corpo;
+        }
+    }
+
+    /**
+     * @param maxTentativas publicações de uma mesma mensagem antes de desistir dela
+     * @param atrasoMillis espera antes da primeira republicação; dobra a cada nova rejeição
+     */
+    public PublicadorConfirmado(Channel channel, String exchange, int maxEmVoo, int maxTentativas, long atrasoMillis)
+            throws IOException {
+        this.channel = channel;
+        this.exchange = exchange;
+        this.vagas = new Semaphore(maxEmVoo);
+        this.maxTentativas = Math.max(1, maxTentativas);
+        this.atrasoNanos = TimeUnit.MILLISECONDS.toNanos(atrasoMillis);
+        channel.confirmSelect();
+        channel.addConfirmListener(this::confirmar, this::rejeitar);
+        channel.addShutdownListener(this::descartarPendentes);
+    }
+
+    /**
+     * Publica sem esperar a confirmação; bloqueia apenas se o limite de mensagens em voo foi atingido.
+     */
+    public void publicar(String routingKey, AMQP.BasicProperties propriedades, byte[] corpo)
+            throws IOException, InterruptedException {
+        verificarCanal();
+        republicarRejeitadas();
+        // Enquanto espera por vaga, continua republicando o que o broker rejeitar
+        while (!vagas.tryAcquire(ESPERA_VAGA_MILLIS, TimeUnit.MILLISECONDS)) {
+            verificarCanal();
+            republicarRejeitadas();
+        }
+        enviar(new Pendente(routingKey, propriedades, corpo));
+    }
+
+    /**
+     * Espera até que todas as mensagens publicadas sejam confirmadas (republicando as rejeitadas).
+     * Retorna false se o prazo acabar antes; lança IOException se o canal fechar com mensagens
+     * sem confirmação.
+     */
+    public boolean aguardarConfirmacoes(long timeoutMillis) throws IOException, InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long descartadasAntes = descartadas.get();
+        while (!pendentes.isEmpty() || !rejeitadas.isEmpty()) {
+            if (System.nanoTime() >= limite) {
+                return false;
+            }
+            verificarCanal();
+            republicarRejeitadas();
+            Thread.sleep(ESPERA_VAGA_MILLIS);
+        }
+        long perdidas = descartadas.get() - descartadasAntes;
+        if (perdidas > 0) {
+            throw new IOException("Canal fechado com " + perdidas + " mensagens sem confirmação");
+        }
+        return true;
+    }
+
+    public int getEmVoo() {
+        return pendentes.size() + rejeitadas.size();
+    }
+
+    /**
+     * Mensagens abandonadas depois de {@code maxTentativas} rejeições do broker.
+     */
+    public long getFalhas() {
+        return falhas.get();
+    }
+
+    private void enviar(Pendente pendente) throws IOException {
+        long sequencia = channel.getNextPublishSeqNo();
+        pendente.publicadaNanos = System.nanoTime();
+        pendente.tentativas++;
+        pendentes.put(sequencia, pendente);
+        try {
+            channel.basicPublish(exchange, pendente.routingKey, pendente.propriedades, pendente.corpo);
+        } catch (IOException | RuntimeException e) {
+            // Se o fechamento do canal já descartou a mensagem, a vaga já foi liberada lá
+            if (pendentes.remove(sequencia, pendente)) {
+                vagas.release();
+            }
+            throw e;
+        }
+    }
+
+    private void verificarCanal() throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("Canal de publicação fechado", channel.getCloseReason());
+        }
+    }
+
+    private void republicarRejeitadas() throws IOException {
+        if (rejeitadas.isEmpty()) {
+            return;
+        }
+        long agora = System.nanoTime();
+        for (Iterator<Pendente> iterador = rejeitadas.iterator(); iterador.hasNext(); ) {
+            Pendente pendente = iterador.next();
+            // Ainda no atraso, ou já descartada pelo fechamento do canal
+            if (pendente.republicarNanos - agora > 0 || !rejeitadas.remove(pendente)) {
+                continue;
+            }
+            // A vaga da mensagem continua ocupada desde a primeira publicação
+            enviar(pendente);
+            metricas.incrementar("republicada");
+        }
+    }
+
+    private void confirmar(long sequencia, boolean multiplas) {
+        long agora = System.nanoTime();
+        for (Pendente pendente : remover(sequencia, multiplas)) {
+            metricas.registrarNanos("confirmacao", agora - pendente.publicadaNanos);
+            metricas.incrementar("confirmada");
+            vagas.release();
+        }
+    }
+
+    private void rejeitar(long sequencia, boolean multiplas) {
+        long agora = System.nanoTime();
+        int abandonadas = 0;
+        for (Pendente pendente : remover(sequencia, multiplas)) {
+            metricas.incrementar("rejeitada");
+            if (pendente.tentativas >= maxTentativas) {
+                metricas.incrementar("falha_publicacao");
+                falhas.incrementAndGet();
+                vagas.release();
+                abandonadas++;
+            } else {
+                pendente.republicarNanos = agora + (atrasoNanos << Math.min(pendente.tentativas - 1, 20));
+                rejeitadas.add(pendente);
+            }
+        }
+        if (abandonadas > 0) {
+            logger.warn("Broker rejeitou publicação {} (múltiplas: {}); {} mensagens abandonadas após {} tentativas",
+                sequencia, multiplas, abandonadas, maxTentativas);
+        } else {
+            logger.warn("Broker rejeitou publicação {} (múltiplas: {}), será republicada", sequencia, multiplas);
+        }
+    }
+
+    /**
+     * O canal fechou: as confirmações pendentes não vão chegar, então as mensagens são
+     * descartadas e as vagas liberadas, para {@link #publicar} não esperar para sempre.
+     */
+    private void descartarPendentes(ShutdownSignalException causa) {
+        int descartadasAgora = 0;
+        for (Map.Entry<Long, Pendente> entrada : pendentes.entrySet()) {
+            if (pendentes.remove(entrada.getKey(), entrada.getValue())) {
+                descartadasAgora++;
+                metricas.incrementar("descartada_canal");
+            }
+        }
+        while (rejeitadas.poll() != null) {
+            descartadasAgora++;
+            metricas.incrementar("descartada_canal");
+        }
+        if (descartadasAgora > 0) {
+            vagas.release(descartadasAgora);
+            descartadas.addAndGet(descartadasAgora);
+            logger.warn("Canal de publicação fechado ({}): {} mensagens sem confirmação descartadas",
+                causa.getMessage(), descartadasAgora);
+        }
+    }
+
+    private List<Pendente> remover(long sequencia, boolean multiplas) {
+        if (!multiplas) {
+            Pendente pendente = pendentes.remove(sequencia);
+            return pendente != null ? Collections.singletonList(pendente) : Collections.emptyList();
+        }
+        // Ack/nack múltiplo cobre todas as sequências até a informada
+        ConcurrentNavigableMap<Long, Pendente> confirmadas = pendentes.headMap(sequencia, true);
+        List<Pendente> removidas = new ArrayList<>(confirmadas.size());
+        for (Map.Entry<Long, Pendente> entrada : confirmadas.entrySet()) {
+            if (confirmadas.remove(entrada.getKey(), entrada.getValue())) {
+                removidas.add(entrada.getValue());
+            }
+        }
+        return removidas;
+    }
+}
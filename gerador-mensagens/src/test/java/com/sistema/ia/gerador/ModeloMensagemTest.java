@@ -0,0 +1,108 @@
+package com.sistema.ia.gerador;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Carimbo de id e instantes de {@link ModeloMensagem} no modo inundação: o corpo instanciado tem
+ * de ser, byte a byte, o que o Jackson ou o codec gerariam para a mesma mensagem do zero.
+ */
+class ModeloMensagemTest {
+
+    private static final byte[] DADOS = {(byte) 0xFF, (byte) 0xD8, 0, 7, 42, (byte) 0x80, 127, 3};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void binarioGravaIdEInstantesNasPosicoesDoCabecalho() throws IOException {
+        ModeloMensagem modelo = ModeloMensagem.criar(mensagem(), "face.3", true, objectMapper);
+        assertEquals("face.3", modelo.getRoutingKey(), "routing key");
+
+        long agora = System.currentTimeMillis() + 12_345;
+        byte[] corpo = modelo.instanciar(0x0123456789ABCDEFL, 0xFEDCBA9876543210L, agora);
+        MensagemImagem lida = CodecMensagem.decodificar(corpo);
+
+        assertCarimbo(lida, 0x0123456789ABCDEFL, 0xFEDCBA9876543210L, agora);
+        assertArrayEquals(CodecMensagem.codificar(lida), corpo, "corpo igual ao do codec");
+    }
+
+    @Test
+    void jsonGravaIdEInstantesNasPosicoesDosValores() throws IOException {
+        ModeloMensagem modelo = ModeloMensagem.criar(mensagem(), "face", false, objectMapper);
+
+        long agora = System.currentTimeMillis() - 987;
+        byte[] corpo = modelo.instanciar(-1L, 0L, agora);
+        MensagemImagem lida = objectMapper.readValue(corpo, MensagemImagem.class);
+
+        assertCarimbo(lida, -1L, 0L, agora);
+        assertArrayEquals(objectMapper.writeValueAsBytes(lida), corpo, "corpo igual ao do Jackson");
+    }
+
+    @Test
+    void cadaEnvioRecebeUmaCopiaPropria() throws IOException {
+        for (boolean binario : new boolean[]{true, false}) {
+            ModeloMensagem modelo = ModeloMensagem.criar(mensagem(), "face", binario, objectMapper);
+            long agora = System.currentTimeMillis();
+            byte[] primeiro = modelo.instanciar(1L, 2L, agora);
+            byte[] copiaDoPrimeiro = primeiro.clone();
+            byte[] segundo = modelo.instanciar(3L, 4L, agora + 1);
+
+            assertArrayEquals(copiaDoPrimeiro, primeiro, (binario ? "binário" : "JSON") + ": primeiro corpo intacto");
+            assertNotEquals(ler(primeiro, binario).getId(), ler(segundo, binario).getId(), "ids distintos");
+            assertEquals(agora + 1, ler(segundo, binario).getTimestamp(), "timestamp do segundo");
+        }
+    }
+
+    @Test
+    void jsonRecusaInstanteComOutraQuantidadeDeDigitos() throws IOException {
+        ModeloMensagem modelo = ModeloMensagem.criar(mensagem(), "face", false, objectMapper);
+        long outroTamanho = System.currentTimeMillis() * 10;
+        assertThrows(IllegalStateException.class, () -> modelo.instanciar(1L, 2L, outroTamanho),
+            "o instante precisa caber nos dígitos do modelo");
+
+        ModeloMensagem binario = ModeloMensagem.criar(mensagem(), "face", true, objectMapper);
+        assertEquals(outroTamanho, CodecMensagem.decodificar(binario.instanciar(1L, 2L, outroTamanho)).getTimestamp(),
+            "no binário o instante tem largura fixa");
+    }
+
+    private static void assertCarimbo(MensagemImagem lida, long idAlto, long idBaixo, long agora) {
+        UUID id = UUID.fromString(lida.getId());
+        assertEquals(4, id.version(), "UUID versão 4");
+        assertEquals(2, id.variant(), "UUID variante IETF");
+        assertEquals(new UUID((idAlto & ~0xF000L) | 0x4000L, (idBaixo & 0x3FFFFFFFFFFFFFFFL) | Long.MIN_VALUE), id,
+            "bits aleatórios do id");
+        assertEquals(agora, lida.getTimestamp(), "timestamp");
+        assertEquals(agora, lida.getEnvioPrevisto(), "envioPrevisto");
+
+        MensagemImagem original = mensagem();
+        assertEquals(original.getTipo(), lida.getTipo(), "tipo");
+        assertEquals(original.getNomeArquivo(), lida.getNomeArquivo(), "nomeArquivo");
+        assertEquals(original.getHashConteudo(), lida.getHashConteudo(), "hashConteudo");
+        assertEquals(original.getLocalizador(), lida.getLocalizador(), "localizador");
+        assertEquals(original.getFormatoDados(), lida.getFormatoDados(), "formatoDados");
+        assertArrayEquals(original.getDados(), lida.getDados(), "dados");
+    }
+
+    private MensagemImagem ler(byte[] corpo, boolean binario) throws IOException {
+        return binario ? CodecMensagem.decodificar(corpo) : objectMapper.readValue(corpo, MensagemImagem.class);
+    }
+
+    private static MensagemImagem mensagem() {
+        MensagemImagem mensagem = new MensagemImagem();
+        mensagem.setTipo("face");
+        mensagem.setNomeArquivo("sorriso.jpg");
+        mensagem.setHashConteudo("9e107d9d372bb6826bd81d3542a419d6");
+        mensagem.setLocalizador("faces/happy/sorriso.jpg");
+        mensagem.setFormatoDados(MensagemImagem.FORMATO_CINZA_64);
+        mensagem.setDados(DADOS.clone());
+        return mensagem;
+    }
+}
@@ -0,0 +1,141 @@
+package com.sistema.ia.gerador;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tensores de {@link PreProcessadorImagens}. O consumidor de faces confere, em
+ * PreProcessamentoFacesTest, que as características de {@link DecodificadorImagem#reduzirCinza}
+ * são as do arquivo original; aqui se confere que o gerador usa essa mesma redução, com a mesma
+ * classe, e que só troca o arquivo pelo tensor quando o tensor é menor.
+ */
+class PreProcessadorImagensTest {
+
+    private static final int TAMANHO_TENSOR = PreProcessadorImagens.LADO * PreProcessadorImagens.LADO;
+
+    @Test
+    void decodificadorEhOMesmoDoConsumidorDeFaces() throws IOException {
+        Path consumidor = Paths.get("../consumidor-face/src/main/java/com/sistema/ia/consumidor/DecodificadorImagem.java");
+        Assumptions.assumeTrue(Files.isRegularFile(consumidor), "consumidor-face fora da árvore");
+        String esperado = new String(Files.readAllBytes(consumidor), StandardCharsets.UTF_8)
+            .replace("package com.sistema.ia.consumidor;", "package com.sistema.ia.gerador;");
+        String gerador = new String(Files.readAllBytes(
+            Paths.get("src/main/java/com/sistema/ia/gerador/DecodificadorImagem.java")), StandardCharsets.UTF_8);
+        assertEquals(esperado, gerador, "DecodificadorImagem do gerador difere da cópia do consumidor de faces");
+    }
+
+    @Test
+    void arquivoMaiorQueOTensorViraAReducaoEmCinza() throws IOException {
+        PreProcessadorImagens preProcessador = new PreProcessadorImagens();
+        Random aleatorio = new Random(7);
+        for (String formato : new String[]{"png", "jpg"}) {
+            byte[] arquivo = codificar(imagem(aleatorio, 317, 238), formato);
+            assertTrue(arquivo.length > TAMANHO_TENSOR, formato + ": arquivo de " + arquivo.length + " bytes");
+
+            CatalogoImagens.Entrada entrada = entrada("grande." + formato, arquivo);
+            byte[] tensor = preProcessador.tensor(entrada);
+            assertArrayEquals(DecodificadorImagem.reduzirCinza(arquivo, PreProcessadorImagens.LADO), tensor, formato);
+            assertSame(tensor, preProcessador.tensor(entrada), formato + ": tensor reaproveitado");
+        }
+        assertEquals(2, preProcessador.getTamanho(), "imagens pré-processadas");
+    }
+
+    @Test
+    void arquivoQueCabeNoTensorVaiComoEsta() throws IOException {
+        PreProcessadorImagens preProcessador = new PreProcessadorImagens();
+        BufferedImage pequena = new BufferedImage(48, 48, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = pequena.createGraphics();
+        g2d.setColor(Color.ORANGE);
+        g2d.fillOval(8, 8, 32, 32);
+        g2d.dispose();
+        byte[] arquivo = codificar(pequena, "jpg");
+        assertTrue(arquivo.length <= TAMANHO_TENSOR, "arquivo de " + arquivo.length + " bytes");
+        assertNull(preProcessador.tensor(entrada("pequena.jpg", arquivo)), "arquivo original");
+    }
+
+    @Test
+    void formatoDesconhecidoVaiComoEsta() {
+        byte[] arquivo = new byte[2 * TAMANHO_TENSOR];
+        new Random(3).nextBytes(arquivo);
+        arquivo[0] = 'X';
+        assertNull(new PreProcessadorImagens().tensor(entrada("ruido.bin", arquivo)), "arquivo original");
+    }
+
+    @Test
+    void facesDoCatalogo() throws IOException {
+        PreProcessadorImagens preProcessador = new PreProcessadorImagens();
+        int comparadas = 0;
+        for (Path face : faces(200)) {
+            byte[] arquivo = Files.readAllBytes(face);
+            byte[] tensor = preProcessador.tensor(entrada(face.getFileName().toString(), arquivo));
+            if (arquivo.length <= TAMANHO_TENSOR) {
+                assertNull(tensor, face + ": arquivo menor que o tensor");
+            } else {
+                assertArrayEquals(DecodificadorImagem.reduzirCinza(arquivo, PreProcessadorImagens.LADO), tensor,
+                    face.toString());
+            }
+            comparadas++;
+        }
+        Assumptions.assumeTrue(comparadas > 0, "sem faces em IMAGENS_DIR (padrão ../shared-images)");
+    }
+
+    private static CatalogoImagens.Entrada entrada(String nome, byte[] arquivo) {
+        return new CatalogoImagens.Entrada(ByteBuffer.wrap(arquivo), "face", nome, "faces/" + nome, 0, arquivo.length);
+    }
+
+    private static List<Path> faces(int maximo) throws IOException {
+        Path raiz = Paths.get(System.getenv().getOrDefault("IMAGENS_DIR", "../shared-images"));
+        List<Path> faces = new ArrayList<>();
+        for (String sentimento : new String[]{"happy", "sad"}) {
+            Path diretorio = raiz.resolve("faces").resolve(sentimento);
+            if (!Files.isDirectory(diretorio)) {
+                continue;
+            }
+            try (Stream<Path> arquivos = Files.list(diretorio)) {
+                faces.addAll(arquivos.filter(Files::isRegularFile).sorted().limit(maximo / 2).collect(Collectors.toList()));
+            }
+        }
+        return faces;
+    }
+
+    private static BufferedImage imagem(Random aleatorio, int largura, int altura) {
+        BufferedImage imagem = new BufferedImage(largura, altura, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = imagem.createGraphics();
+        for (int forma = 0; forma < 40; forma++) {
+            g2d.setColor(new Color(aleatorio.nextInt(0x1000000)));
+            g2d.fillOval(aleatorio.nextInt(largura), aleatorio.nextInt(altura),
+                1 + aleatorio.nextInt(largura), 1 + aleatorio.nextInt(altura));
+        }
+        g2d.dispose();
+        return imagem;
+    }
+
+    private static byte[] codificar(BufferedImage imagem, String formato) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ImageIO.write(imagem, formato, saida);
+        return saida.toByteArray();
+    }
+}
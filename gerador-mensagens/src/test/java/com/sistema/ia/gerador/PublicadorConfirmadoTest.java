@@ -0,0 +1,101 @@
+package com.sistema.ia.gerador;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmCallback;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Republicação das mensagens rejeitadas (nack) pelo broker em {@link PublicadorConfirmado}, sobre
+ * um canal falso que só numera e guarda as publicações.
+ */
+class PublicadorConfirmadoTest {
+
+    private final List<String> publicadas = new ArrayList<>();
+    private ConfirmCallback ack;
+    private ConfirmCallback nack;
+    private long proximaSequencia = 1;
+
+    @Test
+    void rejeitadaEhRepublicadaSoDepoisDoAtraso() throws Exception {
+        PublicadorConfirmado publicador = new PublicadorConfirmado(canal(), "exchange", 10, 3, 200);
+        publicador.publicar("face", null, new byte[]{1});
+        nack.handle(1, false);
+
+        assertFalse(publicador.aguardarConfirmacoes(50), "ainda no atraso");
+        assertEquals(1, publicadas.size(), "publicações dentro do atraso");
+
+        assertFalse(publicador.aguardarConfirmacoes(400), "republicada mas sem confirmação");
+        assertEquals(List.of("face", "face"), publicadas, "publicações");
+        ack.handle(2, false);
+        assertTrue(publicador.aguardarConfirmacoes(100), "confirmada na segunda tentativa");
+        assertEquals(0, publicador.getFalhas(), "falhas");
+    }
+
+    @Test
+    void desisteDepoisDoLimiteDeTentativasELiberaAVaga() throws Exception {
+        PublicadorConfirmado publicador = new PublicadorConfirmado(canal(), "exchange", 1, 2, 0);
+        publicador.publicar("face", null, new byte[]{1});
+        nack.handle(1, false);
+        assertFalse(publicador.aguardarConfirmacoes(30), "republicada mas sem confirmação");
+        assertEquals(2, publicadas.size(), "publicações");
+
+        nack.handle(2, false);
+        assertEquals(1, publicador.getFalhas(), "falhas");
+        assertEquals(0, publicador.getEmVoo(), "em voo");
+        assertTrue(publicador.aguardarConfirmacoes(30), "nada pendente");
+
+        // A única vaga foi liberada: a próxima publicação não espera
+        publicador.publicar("team", null, new byte[]{2});
+        assertEquals(List.of("face", "face", "team"), publicadas, "publicações");
+    }
+
+    @Test
+    void nackMultiploContaAsTentativasDeCadaMensagem() throws Exception {
+        PublicadorConfirmado publicador = new PublicadorConfirmado(canal(), "exchange", 10, 2, 0);
+        publicador.publicar("face", null, new byte[]{1});
+        publicador.publicar("team", null, new byte[]{2});
+        nack.handle(2, true);
+        assertFalse(publicador.aguardarConfirmacoes(30), "republicadas mas sem confirmação");
+        assertEquals(4, publicadas.size(), "publicações");
+
+        // Segunda rejeição só da sequência 3 (a primeira mensagem): ela desiste, a outra é confirmada
+        nack.handle(3, false);
+        ack.handle(4, false);
+        assertTrue(publicador.aguardarConfirmacoes(30), "nada pendente");
+        assertEquals(1, publicador.getFalhas(), "falhas");
+    }
+
+    private Channel canal() {
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+            (proxy, metodo, argumentos) -> {
+                switch (metodo.getName()) {
+                    case "addConfirmListener":
+                        ack = (ConfirmCallback) argumentos[0];
+                        nack = (ConfirmCallback) argumentos[1];
+                        return null;
+                    case "getNextPublishSeqNo":
+                        return proximaSequencia;
+                    case "basicPublish":
+                        publicadas.add((String) argumentos[1]);
+                        proximaSequencia++;
+                        return null;
+                    case "isOpen":
+                        return true;
+                    case "confirmSelect":
+                    case "addShutdownListener":
+                        return null;
+                    default:
+                        throw new IOException("Não suportado pelo canal falso: " + metodo.getName());
+                }
+            });
+    }
+}